@@ -0,0 +1,96 @@
+package redBlackTrees;
+
+import java.util.Arrays;
+
+/**
+ * Red black tree whose nodes live in parallel int arrays instead of BSTNode objects.
+ * A node is an int slot; slot 0 is the shared NIL sentinel (always black).
+ * Subclasses own the key storage and the search loops, which read the link
+ * arrays directly; the structural work is in SlotRedBlackTree.
+ */
+public abstract class ArrayRedBlackTree extends SlotRedBlackTree {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	protected int[] left;
+	protected int[] right;
+	protected int[] parent;
+	private long[] redBits; // one bit per slot, set = red. NIL's bit is never set
+
+	protected ArrayRedBlackTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	protected ArrayRedBlackTree(int capacity) {
+		capacity = Math.max(capacity + 1, 2); // + 1 for NIL
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.parent = new int[capacity];
+		this.redBits = new long[(capacity + 63) >>> 6];
+	}
+
+	// Called when the node arrays grow, subclasses resize their key array to match
+	protected abstract void growKeys(int capacity);
+
+	@Override
+	protected final void ensureSlot(int slot) {
+		if (slot == this.left.length) {
+			grow();
+		}
+	}
+
+	private void grow() {
+		int capacity = this.left.length + (this.left.length >> 1);
+		this.left = Arrays.copyOf(this.left, capacity);
+		this.right = Arrays.copyOf(this.right, capacity);
+		this.parent = Arrays.copyOf(this.parent, capacity);
+		this.redBits = Arrays.copyOf(this.redBits, (capacity + 63) >>> 6);
+		growKeys(capacity);
+	}
+
+	@Override
+	protected final int left(int node) {
+		return this.left[node];
+	}
+
+	@Override
+	protected final int right(int node) {
+		return this.right[node];
+	}
+
+	@Override
+	protected final int parent(int node) {
+		return this.parent[node];
+	}
+
+	@Override
+	protected final void setLeft(int node, int child) {
+		this.left[node] = child;
+	}
+
+	@Override
+	protected final void setRight(int node, int child) {
+		this.right[node] = child;
+	}
+
+	@Override
+	protected final void setParent(int node, int parent) {
+		this.parent[node] = parent;
+	}
+
+	@Override
+	protected final boolean isRed(int node) {
+		return (this.redBits[node >>> 6] & (1L << node)) != 0;
+	}
+
+	@Override
+	protected final void setRed(int node) {
+		this.redBits[node >>> 6] |= 1L << node;
+	}
+
+	@Override
+	protected final void setBlack(int node) {
+		this.redBits[node >>> 6] &= ~(1L << node);
+	}
+
+}
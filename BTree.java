@@ -0,0 +1,660 @@
+package redBlackTrees;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * B-tree with the same insert/delete/find/navigation/traversal API as
+ * RedBlackTree, as an alternative engine for large trees. A red black tree is
+ * a 2-3-4 tree with each node spread over up to three binary nodes; here a node
+ * keeps up to fanout - 1 keys in one array and is searched with a binary
+ * search, so a lookup touches about log(n) / log(fanout) nodes instead of
+ * about log2(n). Fanout 4 gives the 2-3-4 tree itself.
+ *
+ * Keys are still objects, so each comparison reads the key it compares with;
+ * the saving is in the node hops. Like RedBlackTree it is a java.util.Set in
+ * natural key order: add/remove/contains never throw for duplicate or missing
+ * keys, and find() is contains() under RedBlackTree's name.
+ *
+ * Insert and delete are single pass top-down (CLRS): full nodes are split and
+ * minimal ones refilled on the way down, so no step has to go back up.
+ */
+public class BTree<E extends Comparable<E>> extends AbstractSet<E> {
+
+	public static final int DEFAULT_FANOUT = 64;
+
+	private static final class Node {
+
+		final Object[] keys;
+		Node[] children; // null for leaves
+		int count;
+
+		Node(int maxKeys, boolean leaf) {
+			this.keys = new Object[maxKeys];
+			this.children = leaf ? null : new Node[maxKeys + 1];
+		}
+
+		boolean isLeaf() {
+			return this.children == null;
+		}
+
+		// index of key, or -(insertion point) - 1
+		int search(Object key) {
+			return Arrays.binarySearch(this.keys, 0, this.count, key);
+		}
+	}
+
+	private final int minDegree; // t: nodes other than the root hold t - 1 .. 2t - 1 keys
+	private final int maxKeys;
+	private Node root;
+	private int size = 0;
+	private int modCount = 0;
+
+	public BTree() {
+		this(DEFAULT_FANOUT);
+	}
+
+	// fanout is the most children a node may have; odd values are rounded down
+	public BTree(int fanout) {
+		if (fanout < 4) {
+			throw new IllegalArgumentException("Fanout must be at least 4: " + fanout);
+		}
+		this.minDegree = fanout / 2;
+		this.maxKeys = 2 * this.minDegree - 1;
+		this.root = new Node(this.maxKeys, true);
+	}
+
+	@SafeVarargs
+	public BTree(int fanout, E... args) {
+		this(fanout);
+		for (E element : args) {
+			insert(element);
+		}
+	}
+
+	public int fanout() {
+		return 2 * this.minDegree;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	// false on an empty tree, as RedBlackTree.find()
+	public boolean find(E key) {
+		return contains(key);
+	}
+
+	@Override
+	public boolean contains(Object key) {
+		Objects.requireNonNull(key);
+		Node node = this.root;
+		while (true) {
+			int index = node.search(key);
+			if (index >= 0) {
+				return true;
+			}
+			if (node.isLeaf()) {
+				return false;
+			}
+			node = node.children[-index - 1];
+		}
+	}
+
+	// duplicates are ignored, same as add()
+	public void insert(E key) {
+		add(key);
+	}
+
+	// missing keys are ignored, same as remove()
+	public void delete(E key) {
+		remove(key);
+	}
+
+	// returns false if an equal key is already in the tree
+	@Override
+	public boolean add(E key) {
+		Objects.requireNonNull(key);
+		if (this.root.count == this.maxKeys) {
+			Node newRoot = new Node(this.maxKeys, false);
+			newRoot.children[0] = this.root;
+			this.root = newRoot;
+			splitChild(newRoot, 0);
+		}
+		Node node = this.root;
+		while (true) {
+			int index = node.search(key);
+			if (index >= 0) {
+				return false; // splits on the way down already counted as modifications
+			}
+			int position = -index - 1;
+			if (node.isLeaf()) {
+				System.arraycopy(node.keys, position, node.keys, position + 1, node.count - position);
+				node.keys[position] = key;
+				node.count++;
+				this.size++;
+				this.modCount++;
+				return true;
+			}
+			Node child = node.children[position];
+			if (child.count == this.maxKeys) {
+				splitChild(node, position);
+				int cmp = key.compareTo(key(node, position));
+				if (cmp == 0) {
+					return false;
+				}
+				if (cmp > 0) {
+					position++;
+				}
+			}
+			node = node.children[position];
+		}
+	}
+
+	/*
+	 * Splits the full child at index around its middle key, which moves up into
+	 * parent. Like every change to the node layout (borrow, merge, new or removed
+	 * root level) it counts as a modification even if the add or remove that
+	 * caused it turns out to be a no-op, as live iterators hold node positions.
+	 */
+	private void splitChild(Node parent, int index) {
+		this.modCount++;
+		int t = this.minDegree;
+		Node full = parent.children[index];
+		Node right = new Node(this.maxKeys, full.isLeaf());
+		right.count = t - 1;
+		System.arraycopy(full.keys, t, right.keys, 0, t - 1);
+		if (!full.isLeaf()) {
+			System.arraycopy(full.children, t, right.children, 0, t);
+			Arrays.fill(full.children, t, 2 * t, null);
+		}
+		Object middle = full.keys[t - 1];
+		Arrays.fill(full.keys, t - 1, 2 * t - 1, null);
+		full.count = t - 1;
+
+		System.arraycopy(parent.children, index + 1, parent.children, index + 2, parent.count - index);
+		parent.children[index + 1] = right;
+		System.arraycopy(parent.keys, index, parent.keys, index + 1, parent.count - index);
+		parent.keys[index] = middle;
+		parent.count++;
+	}
+
+	// returns false if no equal key is in the tree
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object key) {
+		Objects.requireNonNull(key);
+		boolean removed = remove(this.root, (E) key);
+		if (this.root.count == 0 && !this.root.isLeaf()) {
+			this.root = this.root.children[0]; // the tree gets one level shorter
+			this.modCount++;
+		}
+		if (removed) {
+			this.size--;
+			this.modCount++;
+		}
+		return removed;
+	}
+
+	// node has at least t keys unless it is the root
+	private boolean remove(Node node, E key) {
+		int t = this.minDegree;
+		while (true) {
+			int index = node.search(key);
+			if (node.isLeaf()) {
+				if (index < 0) {
+					return false;
+				}
+				removeAt(node, index);
+				return true;
+			}
+			if (index >= 0) {
+				Node left = node.children[index];
+				Node right = node.children[index + 1];
+				if (left.count >= t) { // replace key with its predecessor, delete that below
+					E predecessor = key(maxLeaf(left), -1);
+					node.keys[index] = predecessor;
+					node = left;
+					key = predecessor;
+				}
+				else if (right.count >= t) {
+					E successor = key(minLeaf(right), 0);
+					node.keys[index] = successor;
+					node = right;
+					key = successor;
+				}
+				else { // both minimal: pull key down between them and go on in the merged node
+					merge(node, index);
+					node = left;
+				}
+				continue;
+			}
+			int position = -index - 1;
+			if (node.children[position].count < t) {
+				position = refill(node, position);
+			}
+			node = node.children[position];
+		}
+	}
+
+	/*
+	 * The child at position has only t - 1 keys: borrow one through the parent
+	 * from a sibling with more, or merge it with a sibling. Returns the
+	 * position of the child to descend into afterwards.
+	 */
+	private int refill(Node parent, int position) {
+		int t = this.minDegree;
+		Node child = parent.children[position];
+		this.modCount++;
+		if (position > 0 && parent.children[position - 1].count >= t) {
+			Node left = parent.children[position - 1];
+			System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+			child.keys[0] = parent.keys[position - 1];
+			parent.keys[position - 1] = left.keys[left.count - 1];
+			left.keys[left.count - 1] = null;
+			if (!child.isLeaf()) {
+				System.arraycopy(child.children, 0, child.children, 1, child.count + 1);
+				child.children[0] = left.children[left.count];
+				left.children[left.count] = null;
+			}
+			left.count--;
+			child.count++;
+			return position;
+		}
+		if (position < parent.count && parent.children[position + 1].count >= t) {
+			Node right = parent.children[position + 1];
+			child.keys[child.count] = parent.keys[position];
+			parent.keys[position] = right.keys[0];
+			if (!child.isLeaf()) {
+				child.children[child.count + 1] = right.children[0];
+				System.arraycopy(right.children, 1, right.children, 0, right.count);
+				right.children[right.count] = null;
+			}
+			removeAt(right, 0);
+			child.count++;
+			return position;
+		}
+		if (position < parent.count) {
+			merge(parent, position);
+			return position;
+		}
+		merge(parent, position - 1);
+		return position - 1;
+	}
+
+	// moves key index of parent and all of child index + 1 into child index
+	private void merge(Node parent, int index) {
+		this.modCount++;
+		Node left = parent.children[index];
+		Node right = parent.children[index + 1];
+		left.keys[left.count] = parent.keys[index];
+		System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+		if (!left.isLeaf()) {
+			System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+		}
+		left.count += right.count + 1;
+
+		System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.count - index - 1);
+		System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.count - index - 1);
+		parent.count--;
+		parent.keys[parent.count] = null;
+		parent.children[parent.count + 1] = null;
+	}
+
+	// removes keys[index] from a leaf, or from a node whose children were already shifted
+	private static void removeAt(Node node, int index) {
+		System.arraycopy(node.keys, index + 1, node.keys, index, node.count - index - 1);
+		node.count--;
+		node.keys[node.count] = null;
+	}
+
+	private static Node minLeaf(Node node) {
+		while (!node.isLeaf()) {
+			node = node.children[0];
+		}
+		return node;
+	}
+
+	private static Node maxLeaf(Node node) {
+		while (!node.isLeaf()) {
+			node = node.children[node.count];
+		}
+		return node;
+	}
+
+	// index -1 means the node's last key
+	@SuppressWarnings("unchecked")
+	private static <E> E key(Node node, int index) {
+		return (E) node.keys[index < 0 ? node.count - 1 : index];
+	}
+
+	@Override
+	public void clear() {
+		this.root = new Node(this.maxKeys, true);
+		this.size = 0;
+		this.modCount++;
+	}
+
+	/*
+	 * Navigation, same contract as RedBlackTree and java.util.NavigableSet:
+	 * neighbour lookups and polls return null when there is no such key, first()
+	 * and last() throw.
+	 */
+	public E first() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("Empty Tree");
+		}
+		return key(minLeaf(this.root), 0);
+	}
+
+	public E last() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("Empty Tree");
+		}
+		return key(maxLeaf(this.root), -1);
+	}
+
+	public E pollFirst() {
+		E key = isEmpty() ? null : first();
+		if (key != null) {
+			remove(key);
+		}
+		return key;
+	}
+
+	public E pollLast() {
+		E key = isEmpty() ? null : last();
+		if (key != null) {
+			remove(key);
+		}
+		return key;
+	}
+
+	public E ceiling(E key) {
+		return bound(key, true, true);
+	}
+
+	public E higher(E key) {
+		return bound(key, true, false);
+	}
+
+	public E floor(E key) {
+		return bound(key, false, true);
+	}
+
+	public E lower(E key) {
+		return bound(key, false, false);
+	}
+
+	// One descent for all four neighbour searches, remembering the closest key on
+	// the wanted side of key seen so far
+	private E bound(E key, boolean above, boolean inclusive) {
+		Objects.requireNonNull(key);
+		Node node = this.root;
+		E bound = null;
+		while (true) {
+			int index = node.search(key);
+			int next; // child to descend into
+			if (index >= 0) {
+				if (inclusive) {
+					return key(node, index);
+				}
+				next = above ? index + 1 : index;
+			}
+			else {
+				next = -index - 1;
+			}
+			// keys[next - 1] < key < keys[next], give or take an equal key
+			if (above && next < node.count) {
+				bound = key(node, next);
+			}
+			else if (!above && next > 0) {
+				bound = key(node, next - 1);
+			}
+			if (node.isLeaf()) {
+				return bound;
+			}
+			node = node.children[next];
+		}
+	}
+
+	// number of node levels, 0 for an empty tree
+	public int height() {
+		if (isEmpty()) {
+			return 0;
+		}
+		int height = 1;
+		for (Node node = this.root; !node.isLeaf(); node = node.children[0]) {
+			height++;
+		}
+		return height;
+	}
+
+	/*
+	 * Traversals, node by node: preOrder lists a node's keys before its subtrees,
+	 * postOrder after them, breadthFirst level by level. inOrder is sorted.
+	 */
+	public ArrayList<E> preOrder() {
+		ArrayList<E> list = new ArrayList<>(this.size);
+		if (isEmpty()) {
+			return list;
+		}
+		ArrayDeque<Node> stack = new ArrayDeque<>();
+		stack.push(this.root);
+		while (!stack.isEmpty()) {
+			Node node = stack.pop();
+			addKeys(list, node);
+			if (!node.isLeaf()) {
+				for (int i = node.count; i >= 0; i--) {
+					stack.push(node.children[i]);
+				}
+			}
+		}
+		return list;
+	}
+
+	public ArrayList<E> inOrder() {
+		ArrayList<E> list = new ArrayList<>(this.size);
+		for (E key : this) {
+			list.add(key);
+		}
+		return list;
+	}
+
+	// nodes come off the second stack children first, left to right
+	public ArrayList<E> postOrder() {
+		ArrayList<E> list = new ArrayList<>(this.size);
+		if (isEmpty()) {
+			return list;
+		}
+		ArrayDeque<Node> pending = new ArrayDeque<>();
+		ArrayDeque<Node> output = new ArrayDeque<>();
+		pending.push(this.root);
+		while (!pending.isEmpty()) {
+			Node node = pending.pop();
+			output.push(node);
+			if (!node.isLeaf()) {
+				for (int i = 0; i <= node.count; i++) {
+					pending.push(node.children[i]);
+				}
+			}
+		}
+		while (!output.isEmpty()) {
+			addKeys(list, output.pop());
+		}
+		return list;
+	}
+
+	public ArrayList<E> breadthFirst() {
+		ArrayList<E> list = new ArrayList<>(this.size);
+		if (isEmpty()) {
+			return list;
+		}
+		ArrayDeque<Node> queue = new ArrayDeque<>();
+		queue.add(this.root);
+		while (!queue.isEmpty()) {
+			Node node = queue.remove();
+			addKeys(list, node);
+			if (!node.isLeaf()) {
+				for (int i = 0; i <= node.count; i++) {
+					queue.add(node.children[i]);
+				}
+			}
+		}
+		return list;
+	}
+
+	private static <E> void addKeys(ArrayList<E> list, Node node) {
+		for (int i = 0; i < node.count; i++) {
+			list.add(key(node, i));
+		}
+	}
+
+	// Lazy in-order iteration; remove() is supported
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+
+			// path from the root; for an inner node index is the child being walked
+			// (its key comes next), for the leaf on top it is the next key
+			private Node[] nodes = new Node[8];
+			private int[] indexes = new int[8];
+			private int depth = 0;
+			private E lastReturned;
+			private int expectedModCount = BTree.this.modCount;
+
+			{
+				if (!isEmpty()) {
+					descendLeft(BTree.this.root);
+				}
+			}
+
+			private void push(Node node, int index) {
+				if (this.depth == this.nodes.length) {
+					this.nodes = Arrays.copyOf(this.nodes, this.depth * 2);
+					this.indexes = Arrays.copyOf(this.indexes, this.depth * 2);
+				}
+				this.nodes[this.depth] = node;
+				this.indexes[this.depth] = index;
+				this.depth++;
+			}
+
+			private void descendLeft(Node node) {
+				while (true) {
+					push(node, 0);
+					if (node.isLeaf()) {
+						return;
+					}
+					node = node.children[0];
+				}
+			}
+
+			// drops finished levels so the top holds the next key
+			private void unwind() {
+				while (this.depth > 0 && this.indexes[this.depth - 1] >= this.nodes[this.depth - 1].count) {
+					this.depth--;
+				}
+			}
+
+			// positions before the smallest key >= key
+			private void seek(E key) {
+				this.depth = 0;
+				Node node = BTree.this.root;
+				while (true) {
+					int index = node.search(key);
+					int position = index >= 0 ? index : -index - 1;
+					push(node, position);
+					if (index >= 0 || node.isLeaf()) {
+						break;
+					}
+					node = node.children[position];
+				}
+				unwind();
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.depth > 0;
+			}
+
+			@Override
+			public E next() {
+				if (BTree.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (this.depth == 0) {
+					throw new NoSuchElementException();
+				}
+				int top = this.depth - 1;
+				Node node = this.nodes[top];
+				int index = this.indexes[top]++;
+				E key = key(node, index);
+				if (!node.isLeaf()) {
+					descendLeft(node.children[index + 1]);
+				}
+				unwind();
+				this.lastReturned = key;
+				return key;
+			}
+
+			// the next key is found again by value, removal restructures nodes
+			@Override
+			public void remove() {
+				if (this.lastReturned == null) {
+					throw new IllegalStateException();
+				}
+				if (BTree.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				E next = this.depth == 0 ? null : key(this.nodes[this.depth - 1], this.indexes[this.depth - 1]);
+				BTree.this.remove(this.lastReturned);
+				this.lastReturned = null;
+				this.expectedModCount = BTree.this.modCount;
+				if (next == null) {
+					this.depth = 0;
+				}
+				else {
+					seek(next);
+				}
+			}
+		};
+	}
+
+	// one line per level, nodes as [k1 k2 ...]
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		ArrayList<Node> level = new ArrayList<>();
+		level.add(this.root);
+		while (!level.isEmpty()) {
+			ArrayList<Node> below = new ArrayList<>();
+			for (Node node : level) {
+				sb.append('[');
+				for (int i = 0; i < node.count; i++) {
+					sb.append(i == 0 ? "" : " ").append(node.keys[i]);
+				}
+				sb.append("] ");
+				if (!node.isLeaf()) {
+					below.addAll(Arrays.asList(node.children).subList(0, node.count + 1));
+				}
+			}
+			sb.setLength(sb.length() - 1);
+			sb.append('\n');
+			level = below;
+		}
+		return sb.toString();
+	}
+
+}
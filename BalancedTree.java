@@ -0,0 +1,218 @@
+package redBlackTrees;
+
+import java.util.Objects;
+
+/**
+ * Base for binary search trees that rebalance with rotations after each insert
+ * and delete, each subclass being one balancing policy: LeftLeaningRedBlackTree
+ * and WavlTree. RedBlackTree keeps its own copy of this plumbing, it predates
+ * the others and works on its NIL sentinel.
+ *
+ * Empty links are null, as in BinarySearchTree. add/remove/contains follow the
+ * Set contract like RedBlackTree's, and insert/delete do the same without the
+ * messages BinarySearchTree prints. Rotations and rebalancing writes are
+ * reported to a TreeListener, so TreeMetrics counts work the same way for every
+ * policy.
+ */
+public abstract class BalancedTree<E extends Comparable<E>> extends BinarySearchTree<E> {
+
+	private TreeListener listener = TreeListener.NONE;
+
+	protected BalancedTree() {
+		super();
+	}
+
+	// see RedBlackTree.setListener(); null switches reporting off
+	public void setListener(TreeListener listener) {
+		this.listener = listener == null ? TreeListener.NONE : listener;
+	}
+
+	public TreeListener getListener() {
+		return this.listener;
+	}
+
+	// New node for add(), with whatever balance information the policy keeps
+	protected abstract BSTNode<E> newNode(E key);
+
+	// node has just been linked in as a leaf
+	protected abstract void afterInsert(BSTNode<E> node);
+
+	// removeNode() ends up in delete(BSTNode), which each policy overrides
+	@Override
+	protected abstract void delete(BSTNode<E> node);
+
+	// duplicates are ignored, same as add()
+	@Override
+	public void insert(E key) {
+		add(key);
+	}
+
+	// missing keys are ignored, same as remove()
+	@Override
+	public void delete(E key) {
+		remove(key);
+	}
+
+	// returns false, without touching the tree, if an equal key is already in it
+	public boolean add(E key) {
+		Objects.requireNonNull(key);
+		long start = this.listener.onStart(TreeListener.Operation.INSERT, key);
+		BSTNode<E> parent = null;
+		BSTNode<E> current = this.root;
+		int cmp = 0;
+		while (current != null) {
+			cmp = compare(key, current);
+			if (cmp == 0) {
+				this.listener.onFinish(TreeListener.Operation.INSERT, start);
+				return false;
+			}
+			parent = current;
+			current = cmp < 0 ? current.left : current.right;
+		}
+		BSTNode<E> child = newNode(key);
+		child.parent = parent;
+		if (parent == null) {
+			this.root = child;
+		}
+		else if (cmp < 0) {
+			parent.left = child;
+		}
+		else {
+			parent.right = child;
+		}
+		this.modCount++;
+		if (this.size >= 0) {
+			this.size++;
+		}
+		afterInsert(child);
+		this.listener.onFinish(TreeListener.Operation.INSERT, start);
+		return true;
+	}
+
+	// returns false if no equal key is in the tree
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object key) {
+		Objects.requireNonNull(key);
+		long start = this.listener.onStart(TreeListener.Operation.DELETE, key);
+		BSTNode<E> node = lookup((E) key);
+		if (node != null) {
+			super.removeNode(node);
+		}
+		this.listener.onFinish(TreeListener.Operation.DELETE, start);
+		return node != null;
+	}
+
+	// iterator removals count as one DELETE of the key, as in RedBlackTree
+	@Override
+	protected void removeNode(BSTNode<E> node) {
+		long start = this.listener.onStart(TreeListener.Operation.DELETE, node.getData());
+		super.removeNode(node);
+		this.listener.onFinish(TreeListener.Operation.DELETE, start);
+	}
+
+	public boolean contains(Object key) {
+		Objects.requireNonNull(key);
+		long start = this.listener.onStart(TreeListener.Operation.FIND, key);
+		@SuppressWarnings("unchecked")
+		boolean found = lookup((E) key) != null;
+		this.listener.onFinish(TreeListener.Operation.FIND, start);
+		return found;
+	}
+
+	// false on an empty tree, as RedBlackTree.find()
+	@Override
+	public boolean find(E key) {
+		return contains(key);
+	}
+
+	@Override
+	protected BSTNode<E> nodeToDelete(E key) {
+		return lookup(key);
+	}
+
+	// node holding key, or null
+	protected BSTNode<E> lookup(E key) {
+		Objects.requireNonNull(key);
+		BSTNode<E> current = this.root;
+		while (current != null) {
+			int cmp = compare(key, current);
+			if (cmp == 0) {
+				return current;
+			}
+			current = cmp < 0 ? current.left : current.right;
+		}
+		return null;
+	}
+
+	// every key comparison goes through here so the listener can count them
+	protected int compare(E key, BSTNode<E> node) {
+		this.listener.onCompare();
+		return key.compareTo(node.getData());
+	}
+
+	// one write of a node's balance information (color, rank)
+	protected void rebalanced() {
+		this.listener.onRecolor();
+	}
+
+	// Replaces node with child in node's parent (or as root); child may be null
+	protected void replaceChild(BSTNode<E> node, BSTNode<E> child) {
+		BSTNode<E> parent = node.parent;
+		if (parent == null) {
+			this.root = child;
+		}
+		else if (parent.left == node) {
+			parent.left = child;
+		}
+		else {
+			parent.right = child;
+		}
+		if (child != null) {
+			child.parent = parent;
+		}
+	}
+
+	// node's right child takes its place, node becomes its left child; returns the pivot
+	protected BSTNode<E> rotateLeft(BSTNode<E> node) {
+		this.listener.onRotate();
+		BSTNode<E> pivot = node.right;
+		replaceChild(node, pivot);
+		node.right = pivot.left;
+		if (node.right != null) {
+			node.right.parent = node;
+		}
+		pivot.left = node;
+		node.parent = pivot;
+		return pivot;
+	}
+
+	// Inverse of rotateLeft
+	protected BSTNode<E> rotateRight(BSTNode<E> node) {
+		this.listener.onRotate();
+		BSTNode<E> pivot = node.left;
+		replaceChild(node, pivot);
+		node.left = pivot.right;
+		if (node.left != null) {
+			node.left.parent = node;
+		}
+		pivot.right = node;
+		node.parent = pivot;
+		return pivot;
+	}
+
+	// nodes on the longest path from the root down, 0 for an empty tree
+	public int height() {
+		return height(this.root);
+	}
+
+	// recursion depth is bounded by the height, which balancing keeps logarithmic
+	private int height(BSTNode<E> node) {
+		return node == null ? 0 : 1 + Math.max(height(node.left), height(node.right));
+	}
+
+	@Override
+	public String toString() {
+		return isEmpty() ? "<null>\n" : super.toString();
+	}
+
+}
@@ -0,0 +1,9 @@
+package redBlackTrees;
+
+// Per-key outcome of RedBlackTree.insertAll() / deleteAll()
+public enum BatchResult {
+    INSERTED,
+    DUPLICATE,
+    DELETED,
+    MISSING
+}
@@ -1,12 +1,17 @@
 package redBlackTrees;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class BinarySearchTree<E extends Comparable<E>> {
+public class BinarySearchTree<E extends Comparable<E>> implements Iterable<E> {
 
 	protected BSTNode<E> root = null;
+	protected int modCount = 0; // bumped by every structural change, checked by cursors
+	protected int size = 0;
 
 	// Default constructor
 	public BinarySearchTree() {
@@ -25,13 +30,15 @@ public class BinarySearchTree<E extends Comparable<E>> {
 		}
 		BSTNode<E> current = this.root;
 		while (current != null) {
-			if (key == current.getData()) {
+			// compareTo, not ==, so equal but distinct objects (e.g. uncached Integers) are found
+			int cmp = key.compareTo(current.getData());
+			if (cmp == 0) {
 				return true;
 			} 
-			else if (key.compareTo(current.getData()) < 0) {
+			else if (cmp < 0) {
 				current = current.left;
 			} 
-			else if (key.compareTo(current.getData()) > 0) {
+			else {
 				current = current.right;
 			}
 		}
@@ -57,8 +64,13 @@ public class BinarySearchTree<E extends Comparable<E>> {
 			} 
 			catch (DuplicateItemException e) {
 				System.out.println("Duplicate Item: " + key + "\n");
+				return;
 			}
 		}
+		this.modCount++;
+		if (this.size >= 0) {
+			this.size++;
+		}
 	}
 
 	// Used in insert(), returns future parent node of item to add
@@ -83,7 +95,19 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	}
 
 	public void delete(E key) {
-		delete(nodeToDelete(key));
+		BSTNode<E> node = nodeToDelete(key);
+		if (node != null) {
+			removeNode(node);
+		}
+	}
+
+	// deletes a node already found in the tree, keeping size and modCount in step
+	protected void removeNode(BSTNode<E> node) {
+		this.modCount++;
+		if (this.size >= 0) {
+			this.size--;
+		}
+		delete(node);
 	}
 
 	protected void delete(BSTNode<E> node) {
@@ -93,7 +117,10 @@ public class BinarySearchTree<E extends Comparable<E>> {
 		}
 
 		if (isleafNode(node)) { // Case 1: 0 child
-			if (isLeftChild(node)) {
+			if (node == this.root) {
+				this.root = null;
+			}
+			else if (isLeftChild(node)) {
 				node.parent.left = null;
 			} 
 			else if (isRightChild(node)) {
@@ -109,7 +136,11 @@ public class BinarySearchTree<E extends Comparable<E>> {
 			else if (node.right != null) {
 				child = node.right;
 			}
-			if (isLeftChild(node)) {
+			if (node == this.root) {
+				this.root = child;
+				child.parent = null;
+			}
+			else if (isLeftChild(node)) {
 				node.parent.left = child;
 				child.parent = node.parent;
 			} 
@@ -151,73 +182,204 @@ public class BinarySearchTree<E extends Comparable<E>> {
 		return null;
 	}
 
-	public ArrayList<E> preOrder() {
-		ArrayList<E> list = new ArrayList<>();
-		preOrder(this.root, list);
-		return list;
+	// Lazy in-order iteration, nothing is copied
+	@Override
+	public Iterator<E> iterator() {
+		return cursor();
 	}
 
-	private void preOrder(BSTNode<E> node, ArrayList<E> list) {
-		if (node == null) { // base case
-			return;
-		}
-		// visit node
-		list.add(node.getData());
-		preOrder(node.left, list);
-		preOrder(node.right, list);
+	// Splits at subtree boundaries, see TreeSpliterator
+	@Override
+	public Spliterator<E> spliterator() {
+		return new TreeSpliterator<>(this);
 	}
 
-	public ArrayList<E> inOrder() {
-		ArrayList<E> list = new ArrayList<>();
-		inOrder(this.root, list);
-		return list;
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
 	}
 
-	private void inOrder(BSTNode<E> node, ArrayList<E> list) {
-		if (node == null) {
-			return;
-		}
-		inOrder(node.left, list);
-		list.add(node.getData());
-		inOrder(node.right, list);
+	public Stream<E> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
 	}
 
-	public ArrayList<E> postOrder() {
+	// Cursor positioned before the smallest key, see TreeCursor
+	public TreeCursor<E> cursor() {
+		return new TreeCursor<>(this);
+	}
+
+	// Traversals are iterative (explicit stack or parent pointers) so a deep,
+	// unbalanced tree can't overflow the call stack
+	public ArrayList<E> preOrder() {
 		ArrayList<E> list = new ArrayList<>();
-		postOrder(this.root, list);
+		if (isNil(this.root)) {
+			return list;
+		}
+		ArrayDeque<BSTNode<E>> stack = new ArrayDeque<>();
+		stack.push(this.root);
+		while (!stack.isEmpty()) {
+			BSTNode<E> node = stack.pop();
+			list.add(node.getData()); // visit node
+			if (!isNil(node.right)) {
+				stack.push(node.right);
+			}
+			if (!isNil(node.left)) {
+				stack.push(node.left);
+			}
+		}
 		return list;
 	}
 
-	private void postOrder(BSTNode<E> node, ArrayList<E> list) {
-		if (node == null) {
-			return;
+	public ArrayList<E> inOrder() {
+		ArrayList<E> list = new ArrayList<>();
+		for (E element : this) {
+			list.add(element);
 		}
-		postOrder(node.left, list);
-		postOrder(node.right, list);
-		list.add(node.getData());
+		return list;
 	}
 
-	public ArrayList<E> breadthFirst() {
+	public ArrayList<E> postOrder() {
 		ArrayList<E> list = new ArrayList<>();
-		breadthFirst(this.root, list);
+		if (isNil(this.root)) {
+			return list;
+		}
+		ArrayDeque<BSTNode<E>> stack = new ArrayDeque<>();
+		BSTNode<E> lastVisited = null;
+		BSTNode<E> node = this.root;
+		while (!isNil(node) || !stack.isEmpty()) {
+			if (!isNil(node)) {
+				stack.push(node);
+				node = node.left;
+			}
+			else {
+				BSTNode<E> top = stack.peek();
+				if (!isNil(top.right) && top.right != lastVisited) {
+					node = top.right; // right subtree not done yet
+				}
+				else {
+					list.add(top.getData());
+					lastVisited = stack.pop();
+				}
+			}
+		}
 		return list;
 	}
 
-	private void breadthFirst(BSTNode<E> rootNode, ArrayList<E> list) {
-		Queue<BSTNode<E>> queue = new LinkedList<>();
-		queue.add(rootNode);
+	public ArrayList<E> breadthFirst() {
+		ArrayList<E> list = new ArrayList<>();
+		if (isNil(this.root)) {
+			return list;
+		}
+		ArrayDeque<BSTNode<E>> queue = new ArrayDeque<>();
+		queue.add(this.root);
 		while (!queue.isEmpty()) {
 			BSTNode<E> temp = queue.remove();
 			list.add(temp.getData());
-			
-			// Conditional statement needed to not get NullPointerException
-			if (temp.left != null) {
+
+			if (!isNil(temp.left)) {
 				queue.add(temp.left);
 			}
-			if (temp.right != null) {
+			if (!isNil(temp.right)) {
 				queue.add(temp.right);
 			}
 		}
+		return list;
+	}
+
+	// True for the empty link below a leaf; RedBlackTree also counts its NIL sentinel
+	protected boolean isNil(BSTNode<E> node) {
+		return node == null;
+	}
+
+	protected BSTNode<E> minNode(BSTNode<E> node) {
+		if (isNil(node)) {
+			return node;
+		}
+		while (!isNil(node.left)) {
+			node = node.left;
+		}
+		return node;
+	}
+
+	protected BSTNode<E> maxNode(BSTNode<E> node) {
+		if (isNil(node)) {
+			return node;
+		}
+		while (!isNil(node.right)) {
+			node = node.right;
+		}
+		return node;
+	}
+
+	// next node in-order, or a nil node past the largest key
+	protected BSTNode<E> successor(BSTNode<E> node) {
+		if (!isNil(node.right)) {
+			return minNode(node.right);
+		}
+		BSTNode<E> parent = node.parent;
+		while (!isNil(parent) && node == parent.right) {
+			node = parent;
+			parent = parent.parent;
+		}
+		return parent;
+	}
+
+	// previous node in-order, or a nil node before the smallest key
+	protected BSTNode<E> predecessor(BSTNode<E> node) {
+		if (!isNil(node.left)) {
+			return maxNode(node.left);
+		}
+		BSTNode<E> parent = node.parent;
+		while (!isNil(parent) && node == parent.left) {
+			node = parent;
+			parent = parent.parent;
+		}
+		return parent;
+	}
+
+	// smallest node whose key is >= key, or a nil node if there is none
+	protected BSTNode<E> ceilingNode(E key) {
+		return boundNode(key, true, true);
+	}
+
+	// smallest node whose key is > key
+	protected BSTNode<E> higherNode(E key) {
+		return boundNode(key, true, false);
+	}
+
+	// largest node whose key is <= key
+	protected BSTNode<E> floorNode(E key) {
+		return boundNode(key, false, true);
+	}
+
+	// largest node whose key is < key
+	protected BSTNode<E> lowerNode(E key) {
+		return boundNode(key, false, false);
+	}
+
+	// One descent for all four neighbour searches. Remembers the last node on the
+	// path that lies on the wanted side of key; a nil node means there is none.
+	private BSTNode<E> boundNode(E key, boolean above, boolean inclusive) {
+		BSTNode<E> current = this.root;
+		BSTNode<E> bound = null;
+		while (!isNil(current)) {
+			int cmp = key.compareTo(current.getData());
+			if (cmp == 0 && inclusive) {
+				return current;
+			}
+			else if (cmp < 0 || (cmp == 0 && !above)) {
+				if (above) {
+					bound = current;
+				}
+				current = current.left;
+			}
+			else {
+				if (!above) {
+					bound = current;
+				}
+				current = current.right;
+			}
+		}
+		return bound == null ? current : bound;
 	}
 
 	protected BSTNode<E> grandparent(BSTNode<E> node) {
@@ -244,22 +406,20 @@ public class BinarySearchTree<E extends Comparable<E>> {
 		return uncle;
 	}
 
-	// returns sibling node or null if no sibling
+	// returns sibling node, or an empty link (null / NIL) if no sibling
 	protected BSTNode<E> sibling(BSTNode<E> node) {
 		BSTNode<E> sibling = null;
-		if (numChildren(node.parent) == 2) {
-			if (isLeftChild(node)) {
-				sibling = node.parent.right;
-			} 
-			else if (isRightChild(node)) {
-				sibling = node.parent.left;
-			}
+		if (isLeftChild(node)) {
+			sibling = node.parent.right;
+		} 
+		else if (isRightChild(node)) {
+			sibling = node.parent.left;
 		}
 		return sibling;
 	}
 
 	protected boolean isleafNode(BSTNode<E> node) {
-		return (node.left == null && node.right== null);
+		return (isNil(node.left) && isNil(node.right));
 	}
 
 	protected boolean isLeftChild(BSTNode<E> node) {
@@ -279,17 +439,29 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	protected int numChildren(BSTNode<E> node) {
 		int count = 0;
 
-		if (node.left != null) {
+		if (!isNil(node.left)) {
 			count += 1;
 		}
-		if (node.right != null) {
+		if (!isNil(node.right)) {
 			count += 1;
 		}
 		return count;
 	}
 
+	// a negative size means not known yet (see RedBlackTree.split()), count it once
+	public int size() {
+		if (this.size < 0) {
+			int count = 0;
+			for (BSTNode<E> node = minNode(this.root); !isNil(node); node = successor(node)) {
+				count++;
+			}
+			this.size = count;
+		}
+		return this.size;
+	}
+
 	public boolean isEmpty() {
-		return this.root == null;
+		return isNil(this.root);
 	}
 
 	/**
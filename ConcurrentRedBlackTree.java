@@ -0,0 +1,251 @@
+package redBlackTrees;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe wrapper around RedBlackTree. Writers take the exclusive lock and
+ * run the normal insert/delete/rotation code. find() walks the tree without any
+ * lock and then validates the stamp; only if a writer got in the way does it
+ * retry under the read lock. Readers therefore never block each other.
+ */
+public class ConcurrentRedBlackTree<E extends Comparable<E>> {
+
+	// a red black tree of at most Integer.MAX_VALUE keys is never deeper than this,
+	// a longer optimistic walk means a writer is mid-rotation
+	private static final int MAX_HEIGHT = 2 * Integer.SIZE;
+
+	private final RedBlackTree<E> tree;
+	private final StampedLock lock = new StampedLock();
+
+	public ConcurrentRedBlackTree() {
+		this.tree = new RedBlackTree<>();
+	}
+
+	@SafeVarargs
+	public ConcurrentRedBlackTree(E... args) {
+		this.tree = new RedBlackTree<>();
+		for (E element : args) {
+			this.tree.insert(element);
+		}
+	}
+
+	public void insert(E key) {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.insert(key);
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	public void delete(E key) {
+		long stamp = this.lock.writeLock();
+		try {
+			if (!this.tree.isEmpty()) {
+				this.tree.delete(key);
+			}
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	// false on an empty tree, as RedBlackTree.find(); null keys throw even then
+	public boolean find(E key) {
+		Objects.requireNonNull(key);
+		long stamp = this.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int found = optimisticFind(key);
+				if (this.lock.validate(stamp) && found >= 0) {
+					return found == 1;
+				}
+			}
+			catch (RuntimeException e) {
+				// torn read during a concurrent write (e.g. NIL's null key), retry below
+			}
+		}
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.find(key);
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	// 1 = found, 0 = not found, -1 = walk too long to be a consistent tree
+	private int optimisticFind(E key) {
+		BSTNode<E> current = this.tree.root;
+		for (int depth = 0; depth <= MAX_HEIGHT; depth++) {
+			if (this.tree.isNil(current)) {
+				return 0;
+			}
+			int cmp = key.compareTo(current.getData());
+			if (cmp == 0) {
+				return 1;
+			}
+			current = cmp < 0 ? current.left : current.right;
+		}
+		return -1;
+	}
+
+	public int size() {
+		long stamp = this.lock.tryOptimisticRead();
+		int size = this.tree.size();
+		if (!this.lock.validate(stamp)) {
+			stamp = this.lock.readLock();
+			try {
+				size = this.tree.size();
+			}
+			finally {
+				this.lock.unlockRead(stamp);
+			}
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/*
+	 * Everything below walks more than one path, so it runs under the shared read
+	 * lock; that still lets readers run in parallel.
+	 */
+	public E first() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.first();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public E last() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.last();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public E floor(E key) {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.floor(key);
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public E ceiling(E key) {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.ceiling(key);
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public E lower(E key) {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.lower(key);
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public E higher(E key) {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.higher(key);
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public E pollFirst() {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.pollFirst();
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	public E pollLast() {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.pollLast();
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	// Traversals return copies, the tree itself is never handed out
+	public ArrayList<E> preOrder() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.preOrder();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public ArrayList<E> inOrder() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.inOrder();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public ArrayList<E> postOrder() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.postOrder();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public ArrayList<E> breadthFirst() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.breadthFirst();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public String toString() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.toString();
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+}
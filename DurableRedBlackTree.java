@@ -0,0 +1,200 @@
+package redBlackTrees;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RedBlackTree whose changes survive a crash. Every insert/delete that changes
+ * the tree is appended to a WriteAheadLog in the directory; open() loads the
+ * last snapshot and replays the log on top of it, and compact() folds the log
+ * into a new snapshot.
+ *
+ * With synchronous commits insert() and delete() return once their record is on
+ * disk; concurrent callers share forces through the log's group commit. Without,
+ * they return straight away and a background thread forces the log every
+ * commitDelayNanos (and sync()/close() force it too): a crash can then lose the
+ * changes of the last commitDelayNanos.
+ *
+ * Reads see every applied change, including ones not yet on disk.
+ */
+public class DurableRedBlackTree<E extends Comparable<E>> implements Closeable {
+
+	private static final String SNAPSHOT = "tree.snapshot";
+	private static final String LOG = "tree.wal";
+	private static final long DEFAULT_COMMIT_DELAY_NANOS = 200_000;
+
+	private final Path directory;
+	private final KeyCodec<E> codec;
+	private final boolean synchronous;
+	private final long commitDelayNanos;
+	private final RedBlackTree<E> tree;
+	private final WriteAheadLog<E> log;
+	private final Thread flusher; // null with synchronous commits
+	private volatile boolean closed = false;
+
+	private DurableRedBlackTree(Path directory, KeyCodec<E> codec, boolean synchronous, long commitDelayNanos) throws IOException {
+		this.directory = directory;
+		this.codec = codec;
+		this.synchronous = synchronous;
+		this.commitDelayNanos = commitDelayNanos;
+		Files.createDirectories(directory);
+		Path snapshot = directory.resolve(SNAPSHOT);
+		if (Files.exists(snapshot)) {
+			try (InputStream in = Files.newInputStream(snapshot)) {
+				this.tree = RedBlackTree.readSnapshot(in, codec);
+			}
+		}
+		else {
+			this.tree = new RedBlackTree<>();
+		}
+		// a crash during compact() can leave records the snapshot already has;
+		// replaying them again is harmless, each one sets its key's final state
+		this.log = new WriteAheadLog<>(directory.resolve(LOG), codec, commitDelayNanos,
+				(op, key) -> apply(key, op == WriteAheadLog.INSERT));
+		syncDirectory(); // the log file may be new
+		if (synchronous) {
+			this.flusher = null;
+		}
+		else {
+			this.flusher = new Thread(this::flushLoop, "tree-wal-flusher");
+			this.flusher.setDaemon(true);
+			this.flusher.start();
+		}
+	}
+
+	private void flushLoop() {
+		while (!this.closed) {
+			LockSupport.parkNanos(this.commitDelayNanos);
+			try {
+				this.log.sync();
+			}
+			catch (IOException e) {
+				return; // the log keeps the failure, the next change reports it
+			}
+		}
+	}
+
+	// synchronous commits with a 200us group commit window
+	public static <E extends Comparable<E>> DurableRedBlackTree<E> open(Path directory, KeyCodec<E> codec) throws IOException {
+		return new DurableRedBlackTree<>(directory, codec, true, DEFAULT_COMMIT_DELAY_NANOS);
+	}
+
+	public static <E extends Comparable<E>> DurableRedBlackTree<E> open(Path directory, KeyCodec<E> codec, boolean synchronous, long commitDelayNanos) throws IOException {
+		return new DurableRedBlackTree<>(directory, codec, synchronous, commitDelayNanos);
+	}
+
+	// returns false if the tree already was in that state for key
+	private boolean apply(E key, boolean present) {
+		return present ? this.tree.add(key) : this.tree.remove(key);
+	}
+
+	// returns false if key was already in the tree
+	public boolean insert(E key) throws IOException {
+		return change(WriteAheadLog.INSERT, key);
+	}
+
+	// returns false if key was not in the tree
+	public boolean delete(E key) throws IOException {
+		return change(WriteAheadLog.DELETE, key);
+	}
+
+	private boolean change(byte op, E key) throws IOException {
+		long sequence;
+		synchronized (this) {
+			if (!apply(key, op == WriteAheadLog.INSERT)) {
+				return false;
+			}
+			sequence = this.log.append(op, key);
+		}
+		// waiting happens outside the lock so other writers can join the group commit
+		if (this.synchronous) {
+			this.log.sync(sequence);
+		}
+		return true;
+	}
+
+	// forces every change made so far
+	public void sync() throws IOException {
+		this.log.sync();
+	}
+
+	public synchronized boolean find(E key) {
+		return this.tree.contains(key);
+	}
+
+	public synchronized int size() {
+		return this.tree.size();
+	}
+
+	public synchronized boolean isEmpty() {
+		return this.tree.isEmpty();
+	}
+
+	public synchronized ArrayList<E> inOrder() {
+		return this.tree.inOrder();
+	}
+
+	// log bytes not yet folded into the snapshot, a hint for when to compact()
+	public long logLength() throws IOException {
+		return this.log.length();
+	}
+
+	/**
+	 * Writes the whole tree as the new snapshot and empties the log. The snapshot
+	 * goes to a temporary file first and is renamed over the old one, so a crash
+	 * at any point leaves either the old or the new snapshot plus a log that
+	 * replays to the same tree. Changes wait until compaction is done.
+	 */
+	public synchronized void compact() throws IOException {
+		this.log.sync();
+		Path temporary = this.directory.resolve(SNAPSHOT + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temporary)) {
+			this.tree.writeSnapshot(out, this.codec);
+		}
+		try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			file.force(true);
+		}
+		Files.move(temporary, this.directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		// the rename must be on disk before the log is emptied, or a crash could
+		// bring back the old snapshot next to an empty log
+		syncDirectory();
+		this.log.reset();
+	}
+
+	// forces the directory entries (new files, renames) the way force() does file contents
+	private void syncDirectory() throws IOException {
+		try (FileChannel directory = FileChannel.open(this.directory, StandardOpenOption.READ)) {
+			directory.force(true);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return this.tree.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		if (this.flusher != null) {
+			LockSupport.unpark(this.flusher);
+			try {
+				this.flusher.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.log.close();
+	}
+
+}
@@ -0,0 +1,106 @@
+package redBlackTrees;
+
+import java.util.Arrays;
+
+/**
+ * RedBlackTree specialised for int keys. Keys are stored unboxed next to the
+ * node arrays of ArrayRedBlackTree and compared with plain int comparisons.
+ */
+public class IntRedBlackTree extends ArrayRedBlackTree {
+
+	private int[] keys;
+
+	public IntRedBlackTree() {
+		super();
+		this.keys = new int[this.left.length];
+	}
+
+	public IntRedBlackTree(int... args) {
+		super(args.length);
+		this.keys = new int[this.left.length];
+		for (int element : args) {
+			insert(element);
+		}
+	}
+
+	@Override
+	protected void growKeys(int capacity) {
+		this.keys = Arrays.copyOf(this.keys, capacity);
+	}
+
+	public boolean find(int key) {
+		return node(key) != NIL;
+	}
+
+	// returns false if key was already in the tree
+	public boolean insert(int key) {
+		int current = this.root;
+		int parent = NIL;
+		boolean asLeft = false;
+		while (current != NIL) {
+			int data = this.keys[current];
+			if (key == data) {
+				return false;
+			}
+			parent = current;
+			asLeft = key < data;
+			current = asLeft ? this.left[current] : this.right[current];
+		}
+		int child = allocate();
+		this.keys[child] = key;
+		attach(child, parent, asLeft);
+		return true;
+	}
+
+	// returns false if key was not in the tree
+	public boolean delete(int key) {
+		int node = node(key);
+		if (node == NIL) {
+			return false;
+		}
+		remove(node);
+		return true;
+	}
+
+	private int node(int key) {
+		int current = this.root;
+		while (current != NIL) {
+			int data = this.keys[current];
+			if (key == data) {
+				return current;
+			}
+			current = key < data ? this.left[current] : this.right[current];
+		}
+		return NIL;
+	}
+
+	public int[] preOrder() {
+		return toKeys(preOrderSlots());
+	}
+
+	public int[] inOrder() {
+		return toKeys(inOrderSlots());
+	}
+
+	public int[] postOrder() {
+		return toKeys(postOrderSlots());
+	}
+
+	public int[] breadthFirst() {
+		return toKeys(breadthFirstSlots());
+	}
+
+	// maps slots to keys in place
+	private int[] toKeys(int[] slots) {
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = this.keys[slots[i]];
+		}
+		return slots;
+	}
+
+	@Override
+	protected String keyToString(int node) {
+		return Integer.toString(this.keys[node]);
+	}
+
+}
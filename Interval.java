@@ -0,0 +1,65 @@
+package redBlackTrees;
+
+import java.util.Objects;
+
+/**
+ * Closed interval [start, end] with start <= end, the key type of IntervalTree.
+ * Intervals are ordered by start, then by end, so two intervals are equal only
+ * if both endpoints are.
+ */
+public final class Interval<T extends Comparable<T>> implements Comparable<Interval<T>> {
+
+	private final T start;
+	private final T end;
+
+	public Interval(T start, T end) {
+		if (Objects.requireNonNull(start).compareTo(Objects.requireNonNull(end)) > 0) {
+			throw new IllegalArgumentException("start > end: [" + start + ", " + end + "]");
+		}
+		this.start = start;
+		this.end = end;
+	}
+
+	public T getStart() {
+		return this.start;
+	}
+
+	public T getEnd() {
+		return this.end;
+	}
+
+	// true if this interval and [low, high] share at least one point
+	public boolean overlaps(T low, T high) {
+		return this.start.compareTo(high) <= 0 && this.end.compareTo(low) >= 0;
+	}
+
+	public boolean contains(T point) {
+		return overlaps(point, point);
+	}
+
+	@Override
+	public int compareTo(Interval<T> other) {
+		int cmp = this.start.compareTo(other.start);
+		return cmp != 0 ? cmp : this.end.compareTo(other.end);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Interval)) {
+			return false;
+		}
+		Interval<?> interval = (Interval<?>) other;
+		return this.start.equals(interval.start) && this.end.equals(interval.end);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.start.hashCode() + this.end.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "[" + this.start + ", " + this.end + "]";
+	}
+
+}
@@ -0,0 +1,157 @@
+package redBlackTrees;
+
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * RedBlackTree of intervals, ordered by start, in which every node also stores
+ * the largest end point in its subtree. That maximum is kept up to date through
+ * the augment hooks of RedBlackTree (rotations, insert and delete), and lets
+ * overlap queries skip every subtree whose intervals all end before the query
+ * starts. Equal intervals are stored once, as in any Set.
+ */
+public class IntervalTree<T extends Comparable<T>> extends RedBlackTree<Interval<T>> {
+
+	private static class MaxEndNode<T extends Comparable<T>> extends BSTNode<Interval<T>> {
+
+		private T maxEnd;
+
+		MaxEndNode(Interval<T> data) {
+			super(data, 'R');
+			this.maxEnd = data.getEnd();
+		}
+	}
+
+	public IntervalTree() {
+		super();
+	}
+
+	public boolean add(T start, T end) {
+		return add(new Interval<>(start, end));
+	}
+
+	public boolean remove(T start, T end) {
+		return remove(new Interval<>(start, end));
+	}
+
+	@Override
+	protected BSTNode<Interval<T>> newNode(Interval<T> key) {
+		return new MaxEndNode<>(key);
+	}
+
+	@Override
+	protected void augment(BSTNode<Interval<T>> node) {
+		T max = node.getData().getEnd();
+		if (!isNil(node.left) && maxEnd(node.left).compareTo(max) > 0) {
+			max = maxEnd(node.left);
+		}
+		if (!isNil(node.right) && maxEnd(node.right).compareTo(max) > 0) {
+			max = maxEnd(node.right);
+		}
+		((MaxEndNode<T>) node).maxEnd = max;
+	}
+
+	@Override
+	protected void augmentPath(BSTNode<Interval<T>> node) {
+		while (!isNil(node)) {
+			augment(node);
+			node = node.parent;
+		}
+	}
+
+	// package-private so the tests can check every node's maximum
+	T maxEnd(BSTNode<Interval<T>> node) {
+		return ((MaxEndNode<T>) node).maxEnd;
+	}
+
+	/**
+	 * Intervals sharing at least one point with [low, high], lazily and in
+	 * ascending order. The walk skips subtrees whose largest end is below low and
+	 * stops at the first start above high, so short intervals cost O(log n + k)
+	 * for k results. Long intervals that end before low but cover other nodes can
+	 * add up to O(log n) per result. Changing the tree while the stream is in use
+	 * makes it throw ConcurrentModificationException.
+	 */
+	public Stream<Interval<T>> overlapping(T low, T high) {
+		if (low.compareTo(high) > 0) {
+			throw new IllegalArgumentException("low > high: [" + low + ", " + high + "]");
+		}
+		int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new OverlapIterator(low, high), characteristics), false);
+	}
+
+	// intervals containing point
+	public Stream<Interval<T>> stab(T point) {
+		return overlapping(point, point);
+	}
+
+	/*
+	 * In-order walk over the nodes that can overlap: the stack holds the
+	 * ancestors still to visit, and a left child is only entered while its
+	 * subtree's maximum end reaches low.
+	 */
+	private final class OverlapIterator implements Iterator<Interval<T>> {
+
+		private final T low;
+		private final T high;
+		private final ArrayDeque<BSTNode<Interval<T>>> stack = new ArrayDeque<>();
+		private final int expectedModCount = IntervalTree.this.modCount;
+		private BSTNode<Interval<T>> next;
+
+		OverlapIterator(T low, T high) {
+			this.low = low;
+			this.high = high;
+			pushLeft(IntervalTree.this.root);
+			advance();
+		}
+
+		private void pushLeft(BSTNode<Interval<T>> node) {
+			while (!isNil(node) && maxEnd(node).compareTo(this.low) >= 0) {
+				this.stack.push(node);
+				node = node.left;
+			}
+		}
+
+		private void advance() {
+			this.next = null;
+			while (!this.stack.isEmpty()) {
+				BSTNode<Interval<T>> node = this.stack.pop();
+				Interval<T> interval = node.getData();
+				if (interval.getStart().compareTo(this.high) > 0) {
+					this.stack.clear(); // every later interval starts even further right
+					return;
+				}
+				pushLeft(node.right);
+				if (interval.getEnd().compareTo(this.low) >= 0) {
+					this.next = node;
+					return;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public Interval<T> next() {
+			if (IntervalTree.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (this.next == null) {
+				throw new NoSuchElementException();
+			}
+			Interval<T> interval = this.next.getData();
+			advance();
+			return interval;
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+package redBlackTrees;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Turns keys into bytes and back for snapshots and logs. Keys are written in
+ * ascending order in blocks, and each key after the first in a block is handed
+ * the key before it, so a codec can store the gap instead of the key.
+ * name() is written into the stream and checked again on reading.
+ */
+public interface KeyCodec<E> {
+
+	String name();
+
+	// previous is the key written just before this one in the same block, or null
+	void write(DataOutput out, E key, E previous) throws IOException;
+
+	E read(DataInput in, E previous) throws IOException;
+
+	// 4 bytes per key
+	static KeyCodec<Integer> integers() {
+		return new KeyCodec<Integer>() {
+
+			@Override
+			public String name() {
+				return "int";
+			}
+
+			@Override
+			public void write(DataOutput out, Integer key, Integer previous) throws IOException {
+				out.writeInt(key);
+			}
+
+			@Override
+			public Integer read(DataInput in, Integer previous) throws IOException {
+				return in.readInt();
+			}
+		};
+	}
+
+	// 8 bytes per key
+	static KeyCodec<Long> longs() {
+		return new KeyCodec<Long>() {
+
+			@Override
+			public String name() {
+				return "long";
+			}
+
+			@Override
+			public void write(DataOutput out, Long key, Long previous) throws IOException {
+				out.writeLong(key);
+			}
+
+			@Override
+			public Long read(DataInput in, Long previous) throws IOException {
+				return in.readLong();
+			}
+		};
+	}
+
+	// gap to the previous key as a varint, so dense keys take a byte or two
+	static KeyCodec<Integer> integerDeltas() {
+		return new KeyCodec<Integer>() {
+
+			@Override
+			public String name() {
+				return "int-delta";
+			}
+
+			@Override
+			public void write(DataOutput out, Integer key, Integer previous) throws IOException {
+				if (previous == null) {
+					writeVarLong(out, zigZag(key));
+				}
+				else {
+					writeVarLong(out, (long) key - previous);
+				}
+			}
+
+			@Override
+			public Integer read(DataInput in, Integer previous) throws IOException {
+				if (previous == null) {
+					return (int) unZigZag(readVarLong(in));
+				}
+				return (int) (previous + readVarLong(in));
+			}
+		};
+	}
+
+	static KeyCodec<Long> longDeltas() {
+		return new KeyCodec<Long>() {
+
+			@Override
+			public String name() {
+				return "long-delta";
+			}
+
+			// the gap between two longs can overflow a long, but as an unsigned
+			// value it is still exact, and that is what the varint stores
+			@Override
+			public void write(DataOutput out, Long key, Long previous) throws IOException {
+				writeVarLong(out, previous == null ? zigZag(key) : key - previous);
+			}
+
+			@Override
+			public Long read(DataInput in, Long previous) throws IOException {
+				long value = readVarLong(in);
+				return previous == null ? unZigZag(value) : previous + value;
+			}
+		};
+	}
+
+	// modified UTF-8, as DataOutput.writeUTF
+	static KeyCodec<String> strings() {
+		return new KeyCodec<String>() {
+
+			@Override
+			public String name() {
+				return "utf";
+			}
+
+			@Override
+			public void write(DataOutput out, String key, String previous) throws IOException {
+				out.writeUTF(key);
+			}
+
+			@Override
+			public String read(DataInput in, String previous) throws IOException {
+				return in.readUTF();
+			}
+		};
+	}
+
+	// the built in codec whose name() is name, for tools that read it from a stream
+	static KeyCodec<?> forName(String name) {
+		switch (name) {
+			case "int":
+				return integers();
+			case "long":
+				return longs();
+			case "int-delta":
+				return integerDeltas();
+			case "long-delta":
+				return longDeltas();
+			case "utf":
+				return strings();
+			default:
+				throw new IllegalArgumentException("Unknown codec " + name);
+		}
+	}
+
+	// unsigned LEB128: 7 bits per byte, high bit set on every byte but the last
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	// small negative numbers become small positive ones: 0, -1, 1, -2 -> 0, 1, 2, 3
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
@@ -0,0 +1,176 @@
+package redBlackTrees;
+
+/**
+ * Left-leaning red black tree (Sedgewick): a red black tree in which a red
+ * node is always a left child, so each 3-node has one shape and the fix-ups
+ * shrink to three rules, see balance(). The price is work on the whole path:
+ * insert applies the rules at every ancestor, and delete pushes a red link down
+ * the search path before removing and cleans up on the way back, so it rotates
+ * and recolors more than RedBlackTree. Colors are the same 'R' and 'B'.
+ */
+public class LeftLeaningRedBlackTree<E extends Comparable<E>> extends BalancedTree<E> {
+
+	public LeftLeaningRedBlackTree() {
+		super();
+	}
+
+	@SafeVarargs
+	public LeftLeaningRedBlackTree(E... args) {
+		for (E element : args) {
+			insert(element);
+		}
+	}
+
+	@Override
+	protected BSTNode<E> newNode(E key) {
+		return new BSTNode<>(key, 'R');
+	}
+
+	// the recursive insert's way back up, done through the parent links
+	@Override
+	protected void afterInsert(BSTNode<E> node) {
+		for (BSTNode<E> h = node.parent; h != null; h = h.parent) {
+			h = balance(h);
+		}
+		if (isRed(this.root)) {
+			recolor(this.root, 'B');
+		}
+	}
+
+	@Override
+	protected void delete(BSTNode<E> node) {
+		if (!isRed(this.root.left) && !isRed(this.root.right)) {
+			recolor(this.root, 'R');
+		}
+		this.root = delete(this.root, node.getData());
+		if (this.root != null) {
+			this.root.parent = null;
+			if (isRed(this.root)) {
+				recolor(this.root, 'B');
+			}
+		}
+	}
+
+	// key is in h's subtree. Returns the subtree's new root, null if it is empty now
+	private BSTNode<E> delete(BSTNode<E> h, E key) {
+		if (compare(key, h) < 0) {
+			if (!isRed(h.left) && !isRed(h.left.left)) {
+				h = moveRedLeft(h);
+			}
+			setLeft(h, delete(h.left, key));
+		}
+		else {
+			if (isRed(h.left)) {
+				h = rotateRightRed(h);
+			}
+			if (compare(key, h) == 0 && h.right == null) {
+				return null; // a leaf by now, the left link was red and got rotated away
+			}
+			if (!isRed(h.right) && !isRed(h.right.left)) {
+				h = moveRedRight(h);
+			}
+			if (compare(key, h) == 0) { // take the successor's key, then delete the successor
+				h.setData(minNode(h.right).getData());
+				setRight(h, deleteMin(h.right));
+			}
+			else {
+				setRight(h, delete(h.right, key));
+			}
+		}
+		return balance(h);
+	}
+
+	private BSTNode<E> deleteMin(BSTNode<E> h) {
+		if (h.left == null) {
+			return null;
+		}
+		if (!isRed(h.left) && !isRed(h.left.left)) {
+			h = moveRedLeft(h);
+		}
+		setLeft(h, deleteMin(h.left));
+		return balance(h);
+	}
+
+	// makes h.left or one of its children red, borrowing from the right if it can
+	private BSTNode<E> moveRedLeft(BSTNode<E> h) {
+		flipColors(h);
+		if (isRed(h.right.left)) {
+			rotateRightRed(h.right);
+			h = rotateLeftRed(h);
+			flipColors(h);
+		}
+		return h;
+	}
+
+	private BSTNode<E> moveRedRight(BSTNode<E> h) {
+		flipColors(h);
+		if (isRed(h.left.left)) {
+			h = rotateRightRed(h);
+			flipColors(h);
+		}
+		return h;
+	}
+
+	// the three rules: lean left, no two reds in a row, split a 4-node
+	private BSTNode<E> balance(BSTNode<E> h) {
+		if (isRed(h.right) && !isRed(h.left)) {
+			h = rotateLeftRed(h);
+		}
+		if (isRed(h.left) && isRed(h.left.left)) {
+			h = rotateRightRed(h);
+		}
+		if (isRed(h.left) && isRed(h.right)) {
+			flipColors(h);
+		}
+		return h;
+	}
+
+	// rotations keep the subtree root's color and make the old root red
+	private BSTNode<E> rotateLeftRed(BSTNode<E> h) {
+		BSTNode<E> pivot = rotateLeft(h);
+		recolor(pivot, h.getColor());
+		recolor(h, 'R');
+		return pivot;
+	}
+
+	private BSTNode<E> rotateRightRed(BSTNode<E> h) {
+		BSTNode<E> pivot = rotateRight(h);
+		recolor(pivot, h.getColor());
+		recolor(h, 'R');
+		return pivot;
+	}
+
+	private void flipColors(BSTNode<E> h) {
+		recolor(h, flip(h.getColor()));
+		recolor(h.left, flip(h.left.getColor()));
+		recolor(h.right, flip(h.right.getColor()));
+	}
+
+	private static char flip(char color) {
+		return color == 'R' ? 'B' : 'R';
+	}
+
+	private void recolor(BSTNode<E> node, char color) {
+		rebalanced();
+		node.setColor(color);
+	}
+
+	private static boolean isRed(BSTNode<?> node) {
+		return node != null && node.getColor() == 'R';
+	}
+
+	private static <E extends Comparable<E>> void setLeft(BSTNode<E> parent, BSTNode<E> child) {
+		parent.left = child;
+		if (child != null) {
+			child.parent = parent;
+		}
+	}
+
+	private static <E extends Comparable<E>> void setRight(BSTNode<E> parent, BSTNode<E> child) {
+		parent.right = child;
+		if (child != null) {
+			child.parent = parent;
+		}
+	}
+
+}
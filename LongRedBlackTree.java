@@ -0,0 +1,106 @@
+package redBlackTrees;
+
+import java.util.Arrays;
+
+/**
+ * RedBlackTree specialised for long keys. Keys are stored unboxed next to the
+ * node arrays of ArrayRedBlackTree and compared with plain long comparisons.
+ */
+public class LongRedBlackTree extends ArrayRedBlackTree {
+
+	private long[] keys;
+
+	public LongRedBlackTree() {
+		super();
+		this.keys = new long[this.left.length];
+	}
+
+	public LongRedBlackTree(long... args) {
+		super(args.length);
+		this.keys = new long[this.left.length];
+		for (long element : args) {
+			insert(element);
+		}
+	}
+
+	@Override
+	protected void growKeys(int capacity) {
+		this.keys = Arrays.copyOf(this.keys, capacity);
+	}
+
+	public boolean find(long key) {
+		return node(key) != NIL;
+	}
+
+	// returns false if key was already in the tree
+	public boolean insert(long key) {
+		int current = this.root;
+		int parent = NIL;
+		boolean asLeft = false;
+		while (current != NIL) {
+			long data = this.keys[current];
+			if (key == data) {
+				return false;
+			}
+			parent = current;
+			asLeft = key < data;
+			current = asLeft ? this.left[current] : this.right[current];
+		}
+		int child = allocate();
+		this.keys[child] = key;
+		attach(child, parent, asLeft);
+		return true;
+	}
+
+	// returns false if key was not in the tree
+	public boolean delete(long key) {
+		int node = node(key);
+		if (node == NIL) {
+			return false;
+		}
+		remove(node);
+		return true;
+	}
+
+	private int node(long key) {
+		int current = this.root;
+		while (current != NIL) {
+			long data = this.keys[current];
+			if (key == data) {
+				return current;
+			}
+			current = key < data ? this.left[current] : this.right[current];
+		}
+		return NIL;
+	}
+
+	public long[] preOrder() {
+		return toKeys(preOrderSlots());
+	}
+
+	public long[] inOrder() {
+		return toKeys(inOrderSlots());
+	}
+
+	public long[] postOrder() {
+		return toKeys(postOrderSlots());
+	}
+
+	public long[] breadthFirst() {
+		return toKeys(breadthFirstSlots());
+	}
+
+	private long[] toKeys(int[] slots) {
+		long[] list = new long[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			list[i] = this.keys[slots[i]];
+		}
+		return list;
+	}
+
+	@Override
+	protected String keyToString(int node) {
+		return Long.toString(this.keys[node]);
+	}
+
+}
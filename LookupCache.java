@@ -0,0 +1,211 @@
+package redBlackTrees;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Bounded cache of contains() answers for a RedBlackTree, see
+ * RedBlackTree.setLookupCache(). A hit is one hash probe instead of a descent
+ * through the tree, which pays off when a few keys get most of the lookups.
+ *
+ * Open addressing with linear probing in a table twice the capacity, so probe
+ * runs stay short. When full, a clock hand sweeps the table: an entry hit since
+ * the hand last passed gets a second chance, the first one that was not is
+ * evicted. A key is only admitted on its second miss within a while (a one bit
+ * per slot "seen" filter, cleared every few capacities' worth of misses, as the
+ * doorkeeper of TinyLFU), so one-off lookups do not push out hot keys. Both
+ * hits and misses (key absent) are cached; the tree updates
+ * entries for keys it inserts or deletes and clears the cache when it is
+ * emptied or split.
+ *
+ * Keys are matched with hashCode() and equals(), the tree with compareTo(), so
+ * only key types whose natural order is consistent with equals qualify (Integer,
+ * Long, String, ...), not e.g. BigDecimal. Not thread safe, like the tree.
+ */
+public final class LookupCache<E> {
+
+	private final int capacity;
+	private final int mask;
+	private final Object[] keys; // null = empty slot
+	private final boolean[] present;
+	private final boolean[] referenced;
+	private int size = 0;
+	private int hand = 0;
+	private final long[] seen; // admission filter, one bit per slot
+	private int seenSince = 0; // misses since it was last cleared
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public LookupCache(int capacity) {
+		if (capacity < 1 || capacity > 1 << 29) {
+			throw new IllegalArgumentException("Capacity out of range: " + capacity);
+		}
+		this.capacity = capacity;
+		int slots = Integer.highestOneBit(capacity - 1 | 1) << 2; // >= 2 * capacity
+		this.mask = slots - 1;
+		this.keys = new Object[slots];
+		this.present = new boolean[slots];
+		this.referenced = new boolean[slots];
+		this.seen = new long[Math.max(1, slots >>> 6)];
+	}
+
+	// spreads the high bits down, Integer keys hash to themselves
+	private int slot(Object key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & this.mask;
+	}
+
+	private int find(Object key) {
+		for (int i = slot(key);; i = (i + 1) & this.mask) {
+			Object candidate = this.keys[i];
+			if (candidate == null) {
+				return -1;
+			}
+			if (candidate.equals(key)) {
+				return i;
+			}
+		}
+	}
+
+	// whether key is in the tree, or null if not cached; counts a hit or a miss
+	Boolean get(Object key) {
+		int i = find(key);
+		if (i < 0) {
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+		this.referenced[i] = true;
+		return this.present[i];
+	}
+
+	// caches the tree's answer for key after a miss, if key missed recently before
+	void put(Object key, boolean inTree) {
+		Objects.requireNonNull(key);
+		if (!admit(key)) {
+			return;
+		}
+		if (this.size == this.capacity) {
+			evict();
+		}
+		int i = slot(key);
+		while (this.keys[i] != null) {
+			i = (i + 1) & this.mask;
+		}
+		this.keys[i] = key;
+		this.present[i] = inTree;
+		this.referenced[i] = false;
+		this.size++;
+	}
+
+	// the tree inserted or deleted key; keeps an entry for it correct, adds none
+	void update(Object key, boolean inTree) {
+		int i = find(key);
+		if (i >= 0) {
+			this.present[i] = inTree;
+		}
+	}
+
+	private boolean admit(Object key) {
+		if (++this.seenSince > 4 * this.capacity) {
+			Arrays.fill(this.seen, 0);
+			this.seenSince = 0;
+		}
+		int bit = slot(key) ^ (key.hashCode() >>> 7); // another bit than the key's home slot
+		int word = (bit & this.mask) >>> 6;
+		long mask = 1L << bit;
+		if ((this.seen[word] & mask) != 0) {
+			return true;
+		}
+		this.seen[word] |= mask;
+		return false;
+	}
+
+	private void evict() {
+		while (true) {
+			int i = this.hand;
+			this.hand = (i + 1) & this.mask;
+			if (this.keys[i] == null) {
+				continue;
+			}
+			if (this.referenced[i]) {
+				this.referenced[i] = false; // second chance
+				continue;
+			}
+			remove(i);
+			this.evictions++;
+			return;
+		}
+	}
+
+	// Empties slot i and shifts later entries of the probe run back into the gap,
+	// so lookups never need tombstones
+	private void remove(int i) {
+		int gap = i;
+		for (int j = (i + 1) & this.mask; this.keys[j] != null; j = (j + 1) & this.mask) {
+			int home = slot(this.keys[j]);
+			// j may move to gap unless its home lies cyclically in (gap, j]
+			if (((j - home) & this.mask) >= ((j - gap) & this.mask)) {
+				this.keys[gap] = this.keys[j];
+				this.present[gap] = this.present[j];
+				this.referenced[gap] = this.referenced[j];
+				gap = j;
+			}
+		}
+		this.keys[gap] = null;
+		this.present[gap] = false;
+		this.referenced[gap] = false;
+		this.size--;
+	}
+
+	// drops every entry, the counters stay
+	void clear() {
+		Arrays.fill(this.keys, null);
+		Arrays.fill(this.seen, 0);
+		this.seenSince = 0;
+		Arrays.fill(this.referenced, false);
+		this.size = 0;
+		this.hand = 0;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public long getHits() {
+		return this.hits;
+	}
+
+	public long getMisses() {
+		return this.misses;
+	}
+
+	public long getEvictions() {
+		return this.evictions;
+	}
+
+	// hits / lookups, 0 before the first lookup
+	public double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0 : (double) this.hits / lookups;
+	}
+
+	public void resetCounters() {
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%,d of %,d entries, hit rate %.1f%% (%,d hits, %,d misses), %,d evictions", this.size,
+				this.capacity, 100 * getHitRate(), this.hits, this.misses, this.evictions);
+	}
+
+}
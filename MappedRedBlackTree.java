@@ -0,0 +1,214 @@
+package redBlackTrees;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OffHeapRedBlackTree whose chunks are memory mapped regions of a file, so the
+ * tree outlives the process. open() only reads the header and maps the chunks;
+ * pages are faulted in as find() and the traversals touch them, nothing is
+ * rebuilt. force() flushes the nodes and then the header to disk.
+ *
+ * File layout: a HEADER_BYTES header, then chunk i at HEADER_BYTES + i * CHUNK_BYTES.
+ * The first change after a force() marks the file dirty before any node is
+ * written. Opening a dirty file (the process died before force() or close())
+ * rebuilds the tree from the node records still in use: their keys are never
+ * moved, only the links are written again, so a crash during recovery just
+ * means recovering again on the next open(). Changes since the last force() may
+ * or may not be in the recovered tree, each one whole: a record never crosses a
+ * page, so its key and in-use flag always reach the file together.
+ */
+public class MappedRedBlackTree extends OffHeapRedBlackTree implements Closeable {
+
+	private static final int MAGIC = 0x52425446; // "RBTF"
+	private static final int VERSION = 3; // 2: records carry an in-use flag, 3: records padded to 32 bytes
+	private static final int HEADER_BYTES = 4096; // one page, so chunks stay page aligned
+
+	// header fields, all ints
+	private static final int MAGIC_AT = 0;
+	private static final int VERSION_AT = 4;
+	private static final int NODE_BYTES_AT = 8;
+	private static final int CHUNK_SHIFT_AT = 12;
+	private static final int CLEAN_AT = 16; // 1 once force() has written everything below
+	private static final int SIZE_AT = 20;
+	private static final int BLACK_HEIGHT_AT = 24;
+	private static final int ROOT_AT = 28;
+	private static final int NEXT_SLOT_AT = 32;
+	private static final int FREE_LIST_AT = 36;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private boolean clean;
+	private boolean recovered = false;
+
+	private MappedRedBlackTree(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		this.header.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Opens the tree stored in file, or creates an empty one if the file does not
+	 * exist or is empty. A file that was not forced after its last change is
+	 * recovered, see recovered(). Throws IOException for a file in another format.
+	 */
+	public static MappedRedBlackTree open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			boolean created = channel.size() == 0;
+			MappedRedBlackTree tree = new MappedRedBlackTree(channel);
+			if (created) {
+				tree.writeHeader();
+				tree.header.force();
+			}
+			else {
+				tree.readHeader(file);
+			}
+			return tree;
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void readHeader(Path file) throws IOException {
+		if (this.header.getInt(MAGIC_AT) != MAGIC) {
+			throw new IOException(file + " is not a tree file");
+		}
+		if (this.header.getInt(VERSION_AT) != VERSION || this.header.getInt(NODE_BYTES_AT) != NODE_BYTES
+				|| this.header.getInt(CHUNK_SHIFT_AT) != CHUNK_SHIFT) {
+			throw new IOException(file + " has an unsupported format version " + this.header.getInt(VERSION_AT));
+		}
+		if (this.header.getInt(CLEAN_AT) != 1) {
+			recover();
+			return;
+		}
+		this.size = this.header.getInt(SIZE_AT);
+		this.root = this.header.getInt(ROOT_AT);
+		this.nextSlot = this.header.getInt(NEXT_SLOT_AT);
+		this.freeList = this.header.getInt(FREE_LIST_AT);
+		this.clean = true;
+		// mapping is cheap, the pages themselves load on first touch
+		int chunks = this.nextSlot == 1 ? 0 : ((this.nextSlot - 1) >>> CHUNK_SHIFT) + 1;
+		for (int i = 0; i < chunks; i++) {
+			addChunk();
+		}
+	}
+
+	/*
+	 * The header may be stale and the links half rewritten, but every slot whose
+	 * in-use flag is set holds a whole key. Relinks those slots by key into a
+	 * fresh tree, frees the others, then forces the result.
+	 */
+	private void recover() throws IOException {
+		int chunks = (int) ((this.channel.size() - HEADER_BYTES) / CHUNK_BYTES);
+		for (int i = 0; i < chunks; i++) {
+			addChunk();
+		}
+		this.root = NIL;
+		this.size = 0;
+		this.freeList = NIL;
+		this.nextSlot = 1;
+		this.clean = false;
+		if (chunks == 0) {
+			force();
+			this.recovered = true;
+			return;
+		}
+		setLeft(NIL, NIL);
+		setRight(NIL, NIL);
+		setParent(NIL, NIL);
+		setBlack(NIL);
+		for (int slot = chunks * CHUNK_NODES - 1; slot > NIL; slot--) {
+			if (inUse(slot)) {
+				this.nextSlot = slot + 1;
+				break;
+			}
+		}
+		for (int slot = 1; slot < this.nextSlot; slot++) {
+			if (inUse(slot)) {
+				relink(slot);
+			}
+			else {
+				release(slot);
+			}
+		}
+		force();
+		this.recovered = true;
+	}
+
+	// whether open() had to rebuild the tree because the file was not forced after its last change
+	public boolean recovered() {
+		return this.recovered;
+	}
+
+	private void writeHeader() {
+		this.header.putInt(MAGIC_AT, MAGIC);
+		this.header.putInt(VERSION_AT, VERSION);
+		this.header.putInt(NODE_BYTES_AT, NODE_BYTES);
+		this.header.putInt(CHUNK_SHIFT_AT, CHUNK_SHIFT);
+		this.header.putInt(SIZE_AT, this.size);
+		this.header.putInt(BLACK_HEIGHT_AT, blackHeight());
+		this.header.putInt(ROOT_AT, this.root);
+		this.header.putInt(NEXT_SLOT_AT, this.nextSlot);
+		this.header.putInt(FREE_LIST_AT, this.freeList);
+		this.header.putInt(CLEAN_AT, 1);
+		this.clean = true;
+	}
+
+	// the dirty mark has to reach the file before any node changes can
+	@Override
+	protected void beforeChange() {
+		if (this.clean) {
+			this.header.putInt(CLEAN_AT, 0);
+			this.header.force();
+			this.clean = false;
+		}
+	}
+
+	@Override
+	protected ByteBuffer newChunk(int index) {
+		try {
+			return this.channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * CHUNK_BYTES, CHUNK_BYTES);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes every change so far to disk: the nodes first, then the header that
+	 * points at them and marks the file clean.
+	 */
+	public void force() {
+		if (this.clean) {
+			return;
+		}
+		for (int i = 0; i < chunkCount(); i++) {
+			((MappedByteBuffer) chunk(i)).force();
+		}
+		writeHeader();
+		this.header.force();
+	}
+
+	// black height as of the last force() (or open), read from the header
+	public int storedBlackHeight() {
+		return this.header.getInt(BLACK_HEIGHT_AT);
+	}
+
+	// forces, then closes the file; the mappings stay valid until garbage collected
+	@Override
+	public void close() throws IOException {
+		force();
+		this.channel.close();
+	}
+
+}
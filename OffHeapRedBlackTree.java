@@ -0,0 +1,267 @@
+package redBlackTrees;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Red black tree of long keys whose nodes live outside the Java heap, in direct
+ * ByteBuffers. A node is an int slot as in ArrayRedBlackTree (slot 0 is NIL); its
+ * links, color, in-use flag and key sit in a fixed 32 byte record. Records are kept in chunks
+ * of CHUNK_NODES, so growing the tree adds a chunk instead of copying, and a tree
+ * can hold far more than the 2GB a single buffer can address. The heap only holds
+ * the chunk table, so its size stays flat however big the tree gets.
+ * Rebalancing and traversals are those of SlotRedBlackTree, as for ArrayRedBlackTree.
+ */
+public class OffHeapRedBlackTree extends SlotRedBlackTree {
+
+	// node record layout. 24 bytes are used; padding to a power of two means no
+	// record ever straddles a 4 KiB page, which MappedRedBlackTree relies on
+	protected static final int NODE_BYTES = 32;
+	private static final int LEFT = 0;
+	private static final int RIGHT = 4;
+	private static final int PARENT = 8;
+	private static final int COLOR = 12; // 1 = red
+	private static final int IN_USE = 13; // 1 while the slot holds a key, 0 when free or never used
+	private static final int KEY = 16;
+
+	protected static final int CHUNK_SHIFT = 16;
+	protected static final int CHUNK_NODES = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_NODES - 1;
+	protected static final long CHUNK_BYTES = (long) CHUNK_NODES * NODE_BYTES;
+
+	private ByteBuffer[] chunks = new ByteBuffer[4];
+	private int chunkCount = 0;
+
+	// chunks are added by the first allocate() that needs them; chunk 0 also holds
+	// NIL, whose zeroed record is black with NIL links
+	public OffHeapRedBlackTree() {
+	}
+
+	public OffHeapRedBlackTree(long... args) {
+		this();
+		for (long element : args) {
+			insert(element);
+		}
+	}
+
+	/*
+	 * Memory for chunk index; must come back zeroed or holding the records written
+	 * earlier. Subclasses can back the chunks with something else, e.g. a file.
+	 */
+	protected ByteBuffer newChunk(int index) {
+		return ByteBuffer.allocateDirect((int) CHUNK_BYTES);
+	}
+
+	protected final void addChunk() {
+		if (this.chunkCount == this.chunks.length) {
+			this.chunks = Arrays.copyOf(this.chunks, this.chunkCount * 2);
+		}
+		this.chunks[this.chunkCount] = newChunk(this.chunkCount).order(ByteOrder.LITTLE_ENDIAN);
+		this.chunkCount++;
+	}
+
+	protected final int chunkCount() {
+		return this.chunkCount;
+	}
+
+	protected final ByteBuffer chunk(int index) {
+		return this.chunks[index];
+	}
+
+	// record accessors
+	private ByteBuffer chunkOf(int node) {
+		return this.chunks[node >>> CHUNK_SHIFT];
+	}
+
+	private static int offset(int node) {
+		return (node & CHUNK_MASK) * NODE_BYTES;
+	}
+
+	@Override
+	protected final int left(int node) {
+		return chunkOf(node).getInt(offset(node) + LEFT);
+	}
+
+	@Override
+	protected final int right(int node) {
+		return chunkOf(node).getInt(offset(node) + RIGHT);
+	}
+
+	@Override
+	protected final int parent(int node) {
+		return chunkOf(node).getInt(offset(node) + PARENT);
+	}
+
+	protected final long key(int node) {
+		return chunkOf(node).getLong(offset(node) + KEY);
+	}
+
+	@Override
+	protected final void setLeft(int node, int child) {
+		chunkOf(node).putInt(offset(node) + LEFT, child);
+	}
+
+	@Override
+	protected final void setRight(int node, int child) {
+		chunkOf(node).putInt(offset(node) + RIGHT, child);
+	}
+
+	@Override
+	protected final void setParent(int node, int parent) {
+		chunkOf(node).putInt(offset(node) + PARENT, parent);
+	}
+
+	private void setKey(int node, long key) {
+		chunkOf(node).putLong(offset(node) + KEY, key);
+	}
+
+	@Override
+	protected final boolean isRed(int node) {
+		return chunkOf(node).get(offset(node) + COLOR) != 0;
+	}
+
+	@Override
+	protected final void setRed(int node) {
+		chunkOf(node).put(offset(node) + COLOR, (byte) 1);
+	}
+
+	@Override
+	protected final void setBlack(int node) {
+		chunkOf(node).put(offset(node) + COLOR, (byte) 0);
+	}
+
+	protected final boolean inUse(int node) {
+		return chunkOf(node).get(offset(node) + IN_USE) != 0;
+	}
+
+	@Override
+	protected final void release(int node) {
+		chunkOf(node).put(offset(node) + IN_USE, (byte) 0);
+		super.release(node);
+	}
+
+	@Override
+	protected final void ensureSlot(int slot) {
+		if (slot >>> CHUNK_SHIFT == this.chunkCount) {
+			addChunk();
+		}
+	}
+
+	public boolean find(long key) {
+		return node(key) != NIL;
+	}
+
+	// returns false if key was already in the tree
+	public boolean insert(long key) {
+		int current = this.root;
+		int parent = NIL;
+		boolean asLeft = false;
+		while (current != NIL) {
+			long data = key(current);
+			if (key == data) {
+				return false;
+			}
+			parent = current;
+			asLeft = key < data;
+			current = asLeft ? left(current) : right(current);
+		}
+		beforeChange();
+		int child = allocate();
+		setKey(child, key);
+		chunkOf(child).put(offset(child) + IN_USE, (byte) 1);
+		attach(child, parent, asLeft);
+		return true;
+	}
+
+	// returns false if key was not in the tree
+	public boolean delete(long key) {
+		int node = node(key);
+		if (node == NIL) {
+			return false;
+		}
+		beforeChange();
+		remove(node);
+		return true;
+	}
+
+	// Called once an insert or delete is known to change the tree, before any record is written
+	protected void beforeChange() {
+	}
+
+	/*
+	 * Links slot, whose record holds a key but whose links are stale, back into
+	 * the tree by that key, or frees it if an equal key is already in. Only
+	 * links and colors are written, so a tree can be rebuilt from the slots in
+	 * use without moving any key, see MappedRedBlackTree.
+	 */
+	protected final void relink(int slot) {
+		long key = key(slot);
+		int current = this.root;
+		int parent = NIL;
+		boolean asLeft = false;
+		while (current != NIL) {
+			long data = key(current);
+			if (key == data) {
+				release(slot);
+				return;
+			}
+			parent = current;
+			asLeft = key < data;
+			current = asLeft ? left(current) : right(current);
+		}
+		setLeft(slot, NIL);
+		setRight(slot, NIL);
+		setRed(slot);
+		attach(slot, parent, asLeft);
+	}
+
+	private int node(long key) {
+		int current = this.root;
+		while (current != NIL) {
+			long data = key(current);
+			if (key == data) {
+				return current;
+			}
+			current = key < data ? left(current) : right(current);
+		}
+		return NIL;
+	}
+
+	// inOrder(action) streams the keys without materialising them, so walking even
+	// a huge tree keeps the heap flat; the array versions match LongRedBlackTree
+	public void inOrder(LongConsumer action) {
+		inOrderSlots(node -> action.accept(key(node)));
+	}
+
+	public long[] preOrder() {
+		return toKeys(preOrderSlots());
+	}
+
+	public long[] inOrder() {
+		return toKeys(inOrderSlots());
+	}
+
+	public long[] postOrder() {
+		return toKeys(postOrderSlots());
+	}
+
+	public long[] breadthFirst() {
+		return toKeys(breadthFirstSlots());
+	}
+
+	private long[] toKeys(int[] slots) {
+		long[] keys = new long[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			keys[i] = key(slots[i]);
+		}
+		return keys;
+	}
+
+	@Override
+	protected String keyToString(int node) {
+		return Long.toString(key(node));
+	}
+
+}
@@ -0,0 +1,109 @@
+package redBlackTrees;
+
+/**
+ * RedBlackTree in which every node also stores the size of its subtree, so the
+ * position of a key can be found in O(log n). Sizes are kept up to date through
+ * the augment hooks of RedBlackTree (rotations, insert and delete).
+ */
+public class OrderStatisticTree<E extends Comparable<E>> extends RedBlackTree<E> {
+
+	private static class SizedNode<E extends Comparable<E>> extends BSTNode<E> {
+
+		private int subtreeSize = 1;
+
+		SizedNode(E data) {
+			super(data, 'R');
+		}
+	}
+
+	public OrderStatisticTree() {
+		super();
+	}
+
+	@SafeVarargs
+	public OrderStatisticTree(E... args) {
+		for (E element : args) {
+			insert(element);
+		}
+	}
+
+	@Override
+	protected BSTNode<E> newNode(E key) {
+		return new SizedNode<>(key);
+	}
+
+	@Override
+	protected void augment(BSTNode<E> node) {
+		((SizedNode<E>) node).subtreeSize = 1 + subtreeSize(node.left) + subtreeSize(node.right);
+	}
+
+	@Override
+	protected void augmentPath(BSTNode<E> node) {
+		while (!isNil(node)) {
+			augment(node);
+			node = node.parent;
+		}
+	}
+
+	private int subtreeSize(BSTNode<E> node) {
+		if (isNil(node)) {
+			return 0;
+		}
+		return ((SizedNode<E>) node).subtreeSize;
+	}
+
+	// number of keys strictly smaller than key
+	public int rank(E key) {
+		return countBelow(key, false);
+	}
+
+	// i-th smallest key, counting from 0
+	public E select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		BSTNode<E> current = this.root;
+		while (true) {
+			int leftSize = subtreeSize(current.left);
+			if (index < leftSize) {
+				current = current.left;
+			}
+			else if (index > leftSize) {
+				index -= leftSize + 1;
+				current = current.right;
+			}
+			else {
+				return current.getData();
+			}
+		}
+	}
+
+	// number of keys k with low <= k <= high
+	public int countInRange(E low, E high) {
+		if (low.compareTo(high) > 0) {
+			return 0;
+		}
+		return countBelow(high, true) - countBelow(low, false);
+	}
+
+	// keys < key, or keys <= key when inclusive
+	private int countBelow(E key, boolean inclusive) {
+		int count = 0;
+		BSTNode<E> current = this.root;
+		while (!isNil(current)) {
+			int cmp = key.compareTo(current.getData());
+			if (cmp < 0) {
+				current = current.left;
+			}
+			else if (cmp > 0) {
+				count += subtreeSize(current.left) + 1;
+				current = current.right;
+			}
+			else {
+				return count + subtreeSize(current.left) + (inclusive ? 1 : 0);
+			}
+		}
+		return count;
+	}
+
+}
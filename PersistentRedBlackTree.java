@@ -0,0 +1,460 @@
+package redBlackTrees;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable red black tree. insert() and delete() leave this version untouched and
+ * return a new one that shares every node except the O(log n) nodes on the search
+ * path (plus the few siblings the fix-up recolors), which are copied first.
+ * A version is therefore a free snapshot and can be read from any thread without
+ * locking. Rebalancing follows the same cases as RedBlackTree.insertCleanup() and
+ * fixDoubleBlack(); since nodes have no parent pointers, the copied search path
+ * stands in for them.
+ */
+public final class PersistentRedBlackTree<E extends Comparable<E>> implements Iterable<E> {
+
+	// Never modified once the version holding it is returned. null children are NIL (black).
+	private static final class Node<E> {
+
+		private E data;
+		private Node<E> left;
+		private Node<E> right;
+		private char color;
+
+		private Node(E data, Node<E> left, Node<E> right, char color) {
+			this.data = data;
+			this.left = left;
+			this.right = right;
+			this.color = color;
+		}
+
+		private Node<E> copy() {
+			return new Node<>(this.data, this.left, this.right, this.color);
+		}
+	}
+
+	private final Node<E> root;
+	private final int size;
+
+	public PersistentRedBlackTree() {
+		this(null, 0);
+	}
+
+	private PersistentRedBlackTree(Node<E> root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.root == null;
+	}
+
+	public boolean find(E key) {
+		Node<E> current = this.root;
+		while (current != null) {
+			int cmp = key.compareTo(current.data);
+			if (cmp == 0) {
+				return true;
+			}
+			current = cmp < 0 ? current.left : current.right;
+		}
+		return false;
+	}
+
+	// returns this version unchanged if key is already present
+	public PersistentRedBlackTree<E> insert(E key) {
+		if (find(key)) {
+			return this;
+		}
+		Path<E> path = new Path<>(this.root, this.size + 1);
+		Node<E> child = new Node<>(key, null, null, 'R');
+		if (this.root == null) {
+			path.root = child;
+		}
+		else {
+			// copy the search path, path.nodes[path.depth] is the new leaf's parent
+			Node<E> current = path.copyRoot();
+			while (true) {
+				boolean goLeft = key.compareTo(current.data) < 0;
+				Node<E> next = goLeft ? current.left : current.right;
+				if (next == null) {
+					if (goLeft) {
+						current.left = child;
+					}
+					else {
+						current.right = child;
+					}
+					break;
+				}
+				current = path.push(next.copy(), goLeft);
+			}
+		}
+		path.nodes[++path.depth] = child;
+		path.insertCleanup();
+		return new PersistentRedBlackTree<>(path.root, this.size + 1);
+	}
+
+	// returns this version unchanged if key is not present
+	public PersistentRedBlackTree<E> delete(E key) {
+		if (!find(key)) {
+			return this;
+		}
+		Path<E> path = new Path<>(this.root, this.size);
+		Node<E> node = path.copyRoot();
+		int cmp;
+		while ((cmp = key.compareTo(node.data)) != 0) {
+			node = path.push(cmp < 0 ? node.left.copy() : node.right.copy(), cmp < 0);
+		}
+		if (node.left != null && node.right != null) {
+			// Case 3: two children, take over the max of the left subtree and delete that instead
+			Node<E> maxLeftNode = path.push(node.left.copy(), true);
+			while (maxLeftNode.right != null) {
+				maxLeftNode = path.push(maxLeftNode.right.copy(), false);
+			}
+			node.data = maxLeftNode.data;
+			node = maxLeftNode;
+		}
+		path.unlink(node);
+		return new PersistentRedBlackTree<>(path.root, this.size - 1);
+	}
+
+	/*
+	 * The copied search path of one update. nodes[0] is the (copied) root and
+	 * nodes[i - 1] is the parent of nodes[i], so the fix-ups can walk upwards the
+	 * way RedBlackTree does through parent pointers. Everything on the path is a
+	 * private copy; any other node is copied before it is recolored or rotated.
+	 */
+	private static final class Path<E> {
+
+		private final Node<E>[] nodes;
+		private int depth = -1;
+		private Node<E> root;
+
+		@SuppressWarnings("unchecked")
+		private Path(Node<E> root, int size) {
+			// height <= 2 * log2(n + 1); case 2 of the delete fix-up can push one extra node
+			this.nodes = (Node<E>[]) new Node<?>[2 * (32 - Integer.numberOfLeadingZeros(size + 1)) + 3];
+			this.root = root;
+		}
+
+		private Node<E> copyRoot() {
+			this.root = this.root.copy();
+			this.nodes[++this.depth] = this.root;
+			return this.root;
+		}
+
+		// links a copied child under the current path end and appends it
+		private Node<E> push(Node<E> child, boolean asLeft) {
+			Node<E> parent = this.nodes[this.depth];
+			if (asLeft) {
+				parent.left = child;
+			}
+			else {
+				parent.right = child;
+			}
+			this.nodes[++this.depth] = child;
+			return child;
+		}
+
+		private Node<E> parentOf(int index) {
+			return index > 0 ? this.nodes[index - 1] : null;
+		}
+
+		// puts replacement where node hangs off parent (null parent = root)
+		private void replaceChild(Node<E> parent, Node<E> node, Node<E> replacement) {
+			if (parent == null) {
+				this.root = replacement;
+			}
+			else if (parent.left == node) {
+				parent.left = replacement;
+			}
+			else {
+				parent.right = replacement;
+			}
+		}
+
+		// subTreeRoot and its right child must both be copies
+		private Node<E> leftRotate(Node<E> parent, Node<E> subTreeRoot) {
+			Node<E> pivot = subTreeRoot.right;
+			subTreeRoot.right = pivot.left;
+			pivot.left = subTreeRoot;
+			replaceChild(parent, subTreeRoot, pivot);
+			return pivot;
+		}
+
+		// Inverse of leftRotate
+		private Node<E> rightRotate(Node<E> parent, Node<E> subTreeRoot) {
+			Node<E> pivot = subTreeRoot.left;
+			subTreeRoot.left = pivot.right;
+			pivot.right = subTreeRoot;
+			replaceChild(parent, subTreeRoot, pivot);
+			return pivot;
+		}
+
+		private static boolean isRed(Node<?> node) {
+			return node != null && node.color == 'R';
+		}
+
+		// nodes[depth] is the new red leaf
+		private void insertCleanup() {
+			int index = this.depth;
+			while (index > 0 && isRed(this.nodes[index - 1])) {
+				Node<E> node = this.nodes[index];
+				Node<E> parent = this.nodes[index - 1];
+				Node<E> grandparent = this.nodes[index - 2]; // exists, a red parent is never the root
+				boolean parentIsLeft = grandparent.left == parent;
+				Node<E> uncle = parentIsLeft ? grandparent.right : grandparent.left;
+
+				if (isRed(uncle)) { // case 3: parent & uncle red
+					uncle = uncle.copy();
+					if (parentIsLeft) {
+						grandparent.right = uncle;
+					}
+					else {
+						grandparent.left = uncle;
+					}
+					parent.color = 'B';
+					uncle.color = 'B';
+					grandparent.color = 'R';
+					index -= 2; // continue on grandparent
+					continue;
+				}
+				// case 4: parent red AND uncle black
+				if (parentIsLeft && parent.right == node) { // case 4a: left right zigzag
+					parent = leftRotate(grandparent, parent);
+				}
+				else if (!parentIsLeft && parent.left == node) { // case 4b: right left zigzag
+					parent = rightRotate(grandparent, parent);
+				}
+				// case 5: straight line, rotate grandparent
+				parent.color = 'B';
+				grandparent.color = 'R';
+				if (parentIsLeft) {
+					rightRotate(parentOf(index - 2), grandparent);
+				}
+				else {
+					leftRotate(parentOf(index - 2), grandparent);
+				}
+				break;
+			}
+			this.root.color = 'B';
+		}
+
+		// Splices out nodes[depth] (at most one child) and restores black heights
+		private void unlink(Node<E> node) {
+			Node<E> parent = parentOf(this.depth);
+			boolean nodeIsLeft = parent != null && parent.left == node;
+			Node<E> child = node.left != null ? node.left : node.right;
+			boolean childWasRed = isRed(child);
+			if (childWasRed) { // red child takes over node's black
+				child = child.copy();
+				child.color = 'B';
+			}
+			replaceChild(parent, node, child);
+			if (node.color == 'R' || childWasRed) {
+				return;
+			}
+			this.depth--; // the path now ends at the double black node's parent
+			if (parent != null) {
+				fixDoubleBlack(child, nodeIsLeft);
+			}
+		}
+
+		/*
+		 * node (possibly NIL) is double black and is the left or right child of
+		 * nodes[depth]. Cases match RedBlackTree.fixDoubleBlack().
+		 */
+		private void fixDoubleBlack(Node<E> node, boolean nodeIsLeft) {
+			while (this.depth >= 0) {
+				Node<E> parent = this.nodes[this.depth];
+				Node<E> grandparent = parentOf(this.depth);
+				Node<E> sibling = (nodeIsLeft ? parent.right : parent.left).copy();
+				if (nodeIsLeft) {
+					parent.right = sibling;
+				}
+				else {
+					parent.left = sibling;
+				}
+
+				if (sibling.color == 'R') { // Case 2: sibling red, rotate it above parent
+					sibling.color = 'B';
+					parent.color = 'R';
+					if (nodeIsLeft) {
+						leftRotate(grandparent, parent);
+					}
+					else {
+						rightRotate(grandparent, parent);
+					}
+					// sibling now sits between grandparent and parent on the path
+					this.nodes[this.depth] = sibling;
+					this.nodes[++this.depth] = parent;
+					continue;
+				}
+				if (isRed(sibling.left) || isRed(sibling.right)) { // Case 3: sibling has a red child
+					if (!nodeIsLeft) {
+						if (isRed(sibling.left)) { // rc is the left child of sibling
+							sibling.left = sibling.left.copy();
+							sibling.left.color = 'B';
+							sibling.color = parent.color;
+							rightRotate(grandparent, parent);
+						}
+						else { // rc is the right child of sibling
+							sibling.right = sibling.right.copy();
+							sibling.right.color = parent.color;
+							leftRotate(parent, sibling);
+							rightRotate(grandparent, parent);
+						}
+					}
+					else {
+						if (isRed(sibling.right)) { // rc is the right child of sibling
+							sibling.right = sibling.right.copy();
+							sibling.right.color = 'B';
+							sibling.color = parent.color;
+							leftRotate(grandparent, parent);
+						}
+						else { // rc is the left child of sibling
+							sibling.left = sibling.left.copy();
+							sibling.left.color = parent.color;
+							rightRotate(parent, sibling);
+							leftRotate(grandparent, parent);
+						}
+					}
+					parent.color = 'B';
+					return;
+				}
+				// Case 4: sibling and both of its children are black
+				sibling.color = 'R';
+				if (parent.color == 'R') {
+					parent.color = 'B';
+					return;
+				}
+				node = parent; // parent becomes double black
+				this.depth--;
+				if (this.depth >= 0) {
+					nodeIsLeft = this.nodes[this.depth].left == node;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Black nodes on every path from the root down (NIL not counted), or -1 if the
+	 * root is red, a red node has a red child or two paths disagree. Linear in the
+	 * size; the nodes are private, so the tests check the invariants through this.
+	 */
+	int checkedBlackHeight() {
+		if (this.root != null && this.root.color == 'R') {
+			return -1;
+		}
+		return checkedBlackHeight(this.root);
+	}
+
+	private static int checkedBlackHeight(Node<?> node) {
+		if (node == null) {
+			return 0;
+		}
+		if (node.color == 'R' && (Path.isRed(node.left) || Path.isRed(node.right))) {
+			return -1;
+		}
+		int left = checkedBlackHeight(node.left);
+		int right = checkedBlackHeight(node.right);
+		if (left < 0 || left != right) {
+			return -1;
+		}
+		return left + (node.color == 'B' ? 1 : 0);
+	}
+
+	public ArrayList<E> inOrder() {
+		ArrayList<E> list = new ArrayList<>(this.size);
+		for (E element : this) {
+			list.add(element);
+		}
+		return list;
+	}
+
+	// In-order iterator over this version, with an explicit stack since there are no parent pointers
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+
+			private final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+
+			{
+				pushLeftSpine(PersistentRedBlackTree.this.root);
+			}
+
+			private void pushLeftSpine(Node<E> node) {
+				while (node != null) {
+					this.stack.push(node);
+					node = node.left;
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return !this.stack.isEmpty();
+			}
+
+			@Override
+			public E next() {
+				if (this.stack.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				Node<E> node = this.stack.pop();
+				pushLeftSpine(node.right);
+				return node.data;
+			}
+		};
+	}
+
+	/**
+	 * Original Author: Laurent Demailly
+	 * Stackoverflow post: https://stackoverflow.com/questions/4965335/how-to-print-binary-tree-diagram
+	 * Adapated algorithm into toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if (this.root == null) {
+			return sb.toString();
+		}
+		if (this.root.right != null) {
+			printTree(sb, this.root.right, true, "");
+		}
+		printNodeValue(sb, this.root);
+		if (this.root.left != null) {
+			printTree(sb, this.root.left, false, "");
+		}
+		return sb.toString();
+	}
+
+	private void printTree(StringBuilder sb, Node<E> node, boolean isRight, String indent) {
+		if (node.right != null) {
+			printTree(sb, node.right, true, indent + (isRight ? "        " : " |      "));
+		}
+		sb.append(indent);
+		if (isRight) {
+			sb.append(" /");
+		}
+		else {
+			sb.append(" \\");
+		}
+		sb.append("----- ");
+		printNodeValue(sb, node);
+		if (node.left != null) {
+			printTree(sb, node.left, false, indent + (isRight ? " |      " : "        "));
+		}
+	}
+
+	private void printNodeValue(StringBuilder sb, Node<E> node) {
+		sb.append(node.data).append("(").append(node.color).append(")\n");
+	}
+
+}
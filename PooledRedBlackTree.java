@@ -0,0 +1,116 @@
+package redBlackTrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Red black tree of generic keys stored in the array pool of ArrayRedBlackTree
+ * instead of one BSTNode object per key. Each key costs three ints, one color bit
+ * and a key reference; deleted slots are reused. It offers the basic operations
+ * of RedBlackTree under the same names (insert, delete, find, the four
+ * traversals), but it is not a RedBlackTree and not a NavigableSet: there are
+ * no views, cursors, batches, split/join or listeners.
+ */
+public class PooledRedBlackTree<E extends Comparable<E>> extends ArrayRedBlackTree {
+
+	private Object[] keys;
+
+	public PooledRedBlackTree() {
+		super();
+		this.keys = new Object[this.left.length];
+	}
+
+	@SafeVarargs
+	public PooledRedBlackTree(E... args) {
+		super(args.length);
+		this.keys = new Object[this.left.length];
+		for (E element : args) {
+			insert(element);
+		}
+	}
+
+	@Override
+	protected void growKeys(int capacity) {
+		this.keys = Arrays.copyOf(this.keys, capacity);
+	}
+
+	@SuppressWarnings("unchecked")
+	private E key(int node) {
+		return (E) this.keys[node];
+	}
+
+	// false on an empty tree, as RedBlackTree.find()
+	public boolean find(E key) {
+		return node(key) != NIL;
+	}
+
+	// duplicates are ignored
+	public void insert(E key) {
+		int current = this.root;
+		int parent = NIL;
+		boolean asLeft = false;
+		while (current != NIL) {
+			int cmp = key.compareTo(key(current));
+			if (cmp == 0) {
+				return;
+			}
+			parent = current;
+			asLeft = cmp < 0;
+			current = asLeft ? this.left[current] : this.right[current];
+		}
+		int child = allocate();
+		this.keys[child] = key;
+		attach(child, parent, asLeft);
+	}
+
+	// missing keys are ignored
+	public void delete(E key) {
+		int node = node(key);
+		if (node != NIL) {
+			remove(node);
+			this.keys[node] = null; // let the key be collected, the slot is on the free-list now
+		}
+	}
+
+	private int node(E key) {
+		int current = this.root;
+		while (current != NIL) {
+			int cmp = key.compareTo(key(current));
+			if (cmp == 0) {
+				return current;
+			}
+			current = cmp < 0 ? this.left[current] : this.right[current];
+		}
+		return NIL;
+	}
+
+	public ArrayList<E> preOrder() {
+		return toKeys(preOrderSlots());
+	}
+
+	public ArrayList<E> inOrder() {
+		return toKeys(inOrderSlots());
+	}
+
+	public ArrayList<E> postOrder() {
+		return toKeys(postOrderSlots());
+	}
+
+	public ArrayList<E> breadthFirst() {
+		return toKeys(breadthFirstSlots());
+	}
+
+	private ArrayList<E> toKeys(int[] slots) {
+		ArrayList<E> list = new ArrayList<>(slots.length);
+		for (int slot : slots) {
+			list.add(key(slot));
+		}
+		return list;
+	}
+
+	@Override
+	protected String keyToString(int node) {
+		return String.valueOf(this.keys[node]);
+	}
+
+}
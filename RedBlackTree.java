@@ -1,13 +1,94 @@
 package redBlackTrees;
 
-public class RedBlackTree<E extends Comparable<E>> extends BinarySearchTree<E> {
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
-    private final BSTNode<E> NIL = new BSTNode<>(null, 'B');
+/**
+ * Red black tree that is also a java.util.NavigableSet in natural key order.
+ * add/remove/contains follow the Set contract: they return booleans, never
+ * throw for duplicate or missing keys and never print; insert/delete/find are
+ * kept for existing callers and behave the same (find still throws on an empty
+ * tree). Null keys are rejected with NullPointerException. Not thread safe, see
+ * ConcurrentRedBlackTree. toString() draws the tree rather than listing keys.
+ */
+public class RedBlackTree<E extends Comparable<E>> extends BinarySearchTree<E> implements NavigableSet<E> {
+
+    // One black sentinel shared by every tree. Nothing ever writes to it, so whole
+    // subtrees can move between trees (split/join) and separate trees can be used
+    // from separate threads.
+    private static final BSTNode<?> SENTINEL = new BSTNode<>(null, 'B');
+
+    private final BSTNode<E> NIL = nil();
+
+    // TreeListener.NONE unless metrics were asked for; see setListener()
+    private TreeListener listener = TreeListener.NONE;
+
+    // node the last addHinted() linked in and its in-order neighbours (NIL at the
+    // ends), valid while modCount is still hintModCount
+    private BSTNode<E> hint = NIL;
+    private BSTNode<E> hintPrevious = NIL;
+    private BSTNode<E> hintNext = NIL;
+    private int hintModCount;
+
+    // null unless setLookupCache() was called
+    private LookupCache<E> lookupCache;
+
+    @SuppressWarnings("unchecked")
+    static <E extends Comparable<E>> BSTNode<E> nil() {
+        return (BSTNode<E>) SENTINEL;
+    }
 
     public RedBlackTree() {
         super();
     }
 
+    /**
+     * Reports rotations, recolors, double-black fix-ups, key comparisons and
+     * operation timings to listener, e.g. a TreeMetrics. null switches reporting
+     * off again. While no listener is set every hook is an empty default method,
+     * which the JIT inlines to nothing.
+     */
+    public void setListener(TreeListener listener) {
+        this.listener = listener == null ? TreeListener.NONE : listener;
+    }
+
+    public TreeListener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * Answers contains() and find() for recently asked keys from cache, without
+     * descending the tree, see LookupCache for the key types that qualify. The
+     * cache is emptied first and then kept in step with every insert and delete;
+     * its hit rate, together with the FIND latency of a TreeMetrics listener,
+     * shows whether its size is right. null switches caching off.
+     */
+    public void setLookupCache(LookupCache<E> cache) {
+        if (cache != null) {
+            cache.clear();
+        }
+        this.lookupCache = cache;
+    }
+
+    public LookupCache<E> getLookupCache() {
+        return this.lookupCache;
+    }
+
     @SafeVarargs
     public RedBlackTree(E... args) {
         for (E element : args) {
@@ -15,331 +96,997 @@ public class RedBlackTree<E extends Comparable<E>> extends BinarySearchTree<E> {
 		}
     }
 
+    /**
+     * Builds a tree from sorted keys in O(n) without going through insert().
+     * Unsorted input is sorted first (O(n log n)); duplicate keys are dropped.
+     */
+    @SafeVarargs
+    public static <E extends Comparable<E>> RedBlackTree<E> fromSorted(E... keys) {
+        return build(Arrays.copyOf(keys, keys.length, Object[].class));
+    }
+
+    public static <E extends Comparable<E>> RedBlackTree<E> fromSorted(List<E> keys) {
+        return build(keys.toArray());
+    }
+
+    public static <E extends Comparable<E>> RedBlackTree<E> fromSorted(Iterator<E> keys) {
+        ArrayList<E> list = new ArrayList<>();
+        while (keys.hasNext()) {
+            list.add(keys.next());
+        }
+        return build(list.toArray());
+    }
+
+    /**
+     * Writes the keys in ascending order as a snapshot (format in TreeSnapshot).
+     * out is flushed but not closed.
+     */
+    public void writeSnapshot(OutputStream out, KeyCodec<E> codec) throws IOException {
+        TreeSnapshot.write(iterator(), size(), codec, out);
+    }
+
+    public void writeSnapshot(WritableByteChannel channel, KeyCodec<E> codec) throws IOException {
+        writeSnapshot(Channels.newOutputStream(channel), codec);
+    }
+
+    /**
+     * Reads a snapshot written with the same codec. The keys arrive sorted, so
+     * the tree is built in O(n) as by fromSorted(), without insert().
+     */
+    public static <E extends Comparable<E>> RedBlackTree<E> readSnapshot(InputStream in, KeyCodec<E> codec) throws IOException {
+        return build(TreeSnapshot.read(in, codec).toArray());
+    }
+
+    public static <E extends Comparable<E>> RedBlackTree<E> readSnapshot(ReadableByteChannel channel, KeyCodec<E> codec) throws IOException {
+        return readSnapshot(Channels.newInputStream(channel), codec);
+    }
+
+    // keys is a private copy, so it may be sorted and compacted in place
+    @SuppressWarnings("unchecked")
+    private static <E extends Comparable<E>> RedBlackTree<E> build(Object[] keys) {
+        int length = keys.length;
+        boolean sorted = true;
+        for (int i = 1; i < length && sorted; i++) {
+            sorted = ((E) keys[i - 1]).compareTo((E) keys[i]) <= 0;
+        }
+        if (!sorted) {
+            Arrays.sort(keys);
+        }
+        // drop duplicates, they are adjacent now
+        int distinct = Math.min(length, 1);
+        for (int i = 1; i < length; i++) {
+            if (((E) keys[distinct - 1]).compareTo((E) keys[i]) != 0) {
+                keys[distinct++] = keys[i];
+            }
+        }
+
+        RedBlackTree<E> tree = new RedBlackTree<>();
+        if (distinct > 0) {
+            tree.root = tree.buildSubtree(keys, 0, distinct - 1, 0, redLevel(distinct));
+            tree.root.parent = tree.NIL;
+            tree.root.setColor('B'); // a single key lands on the red level
+            tree.size = distinct;
+        }
+        return tree;
+    }
+
+    // Middle key becomes the subtree root. The tree is complete except for its
+    // deepest level, those nodes are red so every path has the same black height.
+    @SuppressWarnings("unchecked")
+    private BSTNode<E> buildSubtree(Object[] keys, int low, int high, int level, int redLevel) {
+        if (low > high) {
+            return NIL;
+        }
+        int middle = (low + high) >>> 1;
+        BSTNode<E> node = new BSTNode<>((E) keys[middle], level == redLevel ? 'R' : 'B');
+        node.left = buildSubtree(keys, low, middle - 1, level + 1, redLevel);
+        node.right = buildSubtree(keys, middle + 1, high, level + 1, redLevel);
+        if (node.left != NIL) {
+            node.left.parent = node;
+        }
+        if (node.right != NIL) {
+            node.right.parent = node;
+        }
+        return node;
+    }
+
+    // depth of the (possibly partial) last level of a complete tree with size nodes
+    private static int redLevel(int size) {
+        int level = -1;
+        for (int m = size; m > 0; m >>>= 1) {
+            level++;
+        }
+        return level;
+    }
+
+    // duplicates are ignored, same as add()
     @Override
     public void insert(E key) {
-        BSTNode<E> child = new BSTNode<>(key, 'R');
-        if (super.isEmpty()) {
+        add(key);
+    }
+
+    // missing keys are ignored, same as remove()
+    @Override
+    public void delete(E key) {
+        remove(key);
+    }
+
+    // returns false, without touching the tree, if an equal key is already in it
+    @Override
+    public boolean add(E key) {
+        Objects.requireNonNull(key);
+        long start = this.listener.onStart(TreeListener.Operation.INSERT, key);
+        BSTNode<E> parent = NIL;
+        BSTNode<E> current = super.root;
+        int cmp = 0;
+        while (!isNil(current)) {
+            cmp = compare(key, current);
+            if (cmp == 0) {
+                this.listener.onFinish(TreeListener.Operation.INSERT, start);
+                return false;
+            }
+            parent = current;
+            current = cmp < 0 ? current.left : current.right;
+        }
+        attach(parent, key, cmp < 0);
+        this.listener.onFinish(TreeListener.Operation.INSERT, start);
+        return true;
+    }
+
+    // returns false if no equal key is in the tree
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object key) {
+        Objects.requireNonNull(key);
+        long start = this.listener.onStart(TreeListener.Operation.DELETE, key);
+        BSTNode<E> node = lookup((E) key);
+        if (node != null) {
+            super.removeNode(node);
+        }
+        this.listener.onFinish(TreeListener.Operation.DELETE, start);
+        return node != null;
+    }
+
+    /*
+     * Removals that find their node some other way than remove(key) (polls,
+     * views, cursors and iterators) still count as one DELETE of that key, so a
+     * TraceRecorder sees every change.
+     */
+    @Override
+    protected void removeNode(BSTNode<E> node) {
+        long start = this.listener.onStart(TreeListener.Operation.DELETE, node.getData());
+        super.removeNode(node);
+        this.listener.onFinish(TreeListener.Operation.DELETE, start);
+    }
+
+    // clear() and split/join empty the tree at once; listeners still see one DELETE per key
+    private void reportDeleteAll() {
+        if (this.listener == TreeListener.NONE) {
+            return;
+        }
+        for (E key : this) {
+            long start = this.listener.onStart(TreeListener.Operation.DELETE, key);
+            this.listener.onFinish(TreeListener.Operation.DELETE, start);
+        }
+    }
+
+    // Links a new node for key under parent (NIL parent = empty tree) and rebalances
+    private BSTNode<E> attach(BSTNode<E> parent, E key, boolean asLeft) {
+        BSTNode<E> child = newNode(key);
+        // leaf node left and right always point to NIL
+        child.left = NIL;
+        child.right = NIL;
+        child.parent = parent;
+        if (parent == NIL) {
             super.root = child;
-            child.left = NIL;
-            child.right = NIL;
-            child.parent = NIL;
+        }
+        else if (asLeft) {
+            parent.left = child;
+        }
+        else {
+            parent.right = child;
+        }
+        this.modCount++;
+        if (this.size >= 0) {
+            this.size++;
+        }
+        if (this.lookupCache != null) {
+            this.lookupCache.update(key, true);
+        }
+        augmentPath(child.parent);
+        insertCleanup(child);
+        return child;
+    }
+
+    /**
+     * add() for keys that mostly land next to the previous one, e.g. timestamps
+     * or sequence numbers. The node the last addHinted() linked in is remembered
+     * together with its in-order neighbours; a key that falls between the hint
+     * and one of them hangs off one of those two nodes, found with two
+     * comparisons instead of a descent from the root. Appends thus cost O(1)
+     * search plus the rebalancing. Any other change to the tree drops the hint,
+     * and keys elsewhere fall back to searching from the root.
+     */
+    public boolean addHinted(E key) {
+        Objects.requireNonNull(key);
+        long start = this.listener.onStart(TreeListener.Operation.INSERT, key);
+        BSTNode<E> parent = NIL;
+        boolean asLeft = false;
+        BSTNode<E> previous = NIL; // neighbours the new node will have
+        BSTNode<E> next = NIL;
+        boolean placed = false;
+        if (this.hint != NIL && this.hintModCount == this.modCount) {
+            int cmp = compare(key, this.hint);
+            int cmpNeighbour = -cmp; // key vs the neighbour on its side; past the end counts as inside
+            if (cmp > 0 && this.hintNext != NIL) {
+                cmpNeighbour = compare(key, this.hintNext);
+            }
+            else if (cmp < 0 && this.hintPrevious != NIL) {
+                cmpNeighbour = compare(key, this.hintPrevious);
+            }
+            if (cmp == 0 || cmpNeighbour == 0) {
+                this.listener.onFinish(TreeListener.Operation.INSERT, start);
+                return false;
+            }
+            if (cmp > 0 && cmpNeighbour < 0) { // between hint and its successor
+                previous = this.hint;
+                next = this.hintNext;
+                placed = true;
+            }
+            else if (cmp < 0 && cmpNeighbour > 0) { // between its predecessor and hint
+                previous = this.hintPrevious;
+                next = this.hint;
+                placed = true;
+            }
+        }
+        if (placed) {
+            // of two neighbours, one has no child on the side facing the other
+            asLeft = previous == NIL || previous.right != NIL;
+            parent = asLeft ? next : previous;
         }
         else {
-            try {
-                BSTNode<E> parent = insertionPoint(key);
-                if (key.compareTo(parent.getData()) < 0) {
-                    parent.left = child;
-                    child.parent = parent;
+            BSTNode<E> current = super.root;
+            while (!isNil(current)) {
+                int cmp = compare(key, current);
+                if (cmp == 0) {
+                    this.listener.onFinish(TreeListener.Operation.INSERT, start);
+                    return false;
                 }
-                else if (key.compareTo(parent.getData()) > 0) {
-                    parent.right = child;
-                    child.parent = parent;
+                parent = current;
+                asLeft = cmp < 0;
+                if (asLeft) {
+                    next = current;
+                    current = current.left;
+                }
+                else {
+                    previous = current;
+                    current = current.right;
                 }
-                // leaf node left and right always point to NIL
-                child.left = NIL;
-                child.right = NIL;
-            }
-            catch (DuplicateItemException e) {
-                System.out.println("Duplicate Item: " + key + "\n");
             }
         }
-        insertCleanup(child);
+        this.hint = attach(parent, key, asLeft);
+        this.hintPrevious = previous;
+        this.hintNext = next;
+        this.hintModCount = this.modCount;
+        this.listener.onFinish(TreeListener.Operation.INSERT, start);
+        return true;
     }
 
-    @Override
-	protected BSTNode<E> insertionPoint(E key) {
-		BSTNode<E> current = super.root;
-		BSTNode<E> parent = NIL;
-
-		while (current != NIL) {
-			if (key.compareTo(current.getData()) == 0) {
-				throw new DuplicateItemException("Duplicate Item");
-			} 
-			else if (key.compareTo(current.getData()) < 0) {
-				parent = current;
-				current = current.left;
-			} 
-			else if (key.compareTo(current.getData()) > 0) {
-				parent = current;
-				current = current.right;
-			}
-		}
-		return parent;
-	}
-
-    private void insertCleanup(BSTNode<E> node) {
-        if (super.root.getColor() == 'R') { // case 1: root red
-            super.root.setColor('B');
-            return;
+    /**
+     * Inserts keys given in ascending order. Each search starts from the node the
+     * previous key landed on (finger search) instead of the root, so neighbouring
+     * keys cost a short climb rather than a full descent. Out of order keys still
+     * work, they just fall back to searching from the root.
+     * Returns INSERTED or DUPLICATE for each key, in input order.
+     */
+    public BatchResult[] insertAll(List<E> sortedBatch) {
+        BatchResult[] results = new BatchResult[sortedBatch.size()];
+        BSTNode<E> finger = NIL;
+        int i = 0;
+        for (E key : sortedBatch) {
+            long start = this.listener.onStart(TreeListener.Operation.INSERT, Objects.requireNonNull(key));
+            BSTNode<E> node = searchFrom(finger, key);
+            int cmp = isNil(node) ? 0 : compare(key, node);
+            if (!isNil(node) && cmp == 0) {
+                results[i++] = BatchResult.DUPLICATE;
+                finger = node;
+            }
+            else {
+                results[i++] = BatchResult.INSERTED;
+                finger = attach(isNil(node) ? NIL : node, key, cmp < 0);
+            }
+            this.listener.onFinish(TreeListener.Operation.INSERT, start);
         }
-        else if (node.parent.getColor() == 'B') { // case 2: n parent black
-            return;
+        return results;
+    }
+
+    /**
+     * Deletes keys given in ascending order, with the same finger search as
+     * insertAll(). Returns DELETED or MISSING for each key, in input order.
+     */
+    public BatchResult[] deleteAll(List<E> sortedBatch) {
+        BatchResult[] results = new BatchResult[sortedBatch.size()];
+        BSTNode<E> finger = NIL;
+        int i = 0;
+        for (E key : sortedBatch) {
+            long start = this.listener.onStart(TreeListener.Operation.DELETE, Objects.requireNonNull(key));
+            BSTNode<E> node = searchFrom(finger, key);
+            if (!isNil(node) && compare(key, node) == 0) {
+                // a node with two children stays (holding its predecessor's key),
+                // otherwise its parent is the closest node that survives
+                finger = numChildren(node) == 2 ? node : node.parent;
+                super.removeNode(node);
+                results[i++] = BatchResult.DELETED;
+            }
+            else {
+                results[i++] = BatchResult.MISSING;
+                finger = node;
+            }
+            this.listener.onFinish(TreeListener.Operation.DELETE, start);
         }
-        else if (node.parent.getColor() == 'R' && super.uncle(node).getColor() == 'R') { // case 3: If n's parent & uncle red
-            node.parent.setColor('B'); 
-            super.uncle(node).setColor('B'); 
-            super.grandparent(node).setColor('R'); 
-            insertCleanup(super.grandparent(node)); // Recursive call on grandparent
-        }
-        if (node.parent.getColor() == 'R' && super.uncle(node).getColor() == 'B') { // case 4: parent red AND uncle black
-
-            if (super.isRightChild(node) && super.isLeftChild(node.parent)) { // case 4a: left right zigzag 
-                    leftRotate(node.parent);
-                    node = node.left;
-            } 
-            else if (super.isLeftChild(node) && super.isRightChild(node.parent)) { // case 4b: right left zigzag
-                    rightRotate(node.parent);
-                    node = node.right;
+        return results;
+    }
+
+    /*
+     * Returns the node holding key, or the node key would hang off (nil if the tree
+     * is empty). If key is above finger, starts from the lowest ancestor of finger
+     * whose subtree must contain key: climb while we are a right child or key is not
+     * below our parent.
+     */
+    private BSTNode<E> searchFrom(BSTNode<E> finger, E key) {
+        BSTNode<E> current = super.root;
+        if (!isNil(finger) && compare(key, finger) > 0) {
+            current = finger;
+            while (!isNil(current.parent)) {
+                BSTNode<E> parent = current.parent;
+                if (parent.left == current && compare(key, parent) < 0) {
+                    break;
+                }
+                current = parent;
             }
         }
-        if (node.parent.getColor() == 'R' && super.uncle(node).getColor() == 'B') { // **case5 == case4: CASE 4 CONTINUES TO CASE 5
-
-            if (super.isLeftChild(node) && super.isLeftChild(node.parent)) {  // n left child and parent left child (4a --> 5a)
-                    node.parent.setColor('B');
-                    super.grandparent(node).setColor('R');
-                    rightRotate(super.grandparent(node));
-            } 
-            else if (super.isRightChild(node) && super.isRightChild(node.parent)) { // n right child and parent right child (4b --> 5b)
-                    node.parent.setColor('B');
-                    super.grandparent(node).setColor('R');
-                    leftRotate(super.grandparent(node));
+        BSTNode<E> last = current;
+        while (!isNil(current)) {
+            last = current;
+            int cmp = compare(key, current);
+            if (cmp == 0) {
+                return current;
             }
+            current = cmp < 0 ? current.left : current.right;
         }
+        return last;
     }
 
-    private void leftRotate(BSTNode<E> subTreeRootNode) {
-        BSTNode<E> pivot = subTreeRootNode.right;
-    
-        // If subTreeRootNode is ACTUAL root of tree, pivot becomes root of tree
-        if (subTreeRootNode == super.root) {
-            super.root = pivot;
+    /** Result of split(): the keys below and above the split key, and whether it was present. */
+    public static final class Split<E extends Comparable<E>> {
+
+        private final RedBlackTree<E> left;
+        private final boolean found;
+        private final RedBlackTree<E> right;
+
+        private Split(RedBlackTree<E> left, boolean found, RedBlackTree<E> right) {
+            this.left = left;
+            this.found = found;
+            this.right = right;
         }
-        else if (isLeftChild(subTreeRootNode)) {
-            subTreeRootNode.parent.left = pivot;
+
+        public RedBlackTree<E> getLeft() {
+            return this.left;
         }
-        else if (isRightChild(subTreeRootNode)) {
-            subTreeRootNode.parent.right = pivot;
+
+        public boolean isFound() {
+            return this.found;
+        }
+
+        public RedBlackTree<E> getRight() {
+            return this.right;
         }
-        pivot.parent = subTreeRootNode.parent;
-        subTreeRootNode.right = pivot.left;
-        subTreeRootNode.right.parent = subTreeRootNode;
-        pivot.left = subTreeRootNode;
-        subTreeRootNode.parent = pivot;
     }
 
-    // Inverse of leftRotate
-    private void rightRotate(BSTNode<E> subTreeRoot) {
-        BSTNode<E> pivot = subTreeRoot.left;
-    
-        if (subTreeRoot == super.root) {
-            super.root = pivot;
+    /*
+     * split, join and the set operations below relink the nodes of their inputs
+     * instead of copying them, so the input trees are left empty. All of them are
+     * O(log n) per join using black heights; union, intersection and difference
+     * take O(m log(n/m + 1)) work for trees of m <= n keys, and recurse on the two
+     * halves in parallel on the common ForkJoinPool. Subclasses keep extra state in
+     * their nodes that these do not maintain, so only plain RedBlackTrees qualify.
+     */
+
+    /**
+     * Splits this tree into the keys below key and the keys above it in O(log n).
+     * This tree is left empty.
+     */
+    public Split<E> split(E key) {
+        requirePlain(this);
+        TreeJoin.Parts<E> parts = TreeJoin.split(detach(this), key);
+        // sizes are counted the first time someone asks
+        return new Split<>(wrap(parts.left, -1), parts.match != null, wrap(parts.right, -1));
+    }
+
+    /**
+     * Every key of left must be below key and every key of right above it.
+     * Returns a tree holding all of them in O(|log n - log m|); left and right
+     * are left empty.
+     */
+    public static <E extends Comparable<E>> RedBlackTree<E> join(RedBlackTree<E> left, E key, RedBlackTree<E> right) {
+        requirePlain(left);
+        requirePlain(right);
+        if ((!left.isEmpty() && left.last().compareTo(key) >= 0) || (!right.isEmpty() && right.first().compareTo(key) <= 0)) {
+            throw new IllegalArgumentException("Keys out of order around " + key);
+        }
+        int size = left.size < 0 || right.size < 0 ? -1 : left.size + right.size + 1;
+        return wrap(TreeJoin.join(detach(left), left.newNode(key), detach(right)), size);
+    }
+
+    /** Keys in a or b. a and b are left empty. */
+    public static <E extends Comparable<E>> RedBlackTree<E> union(RedBlackTree<E> a, RedBlackTree<E> b) {
+        int size = a.size() + b.size();
+        TreeJoin.Piece<E> result = setOperation(TreeJoin.Operation.UNION, a, b);
+        return wrap(result, size - result.matches);
+    }
+
+    /** Keys in both a and b. a and b are left empty. */
+    public static <E extends Comparable<E>> RedBlackTree<E> intersection(RedBlackTree<E> a, RedBlackTree<E> b) {
+        TreeJoin.Piece<E> result = setOperation(TreeJoin.Operation.INTERSECTION, a, b);
+        return wrap(result, result.matches);
+    }
+
+    /** Keys in a but not in b. a and b are left empty. */
+    public static <E extends Comparable<E>> RedBlackTree<E> difference(RedBlackTree<E> a, RedBlackTree<E> b) {
+        int size = a.size();
+        TreeJoin.Piece<E> result = setOperation(TreeJoin.Operation.DIFFERENCE, a, b);
+        return wrap(result, size - result.matches);
+    }
+
+    private static <E extends Comparable<E>> TreeJoin.Piece<E> setOperation(TreeJoin.Operation operation, RedBlackTree<E> a, RedBlackTree<E> b) {
+        requirePlain(a);
+        requirePlain(b);
+        if (a == b) {
+            throw new IllegalArgumentException("Both operands are the same tree");
+        }
+        return TreeJoin.apply(operation, detach(a), detach(b));
+    }
+
+    private static void requirePlain(RedBlackTree<?> tree) {
+        if (tree.getClass() != RedBlackTree.class) {
+            throw new UnsupportedOperationException(tree.getClass().getSimpleName() + " does not support split/join");
+        }
+    }
+
+    // hands the nodes of tree over as a piece and leaves tree empty
+    private static <E extends Comparable<E>> TreeJoin.Piece<E> detach(RedBlackTree<E> tree) {
+        tree.reportDeleteAll();
+        TreeJoin.Piece<E> piece = TreeJoin.piece(tree.root);
+        tree.root = tree.NIL;
+        tree.size = 0;
+        tree.modCount++;
+        if (tree.lookupCache != null) {
+            tree.lookupCache.clear();
+        }
+        return piece;
+    }
+
+    // size < 0 when unknown
+    private static <E extends Comparable<E>> RedBlackTree<E> wrap(TreeJoin.Piece<E> piece, int size) {
+        RedBlackTree<E> tree = new RedBlackTree<>();
+        tree.root = piece.root;
+        if (!tree.isEmpty()) {
+            tree.root.parent = tree.NIL;
         }
-        else if (isLeftChild(subTreeRoot)) {
-            subTreeRoot.parent.left = pivot;
+        tree.size = size;
+        return tree;
+    }
+
+    // New red node for insert(), subclasses return augmented node types
+    protected BSTNode<E> newNode(E key) {
+        return new BSTNode<>(key, 'R');
+    }
+
+    /*
+     * Augmentation hooks, no-ops here. augment() recomputes one node's summary
+     * from its children and runs after every rotation (old subtree root first,
+     * then the pivot). augmentPath() refreshes node and all its ancestors and runs
+     * whenever a node is linked in or spliced out, before any rebalancing.
+     */
+    protected void augment(BSTNode<E> node) {
+    }
+
+    protected void augmentPath(BSTNode<E> node) {
+    }
+
+    // every key comparison goes through here so the listener can count them
+    private int compare(E key, BSTNode<E> node) {
+        this.listener.onCompare();
+        return key.compareTo(node.getData());
+    }
+
+    private void recolor(BSTNode<E> node, char color) {
+        this.listener.onRecolor();
+        node.setColor(color);
+    }
+
+    /*
+     * Iterative, no recursion and no console I/O. Each step reads parent,
+     * grandparent and uncle once into locals (not through grandparent()/uncle(),
+     * which print when a relative is missing); a red parent is never the root,
+     * so the grandparent always exists.
+     */
+    private void insertCleanup(BSTNode<E> node) {
+        BSTNode<E> parent = node.parent;
+        while (parent.getColor() == 'R') {
+            BSTNode<E> grandparent = parent.parent;
+            boolean parentIsLeft = grandparent.left == parent;
+            BSTNode<E> uncle = parentIsLeft ? grandparent.right : grandparent.left;
+            if (uncle.getColor() == 'R') { // case 3: parent & uncle red, recolor and move up
+                recolor(parent, 'B');
+                recolor(uncle, 'B');
+                recolor(grandparent, 'R');
+                node = grandparent;
+                parent = node.parent;
+                continue;
+            }
+            if (parentIsLeft) {
+                if (parent.right == node) { // case 4a: left right zigzag, straighten it
+                    leftRotate(parent);
+                    parent = node;
+                }
+                recolor(parent, 'B'); // case 5a
+                recolor(grandparent, 'R');
+                rightRotate(grandparent);
+            }
+            else {
+                if (parent.left == node) { // case 4b: right left zigzag
+                    rightRotate(parent);
+                    parent = node;
+                }
+                recolor(parent, 'B'); // case 5b
+                recolor(grandparent, 'R');
+                leftRotate(grandparent);
+            }
+            break;
         }
-        else if (isRightChild(subTreeRoot)) {
-            subTreeRoot.parent.right = pivot;
+        if (super.root.getColor() == 'R') { // case 1: root red
+            recolor(super.root, 'B');
         }
-        pivot.parent = subTreeRoot.parent;
+    }
+
+    private void leftRotate(BSTNode<E> subTreeRoot) {
+        this.listener.onRotate();
+        BSTNode<E> pivot = subTreeRoot.right;
+        subTreeRoot.right = pivot.left;
+        if (pivot.left != NIL) {
+            pivot.left.parent = subTreeRoot;
+        }
+        replaceChild(subTreeRoot, pivot);
+        pivot.left = subTreeRoot;
+        subTreeRoot.parent = pivot;
+        augment(subTreeRoot);
+        augment(pivot);
+    }
+
+    // Inverse of leftRotate
+    private void rightRotate(BSTNode<E> subTreeRoot) {
+        this.listener.onRotate();
+        BSTNode<E> pivot = subTreeRoot.left;
         subTreeRoot.left = pivot.right;
-        subTreeRoot.left.parent = subTreeRoot;
+        if (pivot.right != NIL) {
+            pivot.right.parent = subTreeRoot;
+        }
+        replaceChild(subTreeRoot, pivot);
         pivot.right = subTreeRoot;
         subTreeRoot.parent = pivot;
+        augment(subTreeRoot);
+        augment(pivot);
     }
-    
+
+    // puts replacement where node hangs off its parent (or at the root); replacement may be NIL
+    private void replaceChild(BSTNode<E> node, BSTNode<E> replacement) {
+        BSTNode<E> parent = node.parent;
+        if (node == super.root) {
+            super.root = replacement;
+        }
+        else if (parent.left == node) {
+            parent.left = replacement;
+        }
+        else {
+            parent.right = replacement;
+        }
+        if (replacement != NIL) {
+            replacement.parent = parent;
+        }
+    }
+
+    /*
+     * A node with two children takes its predecessor's key and the predecessor is
+     * removed instead, so the node actually unlinked has at most one child, which
+     * takes its place. Removing a black node leaves that spot one black short,
+     * see fixDoubleBlack().
+     */
     @Override
-	protected void delete(BSTNode<E> node) {
-		// checks if nodeToDelete() wasn't found
-		if (node == null) {
-			return;
-		}
+    protected void delete(BSTNode<E> node) {
+        // checks if nodeToDelete() wasn't found
+        if (node == null) {
+            return;
+        }
+        if (this.lookupCache != null) {
+            this.lookupCache.update(node.getData(), false);
+        }
+        if (node.left != NIL && node.right != NIL) {
+            BSTNode<E> maxLeftNode = maxNode(node.left);
+            node.setData(maxLeftNode.getData());
+            node = maxLeftNode;
+        }
+        BSTNode<E> child = node.left != NIL ? node.left : node.right;
+        BSTNode<E> parent = node.parent; // NIL for the root
+        replaceChild(node, child);
+        augmentPath(parent);
+        if (node.getColor() == 'R') { // a red node is always a leaf here, nothing to fix
+            return;
+        }
+        if (child.getColor() == 'R') { // its red child turns black in its place
+            recolor(child, 'B');
+        }
+        else if (parent != NIL) { // child (maybe NIL) is double black
+            fixDoubleBlack(child, parent);
+        }
+    }
 
-		if (isleafNode(node)) { // Case 1: 0 child
-            if (node == super.root) {
-                super.root = null;
-                return;
-            }
-            if (isLeftChild(node)) {
-				node.parent.left = NIL;
-			} 
-			else if (isRightChild(node)) {
-				node.parent.right = NIL;
+	@Override
+	protected BSTNode<E> nodeToDelete(E key) {
+		return lookup(key);
+    }
+
+    // node holding key, or null
+    private BSTNode<E> lookup(E key) {
+        Objects.requireNonNull(key);
+        BSTNode<E> current = super.root;
+        while (!isNil(current)) {
+            int cmp = compare(key, current);
+            if (cmp == 0) {
+                return current;
             }
-            NIL.parent = node.parent;
-            if (node.getColor() == 'B') { 
-                NIL.setColor('D'); // D = double black
-                fixDoubleBlack(NIL);
+            current = cmp < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
+    /*
+     * node is one black short: every path through it has one black node fewer
+     * than the paths through its sibling. Iterative; each step reads sibling and
+     * its children once, and re-reads the sibling only after a rotation moved it.
+     * parent is passed in because node may be the shared NIL, which has none and
+     * is never written to.
+     */
+    private void fixDoubleBlack(BSTNode<E> node, BSTNode<E> parent) {
+        while (node != super.root && node.getColor() == 'B') {
+            this.listener.onDoubleBlackFixup();
+            boolean nodeIsLeft = parent.left == node;
+            BSTNode<E> sibling = nodeIsLeft ? parent.right : parent.left;
+
+            if (sibling.getColor() == 'R') { // Case 2: sibling red, rotate it up so node gets a black sibling
+                recolor(sibling, 'B');
+                recolor(parent, 'R');
+                if (nodeIsLeft) {
+                    leftRotate(parent);
+                    sibling = parent.right;
+                }
+                else {
+                    rightRotate(parent);
+                    sibling = parent.left;
+                }
             }
-		} 
-        else if (numChildren(node) == 1) { // Case 2: One child
-			// child = get left or right child of node
-			BSTNode<E> child = node;
-			if (node.left != NIL) {
-				child = node.left;
-			}
-			else if (node.right != NIL) {
-				child = node.right;
+            BSTNode<E> near = nodeIsLeft ? sibling.left : sibling.right;
+            BSTNode<E> far = nodeIsLeft ? sibling.right : sibling.left;
+
+            if (near.getColor() == 'B' && far.getColor() == 'B') { // Case 4: sibling and both its children black
+                recolor(sibling, 'R');
+                node = parent; // a red parent ends the loop and turns black below
+                parent = node.parent;
+                continue;
             }
-            // if node to delete is actual root of tree
-            if (node == super.root) {
-                super.root = child;
-                insertCleanup(root);
+            // Case 3: sibling has a red child; at most two rotations finish it
+            if (far.getColor() == 'B') { // only the near child is red, rotate it to the far side
+                recolor(near, 'B');
+                recolor(sibling, 'R');
+                if (nodeIsLeft) {
+                    rightRotate(sibling);
+                }
+                else {
+                    leftRotate(sibling);
+                }
+                far = sibling;
+                sibling = near;
             }
-			if (isLeftChild(node)) {
-				node.parent.left = child;
-				child.parent = node.parent;
-			} 
-			else if (isRightChild(node)) {
-				node.parent.right = child;
-				child.parent = node.parent;
+            recolor(sibling, parent.getColor());
+            recolor(parent, 'B');
+            recolor(far, 'B');
+            if (nodeIsLeft) {
+                leftRotate(parent);
             }
-            if (child.getColor() == 'R' || node.getColor() == 'R') {
-                child.setColor('B');
+            else {
+                rightRotate(parent);
             }
-            else if (child.getColor() == 'B' || node.getColor() == 'B') {
-                child.setColor('D'); 
-                fixDoubleBlack(child);
+            return;
+        }
+        if (node != NIL && node.getColor() != 'B') {
+            recolor(node, 'B');
+        }
+    }
+    
+    /*
+     * Navigation, same contract as java.util.NavigableSet: neighbour lookups and
+     * polls return null when there is no such key, first() and last() throw.
+     */
+    public E first() {
+        return dataOrThrow(minNode(super.root));
+    }
+
+    public E last() {
+        return dataOrThrow(maxNode(super.root));
+    }
+
+    public E floor(E key) {
+        return dataOrNull(floorNode(key));
+    }
+
+    public E ceiling(E key) {
+        return dataOrNull(ceilingNode(key));
+    }
+
+    public E lower(E key) {
+        return dataOrNull(lowerNode(key));
+    }
+
+    public E higher(E key) {
+        return dataOrNull(higherNode(key));
+    }
+
+    public E pollFirst() {
+        return poll(minNode(super.root));
+    }
+
+    public E pollLast() {
+        return poll(maxNode(super.root));
+    }
+
+    private E poll(BSTNode<E> node) {
+        if (isNil(node)) {
+            return null;
+        }
+        E data = node.getData(); // read first, delete() may move data between nodes
+        removeNode(node);
+        return data;
+    }
+
+    private E dataOrNull(BSTNode<E> node) {
+        return isNil(node) ? null : node.getData();
+    }
+
+    private E dataOrThrow(BSTNode<E> node) {
+        if (isNil(node)) {
+            throw new NoSuchElementException("Empty Tree");
+        }
+        return node.getData();
+    }
+
+    /*
+     * Live range views. They hold bounds, not copies: iterating one seeks to the
+     * lower bound in O(log n) and walks successors until the upper bound.
+     */
+    @Override
+    public TreeRangeView<E> subSet(E fromKey, E toKey) {
+        return subSet(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public TreeRangeView<E> subSet(E fromKey, boolean fromInclusive, E toKey, boolean toInclusive) {
+        if (fromKey.compareTo(Objects.requireNonNull(toKey)) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new TreeRangeView<>(this, fromKey, fromInclusive, toKey, toInclusive, false);
+    }
+
+    @Override
+    public TreeRangeView<E> headSet(E toKey) {
+        return headSet(toKey, false);
+    }
+
+    @Override
+    public TreeRangeView<E> headSet(E toKey, boolean inclusive) {
+        return new TreeRangeView<>(this, null, false, Objects.requireNonNull(toKey), inclusive, false);
+    }
+
+    @Override
+    public TreeRangeView<E> tailSet(E fromKey) {
+        return tailSet(fromKey, true);
+    }
+
+    @Override
+    public TreeRangeView<E> tailSet(E fromKey, boolean inclusive) {
+        return new TreeRangeView<>(this, Objects.requireNonNull(fromKey), inclusive, null, false, false);
+    }
+
+    // the whole tree, largest key first
+    @Override
+    public TreeRangeView<E> descendingSet() {
+        return new TreeRangeView<>(this, null, false, null, false, true);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    // natural ordering
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    /*
+     * The rest of the Collection contract. Bulk operations are one call per key;
+     * equals() and hashCode() are those of java.util.Set.
+     */
+    @Override
+    public boolean containsAll(Collection<?> keys) {
+        for (Object key : keys) {
+            if (!contains(key)) {
+                return false;
             }
-		} 
-		else if (numChildren(node) == 2) { // Case 3: Two child
-			// Finding max in left subtree, Starting at left subtree
-			BSTNode<E> maxLeftNode = node.left;
-			while (maxLeftNode.right != NIL) {
-				maxLeftNode = maxLeftNode.right;
-			}
-			node.setData(maxLeftNode.getData());
-			delete(maxLeftNode);
-		}
-	}
+        }
+        return true;
+    }
 
-	@Override
-	protected BSTNode<E> nodeToDelete(E key) {
-		// checks if node to delete wasn't found
-		if (!find(key)) {
-			System.out.println(key + " not found \n");
-		}
-		BSTNode<E> current = this.root;
-
-		while (current != NIL) {
-			if (key.compareTo(current.getData()) == 0) {
-				return current;
-			} 
-			else if (key.compareTo(current.getData()) < 0) {
-				current = current.left;
-			} 
-			else if (key.compareTo(current.getData()) > 0) {
-				current = current.right;
-			}
-		}
-		return null;
+    @Override
+    public boolean addAll(Collection<? extends E> keys) {
+        boolean changed = false;
+        for (E key : keys) {
+            changed |= add(key);
+        }
+        return changed;
     }
 
-    private void fixDoubleBlack(BSTNode<E> node) {
-        if (node == super.root) { // Case 1: node is actual root of tree; reduce number of black nodes on every path by 1
-            node.setColor('B');
+    @Override
+    public boolean removeAll(Collection<?> keys) {
+        Objects.requireNonNull(keys);
+        boolean changed = false;
+        for (Object key : keys) {
+            changed |= remove(key);
         }
-        // Case 2: sibling of node is red
-        else if (super.sibling(node).getColor() == 'R') { 
-           
-            if (super.isRightChild(node)) { // Case 2a 
-                super.sibling(node).setColor('B');
-                node.parent.setColor('R');
-                rightRotate(node.parent);
-                fixDoubleBlack(node);
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> keys) {
+        Objects.requireNonNull(keys);
+        boolean changed = false;
+        for (Iterator<E> it = iterator(); it.hasNext();) {
+            if (!keys.contains(it.next())) {
+                it.remove();
+                changed = true;
             }
-            else if (super.isLeftChild(node)) { // Case 2b
-                super.sibling(node).setColor('B');
-                node.parent.setColor('R');
-                leftRotate(node.parent);
-                fixDoubleBlack(node);
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        reportDeleteAll();
+        super.root = NIL;
+        this.size = 0;
+        this.modCount++;
+        // the hint would keep the old nodes reachable
+        this.hint = NIL;
+        this.hintPrevious = NIL;
+        this.hintNext = NIL;
+        if (this.lookupCache != null) {
+            this.lookupCache.clear();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        return inOrder().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array) {
+        return inOrder().toArray(array);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof Set)) {
+            return false;
+        }
+        Set<?> set = (Set<?>) other;
+        if (set.size() != size()) {
+            return false;
+        }
+        try {
+            return containsAll(set);
+        }
+        catch (ClassCastException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (E key : this) {
+            hash += key.hashCode();
+        }
+        return hash;
+    }
+
+    // same as contains(): false on an empty tree, NullPointerException only for a null key
+    @Override
+    public boolean find(E key) {
+        return contains(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object key) {
+        Objects.requireNonNull(key);
+        long start = this.listener.onStart(TreeListener.Operation.FIND, key);
+        Boolean cached = this.lookupCache == null ? null : this.lookupCache.get(key);
+        boolean found;
+        if (cached != null) {
+            found = cached;
+        }
+        else {
+            found = lookup((E) key) != null;
+            if (this.lookupCache != null) {
+                this.lookupCache.put(key, found);
             }
         }
-        // Case 3: sibling of node has ATLEAST 1 red child (rc)
-        else if (super.sibling(node).left.getColor() == 'R' || super.sibling(node).right.getColor() == 'R') { 
-
-            // sibling is the left child of its parent
-            if (super.isLeftChild(super.sibling(node))) {
-                // rc is the left child of sibling
-                if (super.sibling(node).left.getColor() == 'R') {
-                    rightRotate(node.parent);
-                    super.sibling(node).setColor(node.parent.getColor()); // change color of S to color of P
-                    super.sibling(node).left.setColor('B'); // Change RC to black
-                    node.parent.setColor('B');
-                    node.setColor('B');
+        this.listener.onFinish(TreeListener.Operation.FIND, start);
+        return found;
+    }
+
+    // nodes on the longest path from the root down, 0 for an empty tree
+    public int height() {
+        if (isEmpty()) {
+            return 0;
+        }
+        ArrayDeque<BSTNode<E>> level = new ArrayDeque<>();
+        level.add(super.root);
+        int height = 0;
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                BSTNode<E> node = level.poll();
+                if (!isNil(node.left)) {
+                    level.add(node.left);
                 }
-                // rc is the right child of sibling
-                else if (super.sibling(node).right.getColor() == 'R') {
-                    leftRotate(super.sibling(node));
-                    rightRotate(node.parent);
-                    super.sibling(node).right.setColor(node.parent.getColor()); // change color of RC to parents color
-                    super.sibling(node).setColor('B'); // change color of S to black
-                    node.parent.setColor('B'); // change color of P to black
-                    node.setColor('B');
+                if (!isNil(node.right)) {
+                    level.add(node.right);
                 }
             }
-            else if (super.isRightChild(super.sibling(node))) {
-                // rc is the right child of S
-                if (super.sibling(node).right.getColor() == 'R') {
-                    leftRotate(node.parent);
-                    super.sibling(node).setColor(node.parent.getColor());
-                    super.sibling(node).right.setColor('B');
-                    node.parent.setColor('B');
-                    node.setColor('B');
-                }
-                // rc is the left child of S
-                else if (super.sibling(node).left.getColor() == 'R') {
-                    rightRotate(super.sibling(node));
-                    leftRotate(node.parent);
-                    super.sibling(node).left.setColor(node.parent.getColor());
-                    super.sibling(node).setColor('B');
-                    node.parent.setColor('B');
-                    node.setColor('B');
-                }
+        }
+        return height;
+    }
+
+    // black nodes on any path from the root down to NIL, NIL not counted
+    public int blackHeight() {
+        int blackHeight = 0;
+        for (BSTNode<E> node = super.root; !isNil(node); node = node.left) {
+            if (node.getColor() == 'B') {
+                blackHeight++;
             }
-         }
-         // Case 4: sibling and both of its children are black
-         else if (super.sibling(node).getColor() == 'B' && 
-            super.sibling(node).left.getColor() == 'B' && super.sibling(node).right.getColor() == 'B') {
-
-                // parent of sibling is red
-                if (super.sibling(node).parent.getColor() == 'R') {
-                    super.sibling(node).setColor('R');
-                    node.parent.setColor('B');
-                    node.setColor('B');
-                }
-                else if (super.sibling(node).parent.getColor() == 'B') {
-                    super.sibling(node).setColor('R');
-                    node.parent.setColor('D');
-                    node.setColor('B');
-                    fixDoubleBlack(node.parent);
-                }
-         } 
+        }
+        return blackHeight;
     }
     
     @Override
-    public boolean find(E key) {
-		if (isEmpty()) {
-			throw new NullPointerException("Empty Tree");
-		}
-		BSTNode<E> current = this.root;
-		while (current != NIL) {
-			if (key == current.getData()) {
-				return true;
-			} 
-			else if (key.compareTo(current.getData()) < 0) {
-				current = current.left;
-			} 
-			else if (key.compareTo(current.getData()) > 0) {
-				current = current.right;
-			}
-		}
-		return false;
+    protected boolean isNil(BSTNode<E> node) {
+        return node == NIL || node == null;
     }
-    
-    @Override
-    protected boolean isleafNode(BSTNode<E> node) {
-		return (node.left == NIL && node.right== NIL);
-	}
 
     /**
 	 * Original Author: Laurent Demailly
@@ -348,6 +1095,9 @@ public class RedBlackTree<E extends Comparable<E>> extends BinarySearchTree<E> {
 	 */
     @Override
     public String toString() {
+		if (isEmpty()) {
+			return printNodeValue(NIL);
+		}
 		StringBuilder sb = new StringBuilder();
 		if (this.root.right != NIL) {
 			sb.append(this.printTree(this.root.right, true, ""));
@@ -0,0 +1,450 @@
+package redBlackTrees;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Red black tree whose nodes are int slots rather than objects; slot 0 is the
+ * shared NIL sentinel (always black). This class holds the structural work once
+ * (allocation, rotations, insert cleanup, delete fix-up, traversals), written
+ * against the slot accessors below, which never needs to look at a key.
+ * Subclasses decide where the links and colors live (ArrayRedBlackTree in int
+ * arrays, OffHeapRedBlackTree in ByteBuffers) and below them where the keys
+ * live and how they are searched.
+ */
+public abstract class SlotRedBlackTree {
+
+	protected static final int NIL = 0;
+
+	protected int root = NIL;
+	protected int size = 0;
+	protected int nextSlot = 1; // first never-used slot
+	protected int freeList = NIL; // deleted slots, chained through their left link
+
+	// slot accessors
+	protected abstract int left(int node);
+
+	protected abstract int right(int node);
+
+	protected abstract int parent(int node);
+
+	protected abstract void setLeft(int node, int child);
+
+	protected abstract void setRight(int node, int child);
+
+	protected abstract void setParent(int node, int parent);
+
+	protected abstract boolean isRed(int node);
+
+	protected abstract void setRed(int node);
+
+	protected abstract void setBlack(int node);
+
+	// Called before slot is first handed out, so the storage can grow to hold it
+	protected abstract void ensureSlot(int slot);
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.root == NIL;
+	}
+
+	// returns a fresh red slot with NIL children
+	protected int allocate() {
+		int node;
+		if (this.freeList != NIL) {
+			node = this.freeList;
+			this.freeList = left(node);
+		}
+		else {
+			if (this.nextSlot == Integer.MAX_VALUE) {
+				throw new IllegalStateException("Tree is full");
+			}
+			ensureSlot(this.nextSlot);
+			node = this.nextSlot++;
+		}
+		setLeft(node, NIL);
+		setRight(node, NIL);
+		setParent(node, NIL);
+		setRed(node);
+		return node;
+	}
+
+	protected void release(int node) {
+		setLeft(node, this.freeList);
+		this.freeList = node;
+	}
+
+	// Links a freshly allocated node under parent (NIL parent means empty tree) and rebalances
+	protected void attach(int node, int parent, boolean asLeft) {
+		setParent(node, parent);
+		if (parent == NIL) {
+			this.root = node;
+		}
+		else if (asLeft) {
+			setLeft(parent, node);
+		}
+		else {
+			setRight(parent, node);
+		}
+		this.size++;
+		insertCleanup(node);
+	}
+
+	private void insertCleanup(int node) {
+		while (isRed(parent(node))) {
+			int parent = parent(node);
+			int grandparent = parent(parent);
+			if (parent == left(grandparent)) {
+				int uncle = right(grandparent);
+				if (isRed(uncle)) { // parent & uncle red: recolor and move up
+					setBlack(parent);
+					setBlack(uncle);
+					setRed(grandparent);
+					node = grandparent;
+				}
+				else {
+					if (node == right(parent)) { // left right zigzag
+						node = parent;
+						leftRotate(node);
+						parent = parent(node);
+					}
+					setBlack(parent);
+					setRed(grandparent);
+					rightRotate(grandparent);
+				}
+			}
+			else {
+				int uncle = left(grandparent);
+				if (isRed(uncle)) {
+					setBlack(parent);
+					setBlack(uncle);
+					setRed(grandparent);
+					node = grandparent;
+				}
+				else {
+					if (node == left(parent)) { // right left zigzag
+						node = parent;
+						rightRotate(node);
+						parent = parent(node);
+					}
+					setBlack(parent);
+					setRed(grandparent);
+					leftRotate(grandparent);
+				}
+			}
+		}
+		setBlack(this.root);
+	}
+
+	private void leftRotate(int subTreeRoot) {
+		int pivot = right(subTreeRoot);
+		int inner = left(pivot);
+		setRight(subTreeRoot, inner);
+		if (inner != NIL) {
+			setParent(inner, subTreeRoot);
+		}
+		replaceChild(subTreeRoot, pivot);
+		setLeft(pivot, subTreeRoot);
+		setParent(subTreeRoot, pivot);
+	}
+
+	// Inverse of leftRotate
+	private void rightRotate(int subTreeRoot) {
+		int pivot = left(subTreeRoot);
+		int inner = right(pivot);
+		setLeft(subTreeRoot, inner);
+		if (inner != NIL) {
+			setParent(inner, subTreeRoot);
+		}
+		replaceChild(subTreeRoot, pivot);
+		setRight(pivot, subTreeRoot);
+		setParent(subTreeRoot, pivot);
+	}
+
+	// puts replacement where node hangs off its parent (or at the root)
+	private void replaceChild(int node, int replacement) {
+		int parent = parent(node);
+		setParent(replacement, parent);
+		if (parent == NIL) {
+			this.root = replacement;
+		}
+		else if (node == left(parent)) {
+			setLeft(parent, replacement);
+		}
+		else {
+			setRight(parent, replacement);
+		}
+	}
+
+	// Unlinks node from the tree, rebalances, and frees its slot
+	protected void remove(int node) {
+		int removed = node; // slot that physically leaves its position
+		boolean removedRed = isRed(removed);
+		int child;
+
+		if (left(node) == NIL) {
+			child = right(node);
+			replaceChild(node, child);
+		}
+		else if (right(node) == NIL) {
+			child = left(node);
+			replaceChild(node, child);
+		}
+		else { // two children: max of left subtree takes node's place
+			removed = maximum(left(node));
+			removedRed = isRed(removed);
+			child = left(removed);
+			if (parent(removed) == node) {
+				setParent(child, removed); // child may be NIL
+			}
+			else {
+				replaceChild(removed, child);
+				setLeft(removed, left(node));
+				setParent(left(removed), removed);
+			}
+			replaceChild(node, removed);
+			setRight(removed, right(node));
+			setParent(right(removed), removed);
+			setColor(removed, isRed(node));
+		}
+		if (!removedRed) {
+			fixDoubleBlack(child);
+		}
+		setBlack(NIL);
+		this.size--;
+		release(node);
+	}
+
+	private void fixDoubleBlack(int node) {
+		while (node != this.root && !isRed(node)) {
+			int parent = parent(node);
+			if (node == left(parent)) {
+				int sibling = right(parent);
+				if (isRed(sibling)) { // sibling red
+					setBlack(sibling);
+					setRed(parent);
+					leftRotate(parent);
+					sibling = right(parent);
+				}
+				if (!isRed(left(sibling)) && !isRed(right(sibling))) {
+					setRed(sibling); // sibling and both its children black
+					node = parent;
+				}
+				else {
+					if (!isRed(right(sibling))) { // red child on the near side
+						setBlack(left(sibling));
+						setRed(sibling);
+						rightRotate(sibling);
+						sibling = right(parent);
+					}
+					setColor(sibling, isRed(parent));
+					setBlack(parent);
+					setBlack(right(sibling));
+					leftRotate(parent);
+					node = this.root;
+				}
+			}
+			else {
+				int sibling = left(parent);
+				if (isRed(sibling)) {
+					setBlack(sibling);
+					setRed(parent);
+					rightRotate(parent);
+					sibling = left(parent);
+				}
+				if (!isRed(left(sibling)) && !isRed(right(sibling))) {
+					setRed(sibling);
+					node = parent;
+				}
+				else {
+					if (!isRed(left(sibling))) {
+						setBlack(right(sibling));
+						setRed(sibling);
+						leftRotate(sibling);
+						sibling = left(parent);
+					}
+					setColor(sibling, isRed(parent));
+					setBlack(parent);
+					setBlack(left(sibling));
+					rightRotate(parent);
+					node = this.root;
+				}
+			}
+		}
+		setBlack(node);
+	}
+
+	private void setColor(int node, boolean red) {
+		if (red) {
+			setRed(node);
+		}
+		else {
+			setBlack(node);
+		}
+	}
+
+	protected int maximum(int node) {
+		while (right(node) != NIL) {
+			node = right(node);
+		}
+		return node;
+	}
+
+	// black nodes on every path from the root down, NIL not counted
+	public int blackHeight() {
+		int height = 0;
+		for (int node = this.root; node != NIL; node = left(node)) {
+			if (!isRed(node)) {
+				height++;
+			}
+		}
+		return height;
+	}
+
+	/*
+	 * Traversals hand out slots, subclasses map the slots to keys. The streaming
+	 * in-order walk keeps the heap flat however big the tree is; the others fill
+	 * an array. All of them are iterative so a deep tree can't overflow the stack.
+	 */
+	protected void inOrderSlots(IntConsumer action) {
+		int[] stack = new int[stackDepth()];
+		int top = 0;
+		int current = this.root;
+		while (current != NIL || top > 0) {
+			while (current != NIL) {
+				stack[top++] = current;
+				current = left(current);
+			}
+			current = stack[--top];
+			action.accept(current);
+			current = right(current);
+		}
+	}
+
+	protected int[] inOrderSlots() {
+		int[] slots = new int[this.size];
+		int[] count = new int[1];
+		inOrderSlots(node -> slots[count[0]++] = node);
+		return slots;
+	}
+
+	protected int[] preOrderSlots() {
+		int[] slots = new int[this.size];
+		if (isEmpty()) {
+			return slots;
+		}
+		int[] stack = new int[stackDepth()];
+		int top = 0;
+		int count = 0;
+		stack[top++] = this.root;
+		while (top > 0) {
+			int current = stack[--top];
+			slots[count++] = current;
+			if (right(current) != NIL) {
+				stack[top++] = right(current);
+			}
+			if (left(current) != NIL) {
+				stack[top++] = left(current);
+			}
+		}
+		return slots;
+	}
+
+	protected int[] postOrderSlots() {
+		// reversed (node, right, left) pre-order is post-order
+		int[] slots = new int[this.size];
+		if (isEmpty()) {
+			return slots;
+		}
+		int[] stack = new int[stackDepth()];
+		int top = 0;
+		int count = this.size;
+		stack[top++] = this.root;
+		while (top > 0) {
+			int current = stack[--top];
+			slots[--count] = current;
+			if (left(current) != NIL) {
+				stack[top++] = left(current);
+			}
+			if (right(current) != NIL) {
+				stack[top++] = right(current);
+			}
+		}
+		return slots;
+	}
+
+	protected int[] breadthFirstSlots() {
+		// the output array doubles as the queue
+		int[] slots = new int[this.size];
+		if (isEmpty()) {
+			return slots;
+		}
+		int head = 0;
+		int tail = 0;
+		slots[tail++] = this.root;
+		while (head < tail) {
+			int current = slots[head++];
+			if (left(current) != NIL) {
+				slots[tail++] = left(current);
+			}
+			if (right(current) != NIL) {
+				slots[tail++] = right(current);
+			}
+		}
+		return slots;
+	}
+
+	// red black height is at most 2 * log2(n + 1), plus room for pushing both children
+	private int stackDepth() {
+		return 2 * (32 - Integer.numberOfLeadingZeros(this.size + 1)) + 2;
+	}
+
+	// Same diagram as BinarySearchTree.toString(), keys rendered by subclasses
+	protected abstract String keyToString(int node);
+
+	/**
+	 * Original Author: Laurent Demailly
+	 * Stackoverflow post: https://stackoverflow.com/questions/4965335/how-to-print-binary-tree-diagram
+	 * Adapated algorithm into toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if (isEmpty()) {
+			return sb.toString();
+		}
+		if (right(this.root) != NIL) {
+			printTree(sb, right(this.root), true, "");
+		}
+		printNodeValue(sb, this.root);
+		if (left(this.root) != NIL) {
+			printTree(sb, left(this.root), false, "");
+		}
+		return sb.toString();
+	}
+
+	private void printTree(StringBuilder sb, int node, boolean isRight, String indent) {
+		if (right(node) != NIL) {
+			printTree(sb, right(node), true, indent + (isRight ? "        " : " |      "));
+		}
+		sb.append(indent);
+		if (isRight) {
+			sb.append(" /");
+		}
+		else {
+			sb.append(" \\");
+		}
+		sb.append("----- ");
+		printNodeValue(sb, node);
+		if (left(node) != NIL) {
+			printTree(sb, left(node), false, indent + (isRight ? " |      " : "        "));
+		}
+	}
+
+	private void printNodeValue(StringBuilder sb, int node) {
+		sb.append(keyToString(node)).append("(").append(isRed(node) ? 'R' : 'B').append(")\n");
+	}
+
+}
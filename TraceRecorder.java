@@ -0,0 +1,107 @@
+package redBlackTrees;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * TreeListener that writes every insert, delete and find a RedBlackTree runs
+ * to a trace, for TraceReplayer to run again later. Batches, polls and removals
+ * through views, cursors and iterators arrive as single inserts and deletes, and
+ * clear() or split() as a delete per key, so replaying the trace ends with the
+ * same keys:
+ *
+ *   TraceRecorder<Integer> recorder = new TraceRecorder<>(out, KeyCodec.integers());
+ *   tree.setListener(recorder);
+ *   ...
+ *   tree.setListener(null);
+ *   recorder.close();
+ *
+ * Format: int magic, int version, UTF codec name, then records of (byte op,
+ * varint nanoseconds since the previous record, encoded key) until the end of
+ * the stream. The trace is in call order rather than key order, so each key is
+ * encoded on its own (previous is null) and delta codecs fall back to zigzag.
+ *
+ * Listener methods cannot throw IOException: after a failed write the recorder
+ * stops recording and close() throws the failure.
+ */
+public class TraceRecorder<E> implements TreeListener, Closeable {
+
+	static final int MAGIC = 0x52425454; // "RBTT"
+	static final int VERSION = 1;
+	static final byte INSERT = 1;
+	static final byte DELETE = 2;
+	static final byte FIND = 3;
+
+	private final DataOutputStream out;
+	private final KeyCodec<E> codec;
+	private long previous;
+	private long recorded = 0;
+	private IOException failure;
+
+	// out is closed by close()
+	public TraceRecorder(OutputStream out, KeyCodec<E> codec) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.codec = codec;
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+		this.out.writeUTF(codec.name());
+		this.previous = System.nanoTime();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public long onStart(Operation operation, Object key) {
+		if (this.failure != null) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		try {
+			this.out.writeByte(code(operation));
+			KeyCodec.writeVarLong(this.out, Math.max(0, now - this.previous));
+			this.codec.write(this.out, (E) key, null);
+			this.recorded++;
+		}
+		catch (IOException e) {
+			this.failure = e;
+		}
+		this.previous = now;
+		return 0;
+	}
+
+	static byte code(Operation operation) {
+		switch (operation) {
+			case INSERT:
+				return INSERT;
+			case DELETE:
+				return DELETE;
+			default:
+				return FIND;
+		}
+	}
+
+	// operations written so far
+	public long recorded() {
+		return this.recorded;
+	}
+
+	public void flush() throws IOException {
+		if (this.failure != null) {
+			throw new IOException("Trace failed earlier", this.failure);
+		}
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			this.out.close();
+		}
+	}
+
+}
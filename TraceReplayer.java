@@ -0,0 +1,677 @@
+package redBlackTrees;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a trace written by TraceRecorder against the trees of this package and
+ * checks each one against java.util.TreeSet: every find must give the same
+ * answer, and the in-order contents at the end must be equal. Every operation
+ * is timed on its own, so the latency percentiles are exact.
+ *
+ *   java redBlackTrees.TraceReplayer trace-file [paced]
+ *
+ * replays the file against every tree that takes its key type. With "paced" the
+ * recorded gaps between operations are kept instead of running flat out.
+ */
+public final class TraceReplayer {
+
+	private TraceReplayer() {
+	}
+
+	/** A whole trace decoded into memory, so decoding is not part of the timing. */
+	public static final class Trace<E> {
+
+		private final String codec;
+		private final byte[] ops;
+		private final Object[] keys;
+		private final long[] offsets; // nanoseconds since the first record
+		private final int length;
+		// what TreeSet makes of the trace, worked out on the first replay
+		private BitSet expectedFinds;
+		private List<E> expectedContents;
+
+		private Trace(String codec, byte[] ops, Object[] keys, long[] offsets, int length) {
+			this.codec = codec;
+			this.ops = ops;
+			this.keys = keys;
+			this.offsets = offsets;
+			this.length = length;
+		}
+
+		public String getCodec() {
+			return this.codec;
+		}
+
+		public int length() {
+			return this.length;
+		}
+
+		// time between the first and the last recorded operation
+		public long durationNanos() {
+			return this.length == 0 ? 0 : this.offsets[this.length - 1];
+		}
+
+		@SuppressWarnings("unchecked")
+		private E key(int i) {
+			return (E) this.keys[i];
+		}
+	}
+
+	/**
+	 * Reads a trace written with codec. A torn last record, as left by a
+	 * recorder that was not closed, is dropped.
+	 */
+	public static <E> Trace<E> read(InputStream in, KeyCodec<E> codec) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		checkHeader(data, codec.name());
+		byte[] ops = new byte[1024];
+		Object[] keys = new Object[1024];
+		long[] offsets = new long[1024];
+		int length = 0;
+		long offset = 0;
+		while (true) {
+			int op;
+			E key;
+			try {
+				op = data.read();
+				if (op == -1) {
+					break;
+				}
+				if (op < TraceRecorder.INSERT || op > TraceRecorder.FIND) {
+					throw new IOException("Corrupt record " + length);
+				}
+				offset += KeyCodec.readVarLong(data);
+				key = codec.read(data, null);
+			}
+			catch (EOFException e) {
+				break; // torn last record
+			}
+			if (length == ops.length) {
+				ops = Arrays.copyOf(ops, length * 2);
+				keys = Arrays.copyOf(keys, length * 2);
+				offsets = Arrays.copyOf(offsets, length * 2);
+			}
+			ops[length] = (byte) op;
+			keys[length] = key;
+			offsets[length] = offset;
+			length++;
+		}
+		// the first gap is from the recorder's creation, offsets count from the first call
+		long first = length == 0 ? 0 : offsets[0];
+		for (int i = 0; i < length; i++) {
+			offsets[i] -= first;
+		}
+		return new Trace<>(codec.name(), ops, keys, offsets, length);
+	}
+
+	// reads the header and returns the codec name, or checks it if expected is not null
+	private static String checkHeader(DataInputStream data, String expected) throws IOException {
+		if (data.readInt() != TraceRecorder.MAGIC) {
+			throw new IOException("Not a tree trace");
+		}
+		int version = data.readInt();
+		if (version != TraceRecorder.VERSION) {
+			throw new IOException("Unsupported trace version " + version);
+		}
+		String name = data.readUTF();
+		if (expected != null && !name.equals(expected)) {
+			throw new IOException("Trace was written with codec " + name + ", not " + expected);
+		}
+		return name;
+	}
+
+	/** One tree under test, fresh and empty. */
+	public interface Target<E> {
+
+		String name();
+
+		void insert(E key);
+
+		void delete(E key);
+
+		boolean find(E key);
+
+		List<E> inOrder();
+	}
+
+	// the reference every replay is checked against
+	public static <E extends Comparable<E>> Target<E> treeSet() {
+		TreeSet<E> set = new TreeSet<>();
+		return new Target<E>() {
+			public String name() {
+				return "TreeSet";
+			}
+
+			public void insert(E key) {
+				set.add(key);
+			}
+
+			public void delete(E key) {
+				set.remove(key);
+			}
+
+			public boolean find(E key) {
+				return set.contains(key);
+			}
+
+			public List<E> inOrder() {
+				return new ArrayList<>(set);
+			}
+		};
+	}
+
+	// RedBlackTree and its subclasses, e.g. OrderStatisticTree, through the Set methods
+	public static <E extends Comparable<E>> Target<E> of(RedBlackTree<E> tree) {
+		return new Target<E>() {
+			public String name() {
+				return tree.getClass().getSimpleName();
+			}
+
+			public void insert(E key) {
+				tree.add(key);
+			}
+
+			public void delete(E key) {
+				tree.remove(key);
+			}
+
+			public boolean find(E key) {
+				return tree.contains(key);
+			}
+
+			public List<E> inOrder() {
+				return tree.inOrder();
+			}
+		};
+	}
+
+	/*
+	 * BinarySearchTree's insert() and delete() print a message for duplicate and
+	 * missing keys, and find() throws on an empty tree, so the adapter looks
+	 * before it changes.
+	 */
+	public static <E extends Comparable<E>> Target<E> of(BinarySearchTree<E> tree) {
+		return new Target<E>() {
+			public String name() {
+				return tree.getClass().getSimpleName();
+			}
+
+			public void insert(E key) {
+				if (!find(key)) {
+					tree.insert(key);
+				}
+			}
+
+			public void delete(E key) {
+				if (find(key)) {
+					tree.delete(key);
+				}
+			}
+
+			public boolean find(E key) {
+				return !tree.isEmpty() && tree.find(key);
+			}
+
+			public List<E> inOrder() {
+				return tree.inOrder();
+			}
+		};
+	}
+
+	public static <E extends Comparable<E>> Target<E> of(PooledRedBlackTree<E> tree) {
+		return new Target<E>() {
+			public String name() {
+				return "PooledRedBlackTree";
+			}
+
+			public void insert(E key) {
+				tree.insert(key);
+			}
+
+			public void delete(E key) {
+				tree.delete(key);
+			}
+
+			public boolean find(E key) {
+				return !tree.isEmpty() && tree.find(key);
+			}
+
+			public List<E> inOrder() {
+				return tree.inOrder();
+			}
+		};
+	}
+
+	public static <E extends Comparable<E>> Target<E> of(ConcurrentRedBlackTree<E> tree) {
+		return new Target<E>() {
+			public String name() {
+				return "ConcurrentRedBlackTree";
+			}
+
+			public void insert(E key) {
+				tree.insert(key);
+			}
+
+			public void delete(E key) {
+				tree.delete(key);
+			}
+
+			public boolean find(E key) {
+				return tree.find(key);
+			}
+
+			public List<E> inOrder() {
+				return tree.inOrder();
+			}
+		};
+	}
+
+	// LeftLeaningRedBlackTree and WavlTree
+	public static <E extends Comparable<E>> Target<E> of(BalancedTree<E> tree) {
+		return new Target<E>() {
+			public String name() {
+				return tree.getClass().getSimpleName();
+			}
+
+			public void insert(E key) {
+				tree.add(key);
+			}
+
+			public void delete(E key) {
+				tree.remove(key);
+			}
+
+			public boolean find(E key) {
+				return tree.contains(key);
+			}
+
+			public List<E> inOrder() {
+				return tree.inOrder();
+			}
+		};
+	}
+
+	public static <E extends Comparable<E>> Target<E> of(BTree<E> tree) {
+		return new Target<E>() {
+			public String name() {
+				return "BTree(" + tree.fanout() + ")";
+			}
+
+			public void insert(E key) {
+				tree.add(key);
+			}
+
+			public void delete(E key) {
+				tree.remove(key);
+			}
+
+			public boolean find(E key) {
+				return tree.contains(key);
+			}
+
+			public List<E> inOrder() {
+				return tree.inOrder();
+			}
+		};
+	}
+
+	// every change makes a new version, the target keeps the latest
+	public static <E extends Comparable<E>> Target<E> persistent() {
+		return new Target<E>() {
+			private PersistentRedBlackTree<E> tree = new PersistentRedBlackTree<>();
+
+			public String name() {
+				return "PersistentRedBlackTree";
+			}
+
+			public void insert(E key) {
+				this.tree = this.tree.insert(key);
+			}
+
+			public void delete(E key) {
+				this.tree = this.tree.delete(key);
+			}
+
+			public boolean find(E key) {
+				return this.tree.find(key);
+			}
+
+			public List<E> inOrder() {
+				return this.tree.inOrder();
+			}
+		};
+	}
+
+	public static Target<Integer> of(IntRedBlackTree tree) {
+		return new Target<Integer>() {
+			public String name() {
+				return "IntRedBlackTree";
+			}
+
+			public void insert(Integer key) {
+				tree.insert(key);
+			}
+
+			public void delete(Integer key) {
+				tree.delete(key);
+			}
+
+			public boolean find(Integer key) {
+				return tree.find(key);
+			}
+
+			public List<Integer> inOrder() {
+				List<Integer> keys = new ArrayList<>();
+				for (int key : tree.inOrder()) {
+					keys.add(key);
+				}
+				return keys;
+			}
+		};
+	}
+
+	public static Target<Long> of(LongRedBlackTree tree) {
+		return new Target<Long>() {
+			public String name() {
+				return "LongRedBlackTree";
+			}
+
+			public void insert(Long key) {
+				tree.insert(key);
+			}
+
+			public void delete(Long key) {
+				tree.delete(key);
+			}
+
+			public boolean find(Long key) {
+				return tree.find(key);
+			}
+
+			public List<Long> inOrder() {
+				return boxed(tree.inOrder());
+			}
+		};
+	}
+
+	public static Target<Long> of(OffHeapRedBlackTree tree) {
+		return new Target<Long>() {
+			public String name() {
+				return tree.getClass().getSimpleName();
+			}
+
+			public void insert(Long key) {
+				tree.insert(key);
+			}
+
+			public void delete(Long key) {
+				tree.delete(key);
+			}
+
+			public boolean find(Long key) {
+				return tree.find(key);
+			}
+
+			public List<Long> inOrder() {
+				return boxed(tree.inOrder());
+			}
+		};
+	}
+
+	private static List<Long> boxed(long[] keys) {
+		List<Long> list = new ArrayList<>(keys.length);
+		for (long key : keys) {
+			list.add(key);
+		}
+		return list;
+	}
+
+	// fresh targets for any key type
+	public static <E extends Comparable<E>> List<Target<E>> targets() {
+		List<Target<E>> targets = new ArrayList<>();
+		targets.add(treeSet());
+		targets.add(of(new RedBlackTree<E>()));
+		targets.add(of(new OrderStatisticTree<E>()));
+		targets.add(of(new BinarySearchTree<E>()));
+		targets.add(of(new PooledRedBlackTree<E>()));
+		targets.add(of(new ConcurrentRedBlackTree<E>()));
+		targets.add(of(new LeftLeaningRedBlackTree<E>()));
+		targets.add(of(new WavlTree<E>()));
+		targets.add(of(new BTree<E>(4)));
+		targets.add(of(new BTree<E>()));
+		targets.add(persistent());
+		return targets;
+	}
+
+	/** What one replay measured. Latencies are in nanoseconds. */
+	public static final class Result {
+
+		private final String name;
+		private final int operations;
+		private final long elapsedNanos;
+		private final TreeMetrics.Latency[] latencies;
+		private final int findMismatches;
+		private final boolean contentsMatch;
+
+		private Result(String name, int operations, long elapsedNanos, TreeMetrics.Latency[] latencies, int findMismatches,
+				boolean contentsMatch) {
+			this.name = name;
+			this.operations = operations;
+			this.elapsedNanos = elapsedNanos;
+			this.latencies = latencies;
+			this.findMismatches = findMismatches;
+			this.contentsMatch = contentsMatch;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getOperations() {
+			return this.operations;
+		}
+
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		// operations per second over the whole replay, timing overhead included
+		public double getThroughput() {
+			return this.elapsedNanos == 0 ? 0 : this.operations * 1e9 / this.elapsedNanos;
+		}
+
+		public TreeMetrics.Latency getLatency(TreeListener.Operation operation) {
+			return this.latencies[operation.ordinal()];
+		}
+
+		// finds that answered differently from TreeSet
+		public int getFindMismatches() {
+			return this.findMismatches;
+		}
+
+		// in-order contents at the end equal TreeSet's
+		public boolean contentsMatch() {
+			return this.contentsMatch;
+		}
+
+		// true if the tree behaved exactly like TreeSet
+		public boolean matches() {
+			return this.findMismatches == 0 && this.contentsMatch;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%s: %,d ops in %.1f ms, %,.0f ops/s, %s%n", this.name, this.operations,
+					this.elapsedNanos / 1e6, getThroughput(),
+					matches() ? "matches TreeSet" : "DIFFERS from TreeSet (" + this.findMismatches + " finds, contents "
+							+ (this.contentsMatch ? "equal" : "differ") + ")"));
+			for (TreeListener.Operation operation : TreeListener.Operation.values()) {
+				sb.append(String.format("  %-6s  %s%n", operation, this.latencies[operation.ordinal()]));
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Runs trace against target, which must be empty. With paced, each operation
+	 * waits for its recorded offset from the start; waiting is not counted in
+	 * the latencies but is in the throughput.
+	 */
+	public static <E extends Comparable<E>> Result replay(Trace<E> trace, Target<E> target, boolean paced) {
+		expect(trace);
+		int length = trace.length;
+		int[] counts = new int[TreeListener.Operation.values().length];
+		for (int i = 0; i < length; i++) {
+			counts[trace.ops[i] - 1]++;
+		}
+		long[][] nanos = new long[counts.length][];
+		for (int op = 0; op < counts.length; op++) {
+			nanos[op] = new long[counts[op]];
+		}
+		Arrays.fill(counts, 0);
+
+		int mismatches = 0;
+		long begin = System.nanoTime();
+		for (int i = 0; i < length; i++) {
+			if (paced) {
+				long wait = begin + trace.offsets[i] - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			}
+			byte op = trace.ops[i];
+			E key = trace.key(i);
+			long start = System.nanoTime();
+			if (op == TraceRecorder.INSERT) {
+				target.insert(key);
+			}
+			else if (op == TraceRecorder.DELETE) {
+				target.delete(key);
+			}
+			else if (target.find(key) != trace.expectedFinds.get(i)) {
+				mismatches++;
+			}
+			nanos[op - 1][counts[op - 1]++] = System.nanoTime() - start;
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		TreeMetrics.Latency[] latencies = new TreeMetrics.Latency[nanos.length];
+		for (int op = 0; op < nanos.length; op++) {
+			latencies[op] = latency(nanos[op]);
+		}
+		return new Result(target.name(), length, elapsed, latencies, mismatches, target.inOrder().equals(trace.expectedContents));
+	}
+
+	// runs the trace through TreeSet once and remembers the answers
+	private static <E extends Comparable<E>> void expect(Trace<E> trace) {
+		if (trace.expectedContents != null) {
+			return;
+		}
+		TreeSet<E> set = new TreeSet<>();
+		BitSet finds = new BitSet(trace.length);
+		for (int i = 0; i < trace.length; i++) {
+			E key = trace.key(i);
+			if (trace.ops[i] == TraceRecorder.INSERT) {
+				set.add(key);
+			}
+			else if (trace.ops[i] == TraceRecorder.DELETE) {
+				set.remove(key);
+			}
+			else {
+				finds.set(i, set.contains(key));
+			}
+		}
+		trace.expectedFinds = finds;
+		trace.expectedContents = new ArrayList<>(set);
+	}
+
+	// exact percentiles, sorts nanos
+	private static TreeMetrics.Latency latency(long[] nanos) {
+		if (nanos.length == 0) {
+			return new TreeMetrics.Latency(0, 0, 0, 0, 0, 0);
+		}
+		Arrays.sort(nanos);
+		long total = 0;
+		for (long value : nanos) {
+			total += value;
+		}
+		return new TreeMetrics.Latency(nanos.length, (double) total / nanos.length, percentile(nanos, 0.50),
+				percentile(nanos, 0.90), percentile(nanos, 0.99), nanos[nanos.length - 1]);
+	}
+
+	private static long percentile(long[] sorted, double quantile) {
+		return sorted[(int) Math.max(0, Math.ceil(quantile * sorted.length) - 1)];
+	}
+
+	/** Replays trace against every target and prints each result. Returns false if any differed from TreeSet. */
+	public static <E extends Comparable<E>> boolean replayAll(Trace<E> trace, List<Target<E>> targets, boolean paced) {
+		boolean allMatch = true;
+		for (Target<E> target : targets) {
+			Result result = replay(trace, target, paced);
+			System.out.print(result);
+			allMatch &= result.matches();
+		}
+		return allMatch;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: TraceReplayer trace-file [paced]");
+			return;
+		}
+		Path file = Path.of(args[0]);
+		boolean paced = args.length > 1 && args[1].equals("paced");
+		String name;
+		try (InputStream in = Files.newInputStream(file)) {
+			name = checkHeader(new DataInputStream(in), null);
+		}
+		KeyCodec<?> codec = KeyCodec.forName(name);
+		boolean allMatch;
+		try (InputStream in = Files.newInputStream(file)) {
+			switch (name) {
+				case "int":
+				case "int-delta": {
+					Trace<Integer> trace = read(in, (KeyCodec<Integer>) codec);
+					List<Target<Integer>> targets = targets();
+					targets.add(of(new IntRedBlackTree()));
+					System.out.printf("%,d operations recorded over %.1f ms%n", trace.length(), trace.durationNanos() / 1e6);
+					allMatch = replayAll(trace, targets, paced);
+					break;
+				}
+				case "long":
+				case "long-delta": {
+					Trace<Long> trace = read(in, (KeyCodec<Long>) codec);
+					List<Target<Long>> targets = targets();
+					targets.add(of(new LongRedBlackTree()));
+					targets.add(of(new OffHeapRedBlackTree()));
+					System.out.printf("%,d operations recorded over %.1f ms%n", trace.length(), trace.durationNanos() / 1e6);
+					allMatch = replayAll(trace, targets, paced);
+					break;
+				}
+				default: {
+					Trace<String> trace = read(in, (KeyCodec<String>) codec);
+					System.out.printf("%,d operations recorded over %.1f ms%n", trace.length(), trace.durationNanos() / 1e6);
+					allMatch = replayAll(trace, TraceReplayer.<String>targets(), paced);
+				}
+			}
+		}
+		if (!allMatch) {
+			System.exit(1);
+		}
+	}
+
+}
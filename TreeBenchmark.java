@@ -0,0 +1,1323 @@
+package redBlackTrees;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Rough wall clock benchmarks, run with the suite name as argument:
+ *   java redBlackTrees.TreeBenchmark primitive
+ * Every suite repeats its work a few times so the JIT has warmed up before the
+ * last (reported) round.
+ */
+public class TreeBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		String suite = args.length > 0 ? args[0] : "primitive";
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+		switch (suite) {
+			case "primitive":
+				primitive(size);
+				break;
+			case "footprint":
+				footprint(size);
+				break;
+			case "bulk":
+				bulk(size);
+				break;
+			case "parallel":
+				parallel(size);
+				break;
+			case "concurrent":
+				concurrent(size);
+				break;
+			case "batch":
+				batch(size);
+				break;
+			case "setops":
+				setOperations(size);
+				break;
+			case "offheap":
+				offHeap(size);
+				break;
+			case "mapped":
+				mapped(size);
+				break;
+			case "snapshot":
+				snapshot(size);
+				break;
+			case "wal":
+				writeAheadLog();
+				break;
+			case "metrics":
+				metrics(size);
+				break;
+			case "duplicates":
+				duplicates(size);
+				break;
+			case "trace":
+				trace(size);
+				break;
+			case "btree":
+				// e.g. "btree 20000000" with a heap large enough for the RedBlackTree
+				bTree(size);
+				break;
+			case "lookupcache":
+				lookupCache(size);
+				break;
+			case "append":
+				append(size);
+				break;
+			case "rebalance":
+				// a small tree, e.g. "rebalance 4096", so rebalancing rather than cache misses dominates
+				rebalance(size);
+				break;
+			case "balancing":
+				balancing(size);
+				break;
+			case "interval":
+				// e.g. "interval 4000000" with -Xmx2g or more
+				intervals(size);
+				break;
+			default:
+				System.out.println("Unknown suite: " + suite);
+		}
+	}
+
+	/*
+	 * Reservation-like intervals: starts spread over 100 * size time units, most
+	 * 1 to 200 units long, one in a hundred up to 100,000. Insert and delete of
+	 * IntervalTree against a plain RedBlackTree of the same intervals (the cost of
+	 * keeping max endpoints), then stab and overlapping(a, b) queries against
+	 * scanning inOrder(), which only gets a few queries as each touches all keys.
+	 */
+	private static void intervals(int size) {
+		Random random = new Random(42);
+		List<Interval<Integer>> intervals = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int start = random.nextInt(100 * size);
+			int length = random.nextInt(100) == 0 ? random.nextInt(100_000) : 1 + random.nextInt(200);
+			intervals.add(new Interval<>(start, start + length));
+		}
+		int queries = Math.min(size, 200_000);
+		int[] points = new int[queries];
+		for (int i = 0; i < queries; i++) {
+			points[i] = random.nextInt(100 * size);
+		}
+		int scans = 5;
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			RedBlackTree<Interval<Integer>> plain = new RedBlackTree<>();
+			long start = System.nanoTime();
+			for (Interval<Integer> interval : intervals) {
+				plain.insert(interval);
+			}
+			report("RedBlackTree insert", start, size);
+			IntervalTree<Integer> tree = new IntervalTree<>();
+			start = System.nanoTime();
+			for (Interval<Integer> interval : intervals) {
+				tree.insert(interval);
+			}
+			report("IntervalTree insert", start, size);
+
+			start = System.nanoTime();
+			long found = 0;
+			for (int point : points) {
+				found += tree.stab(point).count();
+			}
+			report("stab", start, queries, found);
+			start = System.nanoTime();
+			found = 0;
+			for (int point : points) {
+				found += tree.overlapping(point, point + 1000).count();
+			}
+			report("overlapping, window 1000", start, queries, found);
+			start = System.nanoTime();
+			found = 0;
+			for (int point : points) {
+				found += tree.overlapping(point, point + 100_000).count();
+			}
+			report("overlapping, window 100000", start, queries, found);
+			start = System.nanoTime();
+			found = 0;
+			for (int i = 0; i < scans; i++) {
+				int low = points[i];
+				int high = low + 1000;
+				found += tree.inOrder().stream().filter(interval -> interval.overlaps(low, high)).count();
+			}
+			report("inOrder() scan, window 1000", start, scans, found);
+
+			start = System.nanoTime();
+			for (Interval<Integer> interval : intervals) {
+				plain.delete(interval);
+			}
+			report("RedBlackTree delete", start, size);
+			start = System.nanoTime();
+			for (Interval<Integer> interval : intervals) {
+				tree.delete(interval);
+			}
+			report("IntervalTree delete", start, size);
+		}
+	}
+
+	/*
+	 * Skewed reads: 80% of finds go to a hot 1% of the keys, the rest are spread
+	 * over all keys. RedBlackTree without and with LookupCaches of a few sizes;
+	 * throughput first, then latency percentiles and hit rate from a second pass
+	 * with TreeMetrics attached.
+	 */
+	private static void lookupCache(int size) {
+		int[] keys = randomKeys(size, 42);
+		Random random = new Random(7);
+		int hot = Math.max(1, size / 100);
+		Integer[] probes = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			probes[i] = keys[random.nextInt(10) < 8 ? random.nextInt(hot) : random.nextInt(size)];
+		}
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int key : keys) {
+			tree.insert(key);
+		}
+		int[] capacities = { 0, hot / 4, hot, 4 * hot };
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			for (int capacity : capacities) {
+				String name = capacity == 0 ? "no cache" : "cache " + capacity;
+				LookupCache<Integer> cache = capacity == 0 ? null : new LookupCache<>(capacity);
+				tree.setLookupCache(cache);
+				long start = System.nanoTime();
+				int found = 0;
+				for (Integer key : probes) {
+					found += tree.find(key) ? 1 : 0;
+				}
+				report(name + " find", start, size, found);
+
+				if (round == ROUNDS) {
+					TreeMetrics metrics = new TreeMetrics();
+					tree.setListener(metrics);
+					for (Integer key : probes) {
+						tree.find(key);
+					}
+					tree.setListener(null);
+					System.out.println("    " + metrics.snapshot(tree).getLatency(TreeListener.Operation.FIND));
+					if (cache != null) {
+						System.out.println("    " + cache);
+					}
+				}
+			}
+		}
+		tree.setLookupCache(null);
+	}
+
+	/*
+	 * Timestamp-like keys: increasing, except that one in a hundred arrives up to
+	 * 1000 places late. add() against addHinted(), with comparisons per insert
+	 * counted in a separate pass, and TreeSet for reference.
+	 */
+	private static void append(int size) {
+		Random random = new Random(42);
+		Integer[] keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = 2 * i - (random.nextInt(100) == 0 ? 2 * random.nextInt(1000) + 1 : 0);
+		}
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			for (boolean hinted : new boolean[] { false, true }) {
+				String name = hinted ? "RedBlackTree addHinted" : "RedBlackTree add";
+				RedBlackTree<Integer> tree = new RedBlackTree<>();
+				long start = System.nanoTime();
+				for (Integer key : keys) {
+					if (hinted) {
+						tree.addHinted(key);
+					}
+					else {
+						tree.add(key);
+					}
+				}
+				report(name, start, size, tree.size());
+
+				LongAdder comparisons = new LongAdder();
+				tree = new RedBlackTree<>();
+				tree.setListener(new TreeListener() {
+					@Override
+					public void onCompare() {
+						comparisons.increment();
+					}
+				});
+				for (Integer key : keys) {
+					if (hinted) {
+						tree.addHinted(key);
+					}
+					else {
+						tree.add(key);
+					}
+				}
+				System.out.printf("  %-40s %8.2f comparisons/op%n", name, comparisons.doubleValue() / size);
+			}
+
+			long start = System.nanoTime();
+			TreeSet<Integer> set = new TreeSet<>();
+			for (Integer key : keys) {
+				set.add(key);
+			}
+			report("TreeSet add", start, size, set.size());
+		}
+	}
+
+	// fills and empties one RedBlackTree of size keys many times over, in different random orders
+	private static void rebalance(int size) {
+		int[] keys = randomKeys(size, 42);
+		int[] deleteOrder = shuffled(keys, 43);
+		int repeats = Math.max(1, 1_000_000 / size);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			long insertNanos = 0;
+			long deleteNanos = 0;
+			long blackhole = 0;
+			for (int i = 0; i < repeats; i++) {
+				RedBlackTree<Integer> tree = new RedBlackTree<>();
+				long start = System.nanoTime();
+				for (int key : keys) {
+					tree.insert(key);
+				}
+				long middle = System.nanoTime();
+				blackhole += tree.blackHeight();
+				for (int key : deleteOrder) {
+					tree.delete(key);
+				}
+				deleteNanos += System.nanoTime() - middle;
+				insertNanos += middle - start;
+				blackhole += tree.size();
+			}
+			if (round == ROUNDS) {
+				long operations = (long) repeats * size;
+				System.out.printf("  %-40s %8.1f ns/op  (%d)%n", "insert", (double) insertNanos / operations, blackhole);
+				System.out.printf("  %-40s %8.1f ns/op%n", "delete", (double) deleteNanos / operations);
+			}
+		}
+	}
+
+	/*
+	 * Rebalancing work of each balancing policy: rotations and recolors (rank
+	 * changes for WavlTree) per operation, and time per operation with a counting
+	 * listener attached. Insert-heavy fills an empty tree, delete-heavy empties a
+	 * full one in random order, and mixed slides a window of size / 2 keys
+	 * (insert the newest, delete the oldest) like sessions expiring.
+	 */
+	private static void balancing(int size) {
+		int[] keys = randomKeys(size, 42);
+		int[] deleteOrder = shuffled(keys, 43);
+		Balancer[] balancers = {
+			redBlack(),
+			balanced(LeftLeaningRedBlackTree::new),
+			balanced(WavlTree::new),
+		};
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			for (Balancer balancer : balancers) {
+				String name = balancer.name();
+				RebalanceCounter counter = new RebalanceCounter();
+
+				balancer.reset(counter);
+				long start = System.nanoTime();
+				for (int key : keys) {
+					balancer.add(key);
+				}
+				counter.report(name + " insert-heavy", start, size);
+
+				counter = new RebalanceCounter();
+				balancer.listen(counter);
+				start = System.nanoTime();
+				for (int key : deleteOrder) {
+					balancer.remove(key);
+				}
+				counter.report(name + " delete-heavy", start, size);
+
+				int window = size / 2;
+				balancer.reset(null);
+				for (int i = 0; i < window; i++) {
+					balancer.add(keys[i]);
+				}
+				counter = new RebalanceCounter();
+				balancer.listen(counter);
+				start = System.nanoTime();
+				for (int i = window; i < size; i++) {
+					balancer.add(keys[i]);
+					balancer.remove(keys[i - window]);
+				}
+				counter.report(name + " mixed", start, 2 * (size - window));
+			}
+		}
+	}
+
+	// one balancing policy as balancing() drives it
+	private interface Balancer {
+
+		String name();
+
+		// starts over with an empty tree reporting to listener
+		void reset(TreeListener listener);
+
+		void listen(TreeListener listener);
+
+		void add(int key);
+
+		void remove(int key);
+	}
+
+	private static Balancer redBlack() {
+		return new Balancer() {
+			private RedBlackTree<Integer> tree;
+
+			public String name() {
+				return "RedBlackTree";
+			}
+
+			public void reset(TreeListener listener) {
+				this.tree = new RedBlackTree<>();
+				listen(listener);
+			}
+
+			public void listen(TreeListener listener) {
+				this.tree.setListener(listener);
+			}
+
+			public void add(int key) {
+				this.tree.add(key);
+			}
+
+			public void remove(int key) {
+				this.tree.remove(key);
+			}
+		};
+	}
+
+	private static Balancer balanced(Supplier<BalancedTree<Integer>> policy) {
+		return new Balancer() {
+			private final String name = policy.get().getClass().getSimpleName();
+			private BalancedTree<Integer> tree;
+
+			public String name() {
+				return this.name;
+			}
+
+			public void reset(TreeListener listener) {
+				this.tree = policy.get();
+				listen(listener);
+			}
+
+			public void listen(TreeListener listener) {
+				this.tree.setListener(listener);
+			}
+
+			public void add(int key) {
+				this.tree.add(key);
+			}
+
+			public void remove(int key) {
+				this.tree.remove(key);
+			}
+		};
+	}
+
+	// counts rebalancing only; TreeMetrics would also time every operation
+	private static final class RebalanceCounter implements TreeListener {
+
+		private long rotations;
+		private long recolors;
+
+		@Override
+		public void onRotate() {
+			this.rotations++;
+		}
+
+		@Override
+		public void onRecolor() {
+			this.recolors++;
+		}
+
+		void report(String name, long start, int operations) {
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("  %-40s %8.1f ns/op  %6.3f rotations/op  %6.3f recolors/op%n", name,
+					(double) elapsed / operations, (double) this.rotations / operations, (double) this.recolors / operations);
+		}
+	}
+
+	/*
+	 * Lookup throughput of BTree at several fanouts against RedBlackTree and
+	 * TreeSet, one engine at a time so only one tree is live. Sizes past the last
+	 * level cache are what this is for; insert and delete are timed once per
+	 * engine for reference.
+	 */
+	private static void bTree(int size) {
+		int[] raw = randomKeys(size, 42);
+		Integer[] keys = new Integer[size];
+		Integer[] probes = new Integer[size];
+		Integer[] misses = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = raw[i];
+			probes[i] = keys[i];
+		}
+		// look up in another order than the inserts went in
+		Collections.shuffle(Arrays.asList(probes), new Random(43));
+		for (int i = 0; i < size; i++) {
+			misses[i] = probes[i] + 1;
+		}
+
+		Runnable[] engines = {
+			() -> lookups("TreeSet", new TreeSet<>(), keys, probes, misses),
+			() -> lookups("RedBlackTree", new RedBlackTree<>(), keys, probes, misses),
+			() -> lookups("BTree(4)", new BTree<>(4), keys, probes, misses),
+			() -> lookups("BTree(16)", new BTree<>(16), keys, probes, misses),
+			() -> lookups("BTree(64)", new BTree<>(64), keys, probes, misses),
+			() -> lookups("BTree(256)", new BTree<>(256), keys, probes, misses),
+		};
+		for (Runnable engine : engines) {
+			engine.run();
+			usedHeap(); // collect the last tree before the next is built
+		}
+	}
+
+	private static void lookups(String name, Set<Integer> set, Integer[] keys, Integer[] probes, Integer[] misses) {
+		System.out.println(name);
+		long start = System.nanoTime();
+		for (Integer key : keys) {
+			set.add(key);
+		}
+		report("insert", start, keys.length);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			start = System.nanoTime();
+			long found = 0;
+			for (Integer key : probes) {
+				found += set.contains(key) ? 1 : 0;
+			}
+			if (round == ROUNDS) {
+				report("find hit", start, probes.length, found);
+			}
+
+			start = System.nanoTime();
+			found = 0;
+			for (Integer key : misses) {
+				found += set.contains(key) ? 1 : 0;
+			}
+			if (round == ROUNDS) {
+				report("find miss", start, misses.length, found);
+			}
+		}
+
+		start = System.nanoTime();
+		for (Integer key : probes) {
+			set.remove(key);
+		}
+		report("delete", start, probes.length, set.size());
+	}
+
+	// RedBlackTree<Integer> vs IntRedBlackTree vs LongRedBlackTree on random keys
+	private static void primitive(int size) {
+		int[] keys = randomKeys(size, 42);
+		int[] misses = missKeys(keys);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+
+			long start = System.nanoTime();
+			RedBlackTree<Integer> generic = new RedBlackTree<>();
+			for (int key : keys) {
+				generic.insert(key);
+			}
+			report("RedBlackTree<Integer> insert", start, size);
+
+			start = System.nanoTime();
+			int found = 0;
+			for (int key : keys) {
+				found += generic.find(key) ? 1 : 0;
+			}
+			for (int key : misses) {
+				found += generic.find(key) ? 1 : 0;
+			}
+			report("RedBlackTree<Integer> find", start, 2 * size, found);
+
+			start = System.nanoTime();
+			IntRedBlackTree ints = new IntRedBlackTree();
+			for (int key : keys) {
+				ints.insert(key);
+			}
+			report("IntRedBlackTree insert", start, size);
+
+			start = System.nanoTime();
+			found = 0;
+			for (int key : keys) {
+				found += ints.find(key) ? 1 : 0;
+			}
+			for (int key : misses) {
+				found += ints.find(key) ? 1 : 0;
+			}
+			report("IntRedBlackTree find", start, 2 * size, found);
+
+			start = System.nanoTime();
+			for (int key : keys) {
+				ints.delete(key);
+			}
+			report("IntRedBlackTree delete", start, size);
+
+			start = System.nanoTime();
+			LongRedBlackTree longs = new LongRedBlackTree();
+			for (int key : keys) {
+				longs.insert(key);
+			}
+			report("LongRedBlackTree insert", start, size);
+
+			start = System.nanoTime();
+			found = 0;
+			for (int key : keys) {
+				found += longs.find(key) ? 1 : 0;
+			}
+			for (int key : misses) {
+				found += longs.find(key) ? 1 : 0;
+			}
+			report("LongRedBlackTree find", start, 2 * size, found);
+		}
+	}
+
+	// RedBlackTree without a listener (the default) vs with a TreeMetrics attached
+	private static void metrics(int size) {
+		int[] keys = randomKeys(size, 42);
+		TreeMetrics.Snapshot snapshot = null;
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			for (boolean instrumented : new boolean[] { false, true }) {
+				String name = instrumented ? "TreeMetrics" : "no listener";
+				TreeMetrics metrics = new TreeMetrics();
+				RedBlackTree<Integer> tree = new RedBlackTree<>();
+				if (instrumented) {
+					tree.setListener(metrics);
+				}
+
+				long start = System.nanoTime();
+				for (int key : keys) {
+					tree.insert(key);
+				}
+				report(name + " insert", start, size);
+
+				start = System.nanoTime();
+				int found = 0;
+				for (int key : keys) {
+					found += tree.find(key) ? 1 : 0;
+				}
+				report(name + " find", start, size, found);
+
+				if (instrumented) {
+					snapshot = metrics.snapshot(tree);
+				}
+				start = System.nanoTime();
+				for (int key : keys) {
+					tree.delete(key);
+				}
+				report(name + " delete", start, size);
+			}
+		}
+		System.out.print(snapshot);
+	}
+
+	// duplicate heavy ingest: size keys drawn from size / 100 distinct values
+	private static void duplicates(int size) {
+		int[] distinct = randomKeys(Math.max(1, size / 100), 42);
+		Random random = new Random(7);
+		int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = distinct[random.nextInt(distinct.length)];
+		}
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+
+			long start = System.nanoTime();
+			RedBlackTree<Integer> tree = new RedBlackTree<>();
+			int added = 0;
+			for (int key : keys) {
+				added += tree.add(key) ? 1 : 0;
+			}
+			report("RedBlackTree add", start, size, added);
+
+			start = System.nanoTime();
+			tree = new RedBlackTree<>();
+			for (int key : keys) {
+				tree.insert(key);
+			}
+			report("RedBlackTree insert", start, size, tree.size());
+
+			start = System.nanoTime();
+			TreeSet<Integer> set = new TreeSet<>();
+			added = 0;
+			for (int key : keys) {
+				added += set.add(key) ? 1 : 0;
+			}
+			report("TreeSet add", start, size, added);
+		}
+	}
+
+	// records a mixed workload on a RedBlackTree, then replays it against every tree
+	private static void trace(int size) {
+		int[] keys = randomKeys(size, 42);
+		Random random = new Random(7);
+		byte[] ops = new byte[size];
+		int[] operands = new int[size];
+		for (int i = 0; i < size; i++) {
+			int choice = random.nextInt(4); // half finds, a quarter each inserts and deletes
+			ops[i] = choice < 2 ? TraceRecorder.FIND : choice == 2 ? TraceRecorder.INSERT : TraceRecorder.DELETE;
+			operands[i] = keys[random.nextInt(Math.max(1, i / 2 + 1))];
+		}
+
+		byte[] recorded = null;
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			for (boolean recording : new boolean[] { false, true }) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				RedBlackTree<Integer> tree = new RedBlackTree<>();
+				try (TraceRecorder<Integer> recorder = new TraceRecorder<>(out, KeyCodec.integers())) {
+					if (recording) {
+						tree.setListener(recorder);
+					}
+					long start = System.nanoTime();
+					int found = 0;
+					for (int i = 0; i < size; i++) {
+						int key = operands[i];
+						boolean present = !tree.isEmpty() && tree.find(key);
+						found += present ? 1 : 0;
+						if (ops[i] == TraceRecorder.INSERT && !present) {
+							tree.insert(key);
+						}
+						else if (ops[i] == TraceRecorder.DELETE && present) {
+							tree.delete(key);
+						}
+					}
+					report(recording ? "recorded workload" : "unrecorded workload", start, size, found);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				recorded = out.toByteArray();
+			}
+		}
+		System.out.printf("  trace is %,d bytes%n", recorded.length);
+
+		try {
+			TraceReplayer.Trace<Integer> trace = TraceReplayer.read(new ByteArrayInputStream(recorded), KeyCodec.integers());
+			List<TraceReplayer.Target<Integer>> targets = TraceReplayer.targets();
+			targets.add(TraceReplayer.of(new IntRedBlackTree()));
+			TraceReplayer.replayAll(trace, targets, false);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Reload of already sorted keys: one insert per key vs RedBlackTree.fromSorted
+	private static void bulk(int size) {
+		Integer[] sorted = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = 2 * i;
+		}
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+
+			long start = System.nanoTime();
+			RedBlackTree<Integer> inserted = new RedBlackTree<>();
+			for (Integer key : sorted) {
+				inserted.insert(key);
+			}
+			report("insert loop (sorted)", start, size);
+
+			start = System.nanoTime();
+			RedBlackTree<Integer> built = RedBlackTree.fromSorted(sorted);
+			report("fromSorted", start, size, built.isEmpty() ? 0 : 1);
+		}
+	}
+
+	// Whole-tree aggregation: copy via inOrder() vs stream() vs parallelStream()
+	private static void parallel(int size) {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int key : randomKeys(size, 42)) {
+			tree.insert(key);
+		}
+		System.out.println("  cores: " + Runtime.getRuntime().availableProcessors());
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+
+			long start = System.nanoTime();
+			long sum = tree.inOrder().stream().mapToLong(key -> key * 31L % 7).sum();
+			report("inOrder().stream()", start, size, sum);
+
+			start = System.nanoTime();
+			sum = tree.stream().mapToLong(key -> key * 31L % 7).sum();
+			report("stream()", start, size, sum);
+
+			start = System.nanoTime();
+			sum = tree.parallelStream().mapToLong(key -> key * 31L % 7).sum();
+			report("parallelStream()", start, size, sum);
+		}
+	}
+
+	// Sorted micro-batches of 5k keys into a tree of size keys: insert loop vs insertAll/deleteAll
+	private static void batch(int size) {
+		int batchSize = 5_000;
+		int batches = 100;
+		int[] base = randomKeys(size, 42);
+		// batch keys are odd, base keys even, so every batch key is new; batches are
+		// spread over the key range and disjoint as long as size >= batches * batchSize
+		List<List<Integer>> sortedBatches = new ArrayList<>();
+		for (int b = 0; b < batches; b++) {
+			int start = b * (2 * size / batches);
+			List<Integer> batch = new ArrayList<>(batchSize);
+			for (int i = 0; i < batchSize; i++) {
+				batch.add(start + 2 * i + 1);
+			}
+			sortedBatches.add(batch);
+		}
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			RedBlackTree<Integer> single = new RedBlackTree<>();
+			RedBlackTree<Integer> batched = new RedBlackTree<>();
+			for (int key : base) {
+				single.insert(key);
+				batched.insert(key);
+			}
+
+			long start = System.nanoTime();
+			for (List<Integer> batch : sortedBatches) {
+				for (Integer key : batch) {
+					single.insert(key);
+				}
+			}
+			report("insert loop", start, batches * batchSize);
+
+			start = System.nanoTime();
+			long inserted = 0;
+			for (List<Integer> batch : sortedBatches) {
+				for (BatchResult result : batched.insertAll(batch)) {
+					inserted += result == BatchResult.INSERTED ? 1 : 0;
+				}
+			}
+			report("insertAll", start, batches * batchSize, inserted);
+
+			start = System.nanoTime();
+			for (List<Integer> batch : sortedBatches) {
+				for (Integer key : batch) {
+					single.delete(key);
+				}
+			}
+			report("delete loop", start, batches * batchSize);
+
+			start = System.nanoTime();
+			long deleted = 0;
+			for (List<Integer> batch : sortedBatches) {
+				for (BatchResult result : batched.deleteAll(batch)) {
+					deleted += result == BatchResult.DELETED ? 1 : 0;
+				}
+			}
+			report("deleteAll", start, batches * batchSize, deleted);
+		}
+	}
+
+	// size keys merged with size / 4 keys (half of them shared): per key loops vs union/intersection/difference
+	private static void setOperations(int size) {
+		List<Integer> large = sortedList(randomKeys(size, 42));
+		int[] smallKeys = randomKeys(size / 4, 7);
+		for (int i = 0; i < smallKeys.length; i += 2) {
+			smallKeys[i]++; // odd, so not in large
+		}
+		List<Integer> small = sortedList(smallKeys);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+			RedBlackTree<Integer> a = RedBlackTree.fromSorted(large);
+			RedBlackTree<Integer> b = RedBlackTree.fromSorted(small);
+			System.gc(); // the setup trees are garbage a round later, keep that out of the timings
+			long start = System.nanoTime();
+			for (Integer key : b) {
+				if (!a.find(key)) {
+					a.insert(key);
+				}
+			}
+			report("union, find+insert loop", start, small.size(), a.size());
+
+			a = RedBlackTree.fromSorted(large);
+			System.gc();
+			start = System.nanoTime();
+			RedBlackTree<Integer> result = RedBlackTree.union(a, b);
+			report("union()", start, small.size(), result.size());
+
+			a = RedBlackTree.fromSorted(large);
+			b = RedBlackTree.fromSorted(small);
+			System.gc();
+			start = System.nanoTime();
+			RedBlackTree<Integer> common = new RedBlackTree<>();
+			for (Integer key : b) {
+				if (a.find(key)) {
+					common.insert(key);
+				}
+			}
+			report("intersection, find+insert loop", start, small.size(), common.size());
+
+			System.gc();
+			start = System.nanoTime();
+			result = RedBlackTree.intersection(a, b);
+			report("intersection()", start, small.size(), result.size());
+
+			a = RedBlackTree.fromSorted(large);
+			b = RedBlackTree.fromSorted(small);
+			System.gc();
+			start = System.nanoTime();
+			for (Integer key : b) {
+				if (a.find(key)) {
+					a.delete(key);
+				}
+			}
+			report("difference, find+delete loop", start, small.size(), a.size());
+
+			a = RedBlackTree.fromSorted(large);
+			System.gc();
+			start = System.nanoTime();
+			result = RedBlackTree.difference(a, b);
+			report("difference()", start, small.size(), result.size());
+		}
+	}
+
+	private static List<Integer> sortedList(int[] keys) {
+		int[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		List<Integer> list = new ArrayList<>(sorted.length);
+		for (int key : sorted) {
+			list.add(key);
+		}
+		return list;
+	}
+
+	// LongRedBlackTree vs OffHeapRedBlackTree: speed, then heap held by each full tree
+	private static void offHeap(int size) {
+		int[] keys = randomKeys(size, 42);
+		int[] misses = missKeys(keys);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.out.println("round " + round);
+
+			long start = System.nanoTime();
+			LongRedBlackTree longs = new LongRedBlackTree();
+			for (int key : keys) {
+				longs.insert(key);
+			}
+			report("LongRedBlackTree insert", start, size);
+
+			start = System.nanoTime();
+			int found = 0;
+			for (int key : keys) {
+				found += longs.find(key) ? 1 : 0;
+			}
+			for (int key : misses) {
+				found += longs.find(key) ? 1 : 0;
+			}
+			report("LongRedBlackTree find", start, 2 * size, found);
+
+			start = System.nanoTime();
+			for (int key : keys) {
+				longs.delete(key);
+			}
+			report("LongRedBlackTree delete", start, size);
+
+			start = System.nanoTime();
+			OffHeapRedBlackTree offHeap = new OffHeapRedBlackTree();
+			for (int key : keys) {
+				offHeap.insert(key);
+			}
+			report("OffHeapRedBlackTree insert", start, size);
+
+			start = System.nanoTime();
+			found = 0;
+			for (int key : keys) {
+				found += offHeap.find(key) ? 1 : 0;
+			}
+			for (int key : misses) {
+				found += offHeap.find(key) ? 1 : 0;
+			}
+			report("OffHeapRedBlackTree find", start, 2 * size, found);
+
+			start = System.nanoTime();
+			for (int key : keys) {
+				offHeap.delete(key);
+			}
+			report("OffHeapRedBlackTree delete", start, size);
+		}
+
+		long before = usedHeap();
+		LongRedBlackTree longs = new LongRedBlackTree();
+		for (int key : keys) {
+			longs.insert(key);
+		}
+		long longBytes = usedHeap() - before;
+		System.out.printf("  %-40s %8.1f heap bytes/key%n", "LongRedBlackTree", (double) longBytes / size);
+
+		before = usedHeap();
+		OffHeapRedBlackTree offHeap = new OffHeapRedBlackTree();
+		for (int key : keys) {
+			offHeap.insert(key);
+		}
+		long offHeapBytes = usedHeap() - before;
+		System.out.printf("  %-40s %8.1f heap bytes/key%n", "OffHeapRedBlackTree", (double) offHeapBytes / size);
+		System.out.println("  (" + longs.size() + ", " + offHeap.size() + ")");
+	}
+
+	// restart cost: re-inserting every key vs reopening a MappedRedBlackTree file
+	private static void mapped(int size) {
+		int[] keys = randomKeys(size, 42);
+		try {
+			Path file = Files.createTempFile("tree", ".rbt");
+			try {
+				try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+					for (int key : keys) {
+						tree.insert(key);
+					}
+				}
+				for (int round = 1; round <= ROUNDS; round++) {
+					System.out.println("round " + round);
+
+					long start = System.nanoTime();
+					LongRedBlackTree rebuilt = new LongRedBlackTree();
+					for (int key : keys) {
+						rebuilt.insert(key);
+					}
+					report("rebuild by insert, per key", start, size, rebuilt.size());
+
+					start = System.nanoTime();
+					try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+						report("MappedRedBlackTree open, per key", start, size, tree.size());
+
+						start = System.nanoTime();
+						int found = 0;
+						for (int key : keys) {
+							found += tree.find(key) ? 1 : 0;
+						}
+						report("MappedRedBlackTree find after open", start, size, found);
+					}
+				}
+			}
+			finally {
+				Files.delete(file);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// writeSnapshot/readSnapshot throughput per codec, vs rebuilding with insert()
+	private static void snapshot(int size) {
+		int[] raw = randomKeys(size, 42);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int key : raw) {
+			tree.insert(key);
+		}
+		List<KeyCodec<Integer>> codecs = List.of(KeyCodec.integers(), KeyCodec.integerDeltas());
+
+		try {
+			for (int round = 1; round <= ROUNDS; round++) {
+				System.out.println("round " + round);
+				for (KeyCodec<Integer> codec : codecs) {
+					ByteArrayOutputStream out = new ByteArrayOutputStream(8 * size + 1024);
+					long start = System.nanoTime();
+					tree.writeSnapshot(out, codec);
+					reportBytes("writeSnapshot " + codec.name(), start, out.size(), size);
+
+					byte[] bytes = out.toByteArray();
+					System.gc(); // earlier rounds' trees are garbage now
+					start = System.nanoTime();
+					RedBlackTree<Integer> loaded = RedBlackTree.readSnapshot(new ByteArrayInputStream(bytes), codec);
+					reportBytes("readSnapshot " + codec.name(), start, bytes.length, loaded.size());
+				}
+
+				long start = System.nanoTime();
+				RedBlackTree<Integer> rebuilt = new RedBlackTree<>();
+				for (Integer key : tree) {
+					rebuilt.insert(key);
+				}
+				report("rebuild by insert, per key", start, size, rebuilt.size());
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void reportBytes(String name, long start, long bytes, int keys) {
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("  %-40s %8.1f MB/s  %5.2f bytes/key  %6.1f ns/key%n", name,
+				bytes / (elapsed / 1e9) / 1e6, (double) bytes / keys, (double) elapsed / keys);
+	}
+
+	// durable inserts per second for 1 second: synchronous group commit by thread
+	// count and commit delay, then asynchronous commits from one thread
+	private static void writeAheadLog() {
+		try {
+			for (long delayMicros : new long[] { 0, 200, 1000 }) {
+				for (int threads = 1; threads <= 64; threads *= 4) {
+					long ops = runDurable(threads, true, delayMicros * 1000);
+					System.out.printf("  synchronous  delay %4d us  %2d threads  %,10d inserts/s%n", delayMicros, threads, ops);
+				}
+			}
+			for (long delayMicros : new long[] { 1000, 10_000 }) {
+				long ops = runDurable(1, false, delayMicros * 1000);
+				System.out.printf("  asynchronous delay %5d us   1 thread   %,10d inserts/s%n", delayMicros, ops);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long runDurable(int threads, boolean synchronous, long commitDelayNanos) throws IOException {
+		Path directory = Files.createTempDirectory("wal");
+		LongAdder operations = new LongAdder();
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(directory, KeyCodec.integers(), synchronous, commitDelayNanos)) {
+			long deadline = System.nanoTime() + 1_000_000_000L;
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				int first = t << 24; // disjoint keys per thread
+				workers[t] = new Thread(() -> {
+					int count = 0;
+					try {
+						while ((count & 63) != 0 || System.nanoTime() < deadline) {
+							tree.insert(first + count);
+							count++;
+						}
+					}
+					catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					operations.add(count);
+				});
+				workers[t].start();
+			}
+			for (Thread worker : workers) {
+				try {
+					worker.join();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		finally {
+			try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+		return operations.sum();
+	}
+
+	// 95% find / 5% insert+delete from 1 to 32 threads, synchronized wrapper vs ConcurrentRedBlackTree
+	private static void concurrent(int size) {
+		int[] keys = randomKeys(size, 42);
+		RedBlackTree<Integer> plain = new RedBlackTree<>();
+		ConcurrentRedBlackTree<Integer> concurrent = new ConcurrentRedBlackTree<>();
+		for (int key : keys) {
+			plain.insert(key);
+			concurrent.insert(key);
+		}
+		System.out.println("  cores: " + Runtime.getRuntime().availableProcessors());
+
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			long synchronizedOps = runMixed(threads, keys, new MixedWorkload() {
+				public boolean find(Integer key) {
+					synchronized (plain) {
+						return plain.find(key);
+					}
+				}
+
+				public void update(Integer key) {
+					synchronized (plain) {
+						plain.insert(key);
+						plain.delete(key);
+					}
+				}
+			});
+			long optimisticOps = runMixed(threads, keys, new MixedWorkload() {
+				public boolean find(Integer key) {
+					return concurrent.find(key);
+				}
+
+				public void update(Integer key) {
+					concurrent.insert(key);
+					concurrent.delete(key);
+				}
+			});
+			System.out.printf("  %2d threads  synchronized %,12d ops/s   ConcurrentRedBlackTree %,12d ops/s%n",
+					threads, synchronizedOps, optimisticOps);
+		}
+	}
+
+	private interface MixedWorkload {
+		boolean find(Integer key);
+
+		void update(Integer key);
+	}
+
+	// Runs the workload on every thread for one second, returns total ops per second.
+	// Updates insert and remove a key private to the thread (negative, odd), so
+	// threads never race on the same update key and the tree's content stays fixed.
+	private static long runMixed(int threads, int[] keys, MixedWorkload workload) {
+		LongAdder operations = new LongAdder();
+		long deadline = System.nanoTime() + 1_000_000_000L;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			long seed = t;
+			Integer updateKey = -(2 * t + 1);
+			workers[t] = new Thread(() -> {
+				Random random = new Random(seed);
+				long count = 0;
+				while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+					Integer key = keys[random.nextInt(keys.length)];
+					if (random.nextInt(100) < 95) {
+						workload.find(key);
+					}
+					else {
+						workload.update(updateKey);
+					}
+					count++;
+				}
+				operations.add(count);
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return operations.sum();
+	}
+
+	// Retained heap of the node structure, keys are boxed up front and shared by both trees
+	private static void footprint(int size) {
+		int[] raw = randomKeys(size, 42);
+		Integer[] keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = raw[i];
+		}
+
+		long before = usedHeap();
+		RedBlackTree<Integer> nodes = new RedBlackTree<>();
+		for (Integer key : keys) {
+			nodes.insert(key);
+		}
+		long bstNodeBytes = usedHeap() - before;
+		System.out.printf("  %-40s %8.1f bytes/key%n", "RedBlackTree (BSTNode)", (double) bstNodeBytes / size);
+		nodes = null;
+
+		before = usedHeap();
+		PooledRedBlackTree<Integer> pooled = new PooledRedBlackTree<>();
+		for (Integer key : keys) {
+			pooled.insert(key);
+		}
+		long pooledBytes = usedHeap() - before;
+		System.out.printf("  %-40s %8.1f bytes/key%n", "PooledRedBlackTree", (double) pooledBytes / size);
+
+		before = usedHeap();
+		IntRedBlackTree ints = new IntRedBlackTree();
+		for (int key : raw) {
+			ints.insert(key);
+		}
+		long intBytes = usedHeap() - before;
+		System.out.printf("  %-40s %8.1f bytes/key%n", "IntRedBlackTree", (double) intBytes / size);
+
+		// keep the trees reachable until every measurement is done
+		System.out.println("  (" + pooled.size() + ", " + ints.size() + ", " + keys.length + ")");
+	}
+
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// distinct pseudo random keys (a shuffled range) so inserts never hit duplicates
+	static int[] randomKeys(int size, long seed) {
+		Random random = new Random(seed);
+		int offset = random.nextInt(1 << 20) * 2;
+		int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = offset + 2 * i;
+		}
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = temp;
+		}
+		return keys;
+	}
+
+	// the same keys in another order
+	static int[] shuffled(int[] keys, long seed) {
+		Random random = new Random(seed);
+		int[] copy = keys.clone();
+		for (int i = copy.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = copy[i];
+			copy[i] = copy[j];
+			copy[j] = temp;
+		}
+		return copy;
+	}
+
+	// keys are all even, so every odd neighbour is a guaranteed miss
+	static int[] missKeys(int[] keys) {
+		int[] misses = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			misses[i] = keys[i] + 1;
+		}
+		return misses;
+	}
+
+	static void report(String name, long start, int operations) {
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("  %-40s %8.1f ns/op%n", name, (double) elapsed / operations);
+	}
+
+	// blackhole is printed so the JIT can't drop the measured loop
+	static void report(String name, long start, int operations, long blackhole) {
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("  %-40s %8.1f ns/op  (%d)%n", name, (double) elapsed / operations, blackhole);
+	}
+
+}
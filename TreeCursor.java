@@ -0,0 +1,118 @@
+package redBlackTrees;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * In-order cursor over a BinarySearchTree (or RedBlackTree). It sits between two
+ * keys like a ListIterator: next() returns the key after it and moves forward,
+ * previous() returns the key before it and moves back. Moving follows parent
+ * pointers, so a step allocates nothing and the whole walk needs no stack.
+ * Any insert or delete on the tree after the cursor was positioned makes the next
+ * move throw ConcurrentModificationException, except through remove().
+ */
+public class TreeCursor<E extends Comparable<E>> implements Iterator<E> {
+
+	private final BinarySearchTree<E> tree;
+	private BSTNode<E> next; // node returned by next(), nil when past the last key
+	private BSTNode<E> lastReturned; // by next() or previous(), null after remove()
+	private int expectedModCount;
+
+	TreeCursor(BinarySearchTree<E> tree) {
+		this.tree = tree;
+		first();
+	}
+
+	// moves before the smallest key
+	public TreeCursor<E> first() {
+		this.next = this.tree.minNode(this.tree.root);
+		this.lastReturned = null;
+		this.expectedModCount = this.tree.modCount;
+		return this;
+	}
+
+	// moves after the largest key
+	public TreeCursor<E> last() {
+		this.next = null;
+		this.lastReturned = null;
+		this.expectedModCount = this.tree.modCount;
+		return this;
+	}
+
+	// moves before the smallest key >= key, so next() returns key itself if present
+	public TreeCursor<E> seek(E key) {
+		this.next = this.tree.ceilingNode(key);
+		this.lastReturned = null;
+		this.expectedModCount = this.tree.modCount;
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !this.tree.isNil(this.next);
+	}
+
+	@Override
+	public E next() {
+		checkForModification();
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		BSTNode<E> current = this.next;
+		this.next = this.tree.successor(current);
+		this.lastReturned = current;
+		return current.getData();
+	}
+
+	public boolean hasPrevious() {
+		if (this.tree.isNil(this.next)) {
+			return !this.tree.isEmpty();
+		}
+		return !this.tree.isNil(this.tree.predecessor(this.next));
+	}
+
+	public E previous() {
+		checkForModification();
+		BSTNode<E> previous;
+		if (this.tree.isNil(this.next)) {
+			previous = this.tree.maxNode(this.tree.root);
+		}
+		else {
+			previous = this.tree.predecessor(this.next);
+		}
+		if (this.tree.isNil(previous)) {
+			throw new NoSuchElementException();
+		}
+		this.next = previous;
+		this.lastReturned = previous;
+		return previous.getData();
+	}
+
+	/*
+	 * Removes the key last returned by next() or previous(). Deleting a node with
+	 * two children moves its predecessor's key into it and unlinks the
+	 * predecessor's node instead, so the cursor keeps the successor's key rather
+	 * than its node and finds that again afterwards.
+	 */
+	@Override
+	public void remove() {
+		checkForModification();
+		if (this.lastReturned == null) {
+			throw new IllegalStateException();
+		}
+		BSTNode<E> after = this.tree.successor(this.lastReturned);
+		E afterKey = this.tree.isNil(after) ? null : after.getData();
+		this.tree.removeNode(this.lastReturned);
+		this.next = afterKey == null ? null : this.tree.ceilingNode(afterKey);
+		this.lastReturned = null;
+		this.expectedModCount = this.tree.modCount;
+	}
+
+	private void checkForModification() {
+		if (this.tree.modCount != this.expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+}
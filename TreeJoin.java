@@ -0,0 +1,293 @@
+package redBlackTrees;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * join/split on detached red black subtrees, and union/intersection/difference
+ * built from them (Blelloch, Ferizovic and Sun, "Just Join for Parallel Ordered
+ * Sets"). Every subtree is carried as a Piece: a black (or nil) root plus its
+ * black height, so join only walks the taller tree down to the height of the
+ * shorter one. Nodes are relinked in place, the input trees are consumed.
+ * The two recursive halves of a set operation touch disjoint nodes, so large
+ * halves run as fork/join tasks.
+ */
+final class TreeJoin {
+
+	// below this black height (a few hundred keys) forking costs more than it saves
+	private static final int PARALLEL_BLACK_HEIGHT = 8;
+
+	private TreeJoin() {
+	}
+
+	// a subtree with a black or nil root
+	static final class Piece<E extends Comparable<E>> {
+
+		final BSTNode<E> root;
+		final int blackHeight;
+		final int matches; // keys found in both inputs, set by the set operations
+
+		Piece(BSTNode<E> root, int blackHeight, int matches) {
+			this.root = root;
+			this.blackHeight = blackHeight;
+			this.matches = matches;
+		}
+	}
+
+	// result of split(): keys below, the node holding the key (or null), keys above
+	static final class Parts<E extends Comparable<E>> {
+
+		final Piece<E> left;
+		final BSTNode<E> match;
+		final Piece<E> right;
+
+		Parts(Piece<E> left, BSTNode<E> match, Piece<E> right) {
+			this.left = left;
+			this.match = match;
+			this.right = right;
+		}
+	}
+
+	enum Operation { UNION, INTERSECTION, DIFFERENCE }
+
+	private static <E extends Comparable<E>> BSTNode<E> nil() {
+		return RedBlackTree.nil();
+	}
+
+	private static <E extends Comparable<E>> Piece<E> empty() {
+		return new Piece<E>(nil(), 0, 0);
+	}
+
+	// whole tree as a piece; root may be null for a tree that was never filled
+	static <E extends Comparable<E>> Piece<E> piece(BSTNode<E> root) {
+		if (root == null || root == nil()) {
+			return empty();
+		}
+		int blackHeight = 0;
+		for (BSTNode<E> node = root; node != nil(); node = node.left) {
+			if (node.getColor() == 'B') {
+				blackHeight++;
+			}
+		}
+		return child(root, blackHeight);
+	}
+
+	// blackHeight counts the black nodes below node plus node itself if black;
+	// a red root is made black, which adds one
+	private static <E extends Comparable<E>> Piece<E> child(BSTNode<E> node, int blackHeight) {
+		if (node.getColor() == 'R') {
+			node.setColor('B');
+			blackHeight++;
+		}
+		return new Piece<>(node, blackHeight, 0);
+	}
+
+	private static <E extends Comparable<E>> Piece<E> leftOf(Piece<E> piece) {
+		return child(piece.root.left, piece.blackHeight - 1);
+	}
+
+	private static <E extends Comparable<E>> Piece<E> rightOf(Piece<E> piece) {
+		return child(piece.root.right, piece.blackHeight - 1);
+	}
+
+	private static <E extends Comparable<E>> void link(BSTNode<E> node, BSTNode<E> left, BSTNode<E> right) {
+		node.left = left;
+		node.right = right;
+		if (left != nil()) {
+			left.parent = node;
+		}
+		if (right != nil()) {
+			right.parent = node;
+		}
+	}
+
+	/*
+	 * Every key of left < middle's key < every key of right. middle is a detached
+	 * node, its links and color are overwritten.
+	 */
+	static <E extends Comparable<E>> Piece<E> join(Piece<E> left, BSTNode<E> middle, Piece<E> right) {
+		BSTNode<E> root;
+		int blackHeight;
+		if (left.blackHeight > right.blackHeight) {
+			root = joinRight(left.root, left.blackHeight, middle, right);
+			blackHeight = left.blackHeight;
+		}
+		else if (left.blackHeight < right.blackHeight) {
+			root = joinLeft(left, middle, right.root, right.blackHeight);
+			blackHeight = right.blackHeight;
+		}
+		else {
+			link(middle, left.root, right.root);
+			middle.setColor('B');
+			return new Piece<>(middle, left.blackHeight + 1, 0);
+		}
+		return child(root, blackHeight);
+	}
+
+	// Walks down the right spine of node until its black height is right's, hangs
+	// middle there as a red node and fixes a red-red pair on the way back up.
+	private static <E extends Comparable<E>> BSTNode<E> joinRight(BSTNode<E> node, int blackHeight, BSTNode<E> middle, Piece<E> right) {
+		if (node.getColor() == 'B' && blackHeight == right.blackHeight) {
+			link(middle, node, right.root);
+			middle.setColor('R');
+			return middle;
+		}
+		int childHeight = node.getColor() == 'B' ? blackHeight - 1 : blackHeight;
+		BSTNode<E> joined = joinRight(node.right, childHeight, middle, right);
+		link(node, node.left, joined);
+		if (node.getColor() == 'B' && joined.getColor() == 'R' && joined.right.getColor() == 'R') {
+			joined.right.setColor('B');
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	private static <E extends Comparable<E>> BSTNode<E> joinLeft(Piece<E> left, BSTNode<E> middle, BSTNode<E> node, int blackHeight) {
+		if (node.getColor() == 'B' && blackHeight == left.blackHeight) {
+			link(middle, left.root, node);
+			middle.setColor('R');
+			return middle;
+		}
+		int childHeight = node.getColor() == 'B' ? blackHeight - 1 : blackHeight;
+		BSTNode<E> joined = joinLeft(left, middle, node.left, childHeight);
+		link(node, joined, node.right);
+		if (node.getColor() == 'B' && joined.getColor() == 'R' && joined.left.getColor() == 'R') {
+			joined.left.setColor('B');
+			return rotateRight(node);
+		}
+		return node;
+	}
+
+	private static <E extends Comparable<E>> BSTNode<E> rotateLeft(BSTNode<E> node) {
+		BSTNode<E> pivot = node.right;
+		link(node, node.left, pivot.left);
+		link(pivot, node, pivot.right);
+		return pivot;
+	}
+
+	private static <E extends Comparable<E>> BSTNode<E> rotateRight(BSTNode<E> node) {
+		BSTNode<E> pivot = node.left;
+		link(node, pivot.right, node.right);
+		link(pivot, pivot.left, node);
+		return pivot;
+	}
+
+	// join without a middle key: the largest key of left takes that role
+	static <E extends Comparable<E>> Piece<E> join(Piece<E> left, Piece<E> right) {
+		if (left.root == nil()) {
+			return right;
+		}
+		if (right.root == nil()) {
+			return left;
+		}
+		BSTNode<E>[] last = newHolder();
+		Piece<E> rest = splitLast(left, last);
+		return join(rest, last[0], right);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E extends Comparable<E>> BSTNode<E>[] newHolder() {
+		return (BSTNode<E>[]) new BSTNode<?>[1];
+	}
+
+	// detaches the largest node of a non-empty piece into last[0]
+	private static <E extends Comparable<E>> Piece<E> splitLast(Piece<E> piece, BSTNode<E>[] last) {
+		BSTNode<E> node = piece.root;
+		if (node.right == nil()) {
+			last[0] = node;
+			return leftOf(piece);
+		}
+		Piece<E> left = leftOf(piece);
+		Piece<E> rest = splitLast(rightOf(piece), last);
+		return join(left, node, rest);
+	}
+
+	// keys < key, the node equal to key (or null), keys > key
+	static <E extends Comparable<E>> Parts<E> split(Piece<E> piece, E key) {
+		BSTNode<E> node = piece.root;
+		if (node == nil()) {
+			return new Parts<>(piece, null, piece);
+		}
+		Piece<E> left = leftOf(piece);
+		Piece<E> right = rightOf(piece);
+		int cmp = key.compareTo(node.getData());
+		if (cmp < 0) {
+			Parts<E> parts = split(left, key);
+			return new Parts<>(parts.left, parts.match, join(parts.right, node, right));
+		}
+		else if (cmp > 0) {
+			Parts<E> parts = split(right, key);
+			return new Parts<>(join(left, node, parts.left), parts.match, parts.right);
+		}
+		else {
+			return new Parts<>(left, node, right);
+		}
+	}
+
+	static <E extends Comparable<E>> Piece<E> apply(Operation operation, Piece<E> a, Piece<E> b) {
+		if (a.blackHeight >= PARALLEL_BLACK_HEIGHT && b.blackHeight >= PARALLEL_BLACK_HEIGHT) {
+			return ForkJoinPool.commonPool().invoke(new SetTask<>(operation, a, b));
+		}
+		return setOperation(operation, a, b);
+	}
+
+	/*
+	 * Splits b around a's root key and recurses on both sides; the halves share no
+	 * nodes, so they can run in parallel. Result size follows from matches:
+	 * union |a| + |b| - matches, intersection matches, difference |a| - matches.
+	 */
+	private static <E extends Comparable<E>> Piece<E> setOperation(Operation operation, Piece<E> a, Piece<E> b) {
+		if (a.root == nil() || b.root == nil()) {
+			if (operation == Operation.UNION) {
+				return a.root == nil() ? b : a;
+			}
+			return operation == Operation.INTERSECTION ? empty() : a;
+		}
+		BSTNode<E> node = a.root;
+		Parts<E> parts = split(b, node.getData());
+		Piece<E> aLeft = leftOf(a);
+		Piece<E> aRight = rightOf(a);
+		Piece<E> left;
+		Piece<E> right;
+		if (a.blackHeight >= PARALLEL_BLACK_HEIGHT && b.blackHeight >= PARALLEL_BLACK_HEIGHT) {
+			SetTask<E> task = new SetTask<>(operation, aLeft, parts.left);
+			task.fork();
+			right = setOperation(operation, aRight, parts.right);
+			left = task.join();
+		}
+		else {
+			left = setOperation(operation, aLeft, parts.left);
+			right = setOperation(operation, aRight, parts.right);
+		}
+		int matches = left.matches + right.matches + (parts.match != null ? 1 : 0);
+		Piece<E> result;
+		if (operation == Operation.UNION || (operation == Operation.INTERSECTION) == (parts.match != null)) {
+			result = join(left, node, right);
+		}
+		else {
+			result = join(left, right);
+		}
+		return new Piece<>(result.root, result.blackHeight, matches);
+	}
+
+	private static final class SetTask<E extends Comparable<E>> extends RecursiveTask<Piece<E>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Operation operation;
+		private final Piece<E> a;
+		private final Piece<E> b;
+
+		SetTask(Operation operation, Piece<E> a, Piece<E> b) {
+			this.operation = operation;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		protected Piece<E> compute() {
+			return setOperation(this.operation, this.a, this.b);
+		}
+	}
+
+}
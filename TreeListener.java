@@ -0,0 +1,47 @@
+package redBlackTrees;
+
+/**
+ * Hooks RedBlackTree and the BalancedTree policies call while they work, see
+ * RedBlackTree.setListener().
+ * Every method defaults to doing nothing, so a listener only overrides what it
+ * wants to see. Calls come from the thread running the operation.
+ */
+public interface TreeListener {
+
+	// the default listener; with only this one in use the hook calls inline away
+	TreeListener NONE = new TreeListener() {
+	};
+
+	enum Operation {
+		INSERT, DELETE, FIND
+	}
+
+	// one compareTo between a key and a node's key
+	default void onCompare() {
+	}
+
+	// one leftRotate or rightRotate
+	default void onRotate() {
+	}
+
+	// one color change while rebalancing after an insert or delete (a rank change
+	// in WavlTree)
+	default void onRecolor() {
+	}
+
+	// one step of the double black fix-up after a delete
+	default void onDoubleBlackFixup() {
+	}
+
+	// operation is about to run on key, which has passed the argument checks.
+	// Every change to the keys is reported as INSERTs and DELETEs, whichever
+	// method made it. Returns a timestamp handed back to onFinish(); listeners
+	// that do not time return 0
+	default long onStart(Operation operation, Object key) {
+		return 0;
+	}
+
+	default void onFinish(Operation operation, long start) {
+	}
+
+}
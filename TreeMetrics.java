@@ -0,0 +1,257 @@
+package redBlackTrees;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * TreeListener that counts what the tree does and times each insert, delete and
+ * find into a histogram of power of two buckets, so percentiles are exact to
+ * within a factor of two. Like RedBlackTree itself it is not thread safe: give
+ * each tree its own TreeMetrics.
+ *
+ *   TreeMetrics metrics = new TreeMetrics();
+ *   tree.setListener(metrics);
+ *   ...
+ *   System.out.println(metrics.snapshot(tree));
+ */
+public class TreeMetrics implements TreeListener {
+
+	private long comparisons;
+	private long rotations;
+	private long recolors;
+	private long doubleBlackFixups;
+	private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+
+	public TreeMetrics() {
+		for (Operation operation : Operation.values()) {
+			this.latencies.put(operation, new Histogram());
+		}
+	}
+
+	@Override
+	public void onCompare() {
+		this.comparisons++;
+	}
+
+	@Override
+	public void onRotate() {
+		this.rotations++;
+	}
+
+	@Override
+	public void onRecolor() {
+		this.recolors++;
+	}
+
+	@Override
+	public void onDoubleBlackFixup() {
+		this.doubleBlackFixups++;
+	}
+
+	@Override
+	public long onStart(Operation operation, Object key) {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void onFinish(Operation operation, long start) {
+		this.latencies.get(operation).record(System.nanoTime() - start);
+	}
+
+	public void reset() {
+		this.comparisons = 0;
+		this.rotations = 0;
+		this.recolors = 0;
+		this.doubleBlackFixups = 0;
+		for (Histogram histogram : this.latencies.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Counters and latencies so far, plus the current shape of tree (which
+	 * walks the whole tree, O(n)). The snapshot does not change afterwards.
+	 */
+	public Snapshot snapshot(RedBlackTree<?> tree) {
+		return snapshot(tree.size(), tree.height(), tree.blackHeight());
+	}
+
+	// the same for the other balancing policies; black height is left out (-1)
+	public Snapshot snapshot(BalancedTree<?> tree) {
+		return snapshot(tree.size(), tree.height(), -1);
+	}
+
+	private Snapshot snapshot(int size, int height, int blackHeight) {
+		Map<Operation, Latency> latency = new EnumMap<>(Operation.class);
+		for (Map.Entry<Operation, Histogram> entry : this.latencies.entrySet()) {
+			latency.put(entry.getKey(), entry.getValue().latency());
+		}
+		return new Snapshot(this.comparisons, this.rotations, this.recolors, this.doubleBlackFixups, latency, size,
+				height, blackHeight);
+	}
+
+	// bucket i holds durations of i significant bits, i.e. [2^(i-1), 2^i) ns
+	private static final class Histogram {
+
+		private final long[] buckets = new long[65];
+		private long count;
+		private long total;
+		private long max;
+
+		void record(long nanos) {
+			nanos = Math.max(0, nanos);
+			this.buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+			this.count++;
+			this.total += nanos;
+			this.max = Math.max(this.max, nanos);
+		}
+
+		void reset() {
+			Arrays.fill(this.buckets, 0);
+			this.count = 0;
+			this.total = 0;
+			this.max = 0;
+		}
+
+		Latency latency() {
+			return new Latency(this.count, this.count == 0 ? 0 : (double) this.total / this.count, percentile(0.50),
+					percentile(0.90), percentile(0.99), this.max);
+		}
+
+		// upper end of the bucket holding the quantile, capped at the largest value seen
+		private long percentile(double quantile) {
+			long rank = (long) Math.ceil(quantile * this.count);
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length; i++) {
+				seen += this.buckets[i];
+				if (seen >= rank && seen > 0) {
+					return i == 0 ? 0 : Math.min(this.max, (1L << i) - 1);
+				}
+			}
+			return 0;
+		}
+	}
+
+	/** Latency of one operation, in nanoseconds. */
+	public static final class Latency {
+
+		private final long count;
+		private final double mean;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long max;
+
+		Latency(long count, double mean, long p50, long p90, long p99, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public double getMean() {
+			return this.mean;
+		}
+
+		public long getP50() {
+			return this.p50;
+		}
+
+		public long getP90() {
+			return this.p90;
+		}
+
+		public long getP99() {
+			return this.p99;
+		}
+
+		public long getMax() {
+			return this.max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%,d ops, mean %.0f ns, p50 %,d ns, p90 %,d ns, p99 %,d ns, max %,d ns", this.count, this.mean,
+					this.p50, this.p90, this.p99, this.max);
+		}
+	}
+
+	/** Everything TreeMetrics knew about a tree at one point in time. */
+	public static final class Snapshot {
+
+		private final long comparisons;
+		private final long rotations;
+		private final long recolors;
+		private final long doubleBlackFixups;
+		private final Map<Operation, Latency> latencies;
+		private final int size;
+		private final int height;
+		private final int blackHeight;
+
+		private Snapshot(long comparisons, long rotations, long recolors, long doubleBlackFixups,
+				Map<Operation, Latency> latencies, int size, int height, int blackHeight) {
+			this.comparisons = comparisons;
+			this.rotations = rotations;
+			this.recolors = recolors;
+			this.doubleBlackFixups = doubleBlackFixups;
+			this.latencies = latencies;
+			this.size = size;
+			this.height = height;
+			this.blackHeight = blackHeight;
+		}
+
+		public long getComparisons() {
+			return this.comparisons;
+		}
+
+		public long getRotations() {
+			return this.rotations;
+		}
+
+		public long getRecolors() {
+			return this.recolors;
+		}
+
+		public long getDoubleBlackFixups() {
+			return this.doubleBlackFixups;
+		}
+
+		public Latency getLatency(Operation operation) {
+			return this.latencies.get(operation);
+		}
+
+		public int getSize() {
+			return this.size;
+		}
+
+		public int getHeight() {
+			return this.height;
+		}
+
+		// -1 for BalancedTree snapshots
+		public int getBlackHeight() {
+			return this.blackHeight;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("size %,d, height %d", this.size, this.height));
+			sb.append(this.blackHeight < 0 ? String.format("%n") : String.format(", black height %d%n", this.blackHeight));
+			sb.append(String.format("comparisons %,d, rotations %,d, recolors %,d, double black fix-ups %,d%n",
+					this.comparisons, this.rotations, this.recolors, this.doubleBlackFixups));
+			for (Map.Entry<Operation, Latency> entry : this.latencies.entrySet()) {
+				sb.append(String.format("%-6s  %s%n", entry.getKey(), entry.getValue()));
+			}
+			return sb.toString();
+		}
+	}
+
+}
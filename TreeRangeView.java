@@ -0,0 +1,346 @@
+package redBlackTrees;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Live view of the keys of a tree between two bounds (a null bound means
+ * unbounded on that side), in ascending or, for descendingSet(), descending
+ * order. Nothing is copied: iteration seeks the first key in range and follows
+ * successors until it passes the other bound, so a range holding k keys costs
+ * O(log n + k). Changes to the tree show up in the view and changes through the
+ * view go to the tree; adding a key outside the bounds throws
+ * IllegalArgumentException, as with java.util.TreeSet views.
+ */
+public class TreeRangeView<E extends Comparable<E>> extends AbstractSet<E> implements NavigableSet<E> {
+
+	private final RedBlackTree<E> tree;
+	private final E low;
+	private final boolean lowInclusive;
+	private final E high;
+	private final boolean highInclusive;
+	private final boolean descending;
+
+	TreeRangeView(RedBlackTree<E> tree, E low, boolean lowInclusive, E high, boolean highInclusive, boolean descending) {
+		this.tree = tree;
+		this.low = low;
+		this.lowInclusive = lowInclusive;
+		this.high = high;
+		this.highInclusive = highInclusive;
+		this.descending = descending;
+	}
+
+	private boolean tooLow(E key) {
+		if (this.low == null) {
+			return false;
+		}
+		int cmp = key.compareTo(this.low);
+		return cmp < 0 || (cmp == 0 && !this.lowInclusive);
+	}
+
+	private boolean tooHigh(E key) {
+		if (this.high == null) {
+			return false;
+		}
+		int cmp = key.compareTo(this.high);
+		return cmp > 0 || (cmp == 0 && !this.highInclusive);
+	}
+
+	private boolean inRange(E key) {
+		return !tooLow(key) && !tooHigh(key);
+	}
+
+	// like inRange, but an exclusive bound itself counts as inside
+	private boolean inClosedRange(E key) {
+		return (this.low == null || key.compareTo(this.low) >= 0) && (this.high == null || key.compareTo(this.high) <= 0);
+	}
+
+	/*
+	 * Node lookups in ascending key order, whatever the view's direction. Each
+	 * returns null if there is no such node in range.
+	 */
+
+	private BSTNode<E> inRangeOrNull(BSTNode<E> node) {
+		return this.tree.isNil(node) || !inRange(node.getData()) ? null : node;
+	}
+
+	private BSTNode<E> lowestNode() {
+		if (this.low == null) {
+			return inRangeOrNull(this.tree.minNode(this.tree.root));
+		}
+		return inRangeOrNull(this.lowInclusive ? this.tree.ceilingNode(this.low) : this.tree.higherNode(this.low));
+	}
+
+	private BSTNode<E> highestNode() {
+		if (this.high == null) {
+			return inRangeOrNull(this.tree.maxNode(this.tree.root));
+		}
+		return inRangeOrNull(this.highInclusive ? this.tree.floorNode(this.high) : this.tree.lowerNode(this.high));
+	}
+
+	private BSTNode<E> ceilingNode(E key) {
+		return tooLow(key) ? lowestNode() : inRangeOrNull(this.tree.ceilingNode(key));
+	}
+
+	private BSTNode<E> higherNode(E key) {
+		return tooLow(key) ? lowestNode() : inRangeOrNull(this.tree.higherNode(key));
+	}
+
+	private BSTNode<E> floorNode(E key) {
+		return tooHigh(key) ? highestNode() : inRangeOrNull(this.tree.floorNode(key));
+	}
+
+	private BSTNode<E> lowerNode(E key) {
+		return tooHigh(key) ? highestNode() : inRangeOrNull(this.tree.lowerNode(key));
+	}
+
+	// the node after node in this view's order, or null
+	private BSTNode<E> step(BSTNode<E> node) {
+		return inRangeOrNull(this.descending ? this.tree.predecessor(node) : this.tree.successor(node));
+	}
+
+	private BSTNode<E> firstNode() {
+		return this.descending ? highestNode() : lowestNode();
+	}
+
+	private BSTNode<E> lastNode() {
+		return this.descending ? lowestNode() : highestNode();
+	}
+
+	private static <E extends Comparable<E>> E keyOrNull(BSTNode<E> node) {
+		return node == null ? null : node.getData();
+	}
+
+	private static <E extends Comparable<E>> E keyOrThrow(BSTNode<E> node) {
+		if (node == null) {
+			throw new NoSuchElementException();
+		}
+		return node.getData();
+	}
+
+	@Override
+	public E first() {
+		return keyOrThrow(firstNode());
+	}
+
+	@Override
+	public E last() {
+		return keyOrThrow(lastNode());
+	}
+
+	@Override
+	public E ceiling(E key) {
+		return keyOrNull(this.descending ? floorNode(key) : ceilingNode(key));
+	}
+
+	@Override
+	public E higher(E key) {
+		return keyOrNull(this.descending ? lowerNode(key) : higherNode(key));
+	}
+
+	@Override
+	public E floor(E key) {
+		return keyOrNull(this.descending ? ceilingNode(key) : floorNode(key));
+	}
+
+	@Override
+	public E lower(E key) {
+		return keyOrNull(this.descending ? higherNode(key) : lowerNode(key));
+	}
+
+	@Override
+	public E pollFirst() {
+		return poll(firstNode());
+	}
+
+	@Override
+	public E pollLast() {
+		return poll(lastNode());
+	}
+
+	private E poll(BSTNode<E> node) {
+		if (node == null) {
+			return null;
+		}
+		E key = node.getData(); // read first, removal may move keys between nodes
+		this.tree.removeNode(node);
+		return key;
+	}
+
+	@Override
+	public Comparator<? super E> comparator() {
+		return this.descending ? Collections.reverseOrder() : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean contains(Object key) {
+		return inRange((E) Objects.requireNonNull(key)) && this.tree.contains(key);
+	}
+
+	@Override
+	public boolean add(E key) {
+		if (!inRange(key)) {
+			throw new IllegalArgumentException("Key out of range");
+		}
+		return this.tree.add(key);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object key) {
+		return inRange((E) Objects.requireNonNull(key)) && this.tree.remove(key);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return lowestNode() == null;
+	}
+
+	// O(k), the view does not keep a count; an unbounded view asks the tree
+	@Override
+	public int size() {
+		if (this.low == null && this.high == null) {
+			return this.tree.size();
+		}
+		int count = 0;
+		for (BSTNode<E> node = lowestNode(); node != null; node = inRangeOrNull(this.tree.successor(node))) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void clear() {
+		if (this.low == null && this.high == null) {
+			this.tree.clear();
+		}
+		else {
+			for (BSTNode<E> node = lowestNode(); node != null; node = lowestNode()) {
+				this.tree.removeNode(node);
+			}
+		}
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+
+			private BSTNode<E> next = firstNode();
+			private BSTNode<E> lastReturned;
+			private int expectedModCount = TreeRangeView.this.tree.modCount;
+
+			@Override
+			public boolean hasNext() {
+				return this.next != null;
+			}
+
+			@Override
+			public E next() {
+				if (TreeRangeView.this.tree.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (this.next == null) {
+					throw new NoSuchElementException();
+				}
+				this.lastReturned = this.next;
+				this.next = step(this.next);
+				return this.lastReturned.getData();
+			}
+
+			// keeps the next key rather than its node, see TreeCursor.remove()
+			@Override
+			public void remove() {
+				if (this.lastReturned == null) {
+					throw new IllegalStateException();
+				}
+				if (TreeRangeView.this.tree.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				E nextKey = keyOrNull(this.next);
+				TreeRangeView.this.tree.removeNode(this.lastReturned);
+				this.next = nextKey == null ? null : TreeRangeView.this.tree.ceilingNode(nextKey);
+				this.lastReturned = null;
+				this.expectedModCount = TreeRangeView.this.tree.modCount;
+			}
+		};
+	}
+
+	@Override
+	public Iterator<E> descendingIterator() {
+		return descendingSet().iterator();
+	}
+
+	@Override
+	public TreeRangeView<E> descendingSet() {
+		return new TreeRangeView<>(this.tree, this.low, this.lowInclusive, this.high, this.highInclusive, !this.descending);
+	}
+
+	/*
+	 * Sub-views take their bounds in this view's order and must lie within this
+	 * view's bounds; the narrower bound on the other side is kept.
+	 */
+	@Override
+	public TreeRangeView<E> subSet(E fromKey, boolean fromInclusive, E toKey, boolean toInclusive) {
+		checkBound(Objects.requireNonNull(fromKey), fromInclusive);
+		checkBound(Objects.requireNonNull(toKey), toInclusive);
+		if (this.descending) {
+			if (fromKey.compareTo(toKey) < 0) {
+				throw new IllegalArgumentException("fromKey < toKey in a descending view");
+			}
+			return range(toKey, toInclusive, fromKey, fromInclusive);
+		}
+		if (fromKey.compareTo(toKey) > 0) {
+			throw new IllegalArgumentException("fromKey > toKey");
+		}
+		return range(fromKey, fromInclusive, toKey, toInclusive);
+	}
+
+	@Override
+	public TreeRangeView<E> headSet(E toKey, boolean inclusive) {
+		checkBound(Objects.requireNonNull(toKey), inclusive);
+		return this.descending ? range(toKey, inclusive, this.high, this.highInclusive)
+				: range(this.low, this.lowInclusive, toKey, inclusive);
+	}
+
+	@Override
+	public TreeRangeView<E> tailSet(E fromKey, boolean inclusive) {
+		checkBound(Objects.requireNonNull(fromKey), inclusive);
+		return this.descending ? range(this.low, this.lowInclusive, fromKey, inclusive)
+				: range(fromKey, inclusive, this.high, this.highInclusive);
+	}
+
+	@Override
+	public TreeRangeView<E> subSet(E fromKey, E toKey) {
+		return subSet(fromKey, true, toKey, false);
+	}
+
+	@Override
+	public TreeRangeView<E> headSet(E toKey) {
+		return headSet(toKey, false);
+	}
+
+	@Override
+	public TreeRangeView<E> tailSet(E fromKey) {
+		return tailSet(fromKey, true);
+	}
+
+	// ascending bounds for a sub-view, already checked
+	private TreeRangeView<E> range(E newLow, boolean newLowInclusive, E newHigh, boolean newHighInclusive) {
+		return new TreeRangeView<>(this.tree, newLow, newLowInclusive, newHigh, newHighInclusive, this.descending);
+	}
+
+	// a new bound must lie inside this view's bounds
+	private void checkBound(E key, boolean inclusive) {
+		if (!(inclusive ? inRange(key) : inClosedRange(key))) {
+			throw new IllegalArgumentException("Key out of range");
+		}
+	}
+
+}
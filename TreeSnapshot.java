@@ -0,0 +1,180 @@
+package redBlackTrees;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Snapshot stream format shared by the trees:
+ *
+ *   int magic, int version, UTF codec name, varint key count,
+ *   blocks of (varint keys, varint byte length, encoded keys),
+ *   an empty block as end marker.
+ *
+ * Keys are written in ascending order. Blocks are length prefixed so a reader
+ * pulls a whole block in with one read, and delta codecs restart at each block.
+ */
+final class TreeSnapshot {
+
+	private static final int MAGIC = 0x52425453; // "RBTS"
+	private static final int VERSION = 1;
+	private static final int BLOCK_KEYS = 4096;
+
+	private TreeSnapshot() {
+	}
+
+	// keys must be ascending; out is flushed, not closed
+	static <E> void write(Iterator<E> keys, int size, KeyCodec<E> codec, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeUTF(codec.name());
+		KeyCodec.writeVarLong(data, size);
+
+		BlockOutput block = new BlockOutput();
+		DataOutputStream blockData = new DataOutputStream(block);
+		int written = 0;
+		while (keys.hasNext()) {
+			E previous = null;
+			int count = 0;
+			while (count < BLOCK_KEYS && keys.hasNext()) {
+				E key = keys.next();
+				codec.write(blockData, key, previous);
+				previous = key;
+				count++;
+			}
+			KeyCodec.writeVarLong(data, count);
+			KeyCodec.writeVarLong(data, block.length);
+			data.write(block.bytes, 0, block.length);
+			block.length = 0;
+			written += count;
+		}
+		KeyCodec.writeVarLong(data, 0);
+		if (written != size) {
+			throw new IllegalStateException("Expected " + size + " keys, wrote " + written);
+		}
+		data.flush();
+	}
+
+	// keys in the order they were written; in is not closed and not read past the
+	// end marker. Blocks come in with one readFully, so in needs no buffering.
+	static <E> ArrayList<E> read(InputStream in, KeyCodec<E> codec) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a tree snapshot");
+		}
+		int version = data.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		String name = data.readUTF();
+		if (!name.equals(codec.name())) {
+			throw new IOException("Snapshot was written with codec " + name + ", not " + codec.name());
+		}
+		long size = KeyCodec.readVarLong(data);
+		if (size < 0 || size > Integer.MAX_VALUE) {
+			throw new IOException("Bad key count " + size);
+		}
+
+		// the count is only trusted as far as the blocks back it up
+		ArrayList<E> keys = new ArrayList<>((int) Math.min(size, 1 << 16));
+		BlockInput block = new BlockInput();
+		DataInputStream blockData = new DataInputStream(block);
+		for (long count = KeyCodec.readVarLong(data); count != 0; count = KeyCodec.readVarLong(data)) {
+			long length = KeyCodec.readVarLong(data);
+			if (count < 0 || keys.size() + count > size || length < 0 || length > Integer.MAX_VALUE) {
+				throw new IOException("Corrupt block header");
+			}
+			block.fill(data, (int) length);
+			E previous = null;
+			for (long i = 0; i < count; i++) {
+				previous = codec.read(blockData, previous);
+				keys.add(previous);
+			}
+			if (block.remaining() != 0) {
+				throw new IOException("Corrupt block: " + block.remaining() + " of " + length + " bytes not used by its keys");
+			}
+		}
+		if (keys.size() != size) {
+			throw new IOException("Snapshot ended after " + keys.size() + " of " + size + " keys");
+		}
+		return keys;
+	}
+
+	/*
+	 * Reusable block buffers. DataOutputStream and DataInputStream move most
+	 * values a byte at a time, and the synchronized ByteArray streams would take
+	 * a lock for every one of those bytes.
+	 */
+	static final class BlockOutput extends OutputStream {
+
+		byte[] bytes = new byte[1 << 16];
+		int length;
+
+		@Override
+		public void write(int b) {
+			if (this.length == this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, this.length * 2);
+			}
+			this.bytes[this.length++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (this.length + len > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.length + len, this.length * 2));
+			}
+			System.arraycopy(b, off, this.bytes, this.length, len);
+			this.length += len;
+		}
+	}
+
+	static final class BlockInput extends InputStream {
+
+		byte[] bytes = new byte[1 << 16];
+		private int position;
+		private int length;
+
+		// grows with the bytes actually read, so a bad length can't allocate ahead of the data
+		void fill(DataInputStream in, int length) throws IOException {
+			int read = 0;
+			while (read < length) {
+				if (read == this.bytes.length) {
+					this.bytes = Arrays.copyOf(this.bytes, (int) Math.min(length, 2L * this.bytes.length));
+				}
+				int chunk = Math.min(length, this.bytes.length) - read;
+				in.readFully(this.bytes, read, chunk);
+				read += chunk;
+			}
+			this.position = 0;
+			this.length = length;
+		}
+
+		int remaining() {
+			return this.length - this.position;
+		}
+
+		@Override
+		public int read() {
+			return this.position < this.length ? this.bytes[this.position++] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (this.position == this.length) {
+				return -1;
+			}
+			len = Math.min(len, this.length - this.position);
+			System.arraycopy(this.bytes, this.position, b, off, len);
+			this.position += len;
+			return len;
+		}
+	}
+
+}
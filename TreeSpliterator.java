@@ -0,0 +1,131 @@
+package redBlackTrees;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * In-order Spliterator that splits at subtree boundaries. It covers one optional
+ * head node followed by a whole subtree. Splitting on subtree root s hands
+ * (head, s.left) to the new prefix spliterator and keeps (s, s.right), so every
+ * fork-join worker walks its own disjoint subtree through parent pointers.
+ */
+class TreeSpliterator<E extends Comparable<E>> implements Spliterator<E> {
+
+	private final BinarySearchTree<E> tree;
+	private final int expectedModCount;
+	private BSTNode<E> head; // emitted before the subtree, may be nil
+	private BSTNode<E> subtree;
+	private BSTNode<E> current; // next subtree node to emit once the walk started
+	private boolean started = false;
+	private long estimate;
+	private boolean exact; // estimate is the real size until the first split
+
+	TreeSpliterator(BinarySearchTree<E> tree) {
+		this(tree, null, tree.root, tree.size(), true);
+	}
+
+	private TreeSpliterator(BinarySearchTree<E> tree, BSTNode<E> head, BSTNode<E> subtree, long estimate,
+			boolean exact) {
+		this.tree = tree;
+		this.expectedModCount = tree.modCount;
+		this.head = head;
+		this.subtree = subtree;
+		this.estimate = estimate;
+		this.exact = exact;
+	}
+
+	@Override
+	public Spliterator<E> trySplit() {
+		if (this.started || this.tree.isNil(this.subtree)) {
+			return null;
+		}
+		BSTNode<E> split = this.subtree;
+		this.estimate >>>= 1;
+		this.exact = false;
+		TreeSpliterator<E> prefix = new TreeSpliterator<>(this.tree, this.head, split.left, this.estimate, false);
+		this.head = split;
+		this.subtree = split.right;
+		return prefix;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super E> action) {
+		BSTNode<E> node = nextNode();
+		if (node == null) {
+			return false;
+		}
+		action.accept(node.getData());
+		checkForModification();
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super E> action) {
+		BSTNode<E> node;
+		while ((node = nextNode()) != null) {
+			action.accept(node.getData());
+		}
+		checkForModification();
+	}
+
+	// head first, then the subtree in-order; null when exhausted
+	private BSTNode<E> nextNode() {
+		if (!this.started) {
+			this.started = true;
+			this.current = this.tree.minNode(this.subtree);
+			if (!this.tree.isNil(this.head)) {
+				return this.head;
+			}
+		}
+		if (this.tree.isNil(this.current)) {
+			return null;
+		}
+		BSTNode<E> node = this.current;
+		this.current = successorWithinSubtree(node);
+		return node;
+	}
+
+	// like BinarySearchTree.successor() but never climbs above the subtree root
+	private BSTNode<E> successorWithinSubtree(BSTNode<E> node) {
+		if (!this.tree.isNil(node.right)) {
+			return this.tree.minNode(node.right);
+		}
+		while (node != this.subtree) {
+			BSTNode<E> parent = node.parent;
+			if (parent.left == node) {
+				return parent;
+			}
+			node = parent;
+		}
+		return null;
+	}
+
+	private void checkForModification() {
+		if (this.tree.modCount != this.expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		return this.estimate;
+	}
+
+	@Override
+	public int characteristics() {
+		int characteristics = SORTED | DISTINCT | ORDERED | NONNULL;
+		if (this.exact) {
+			characteristics |= SIZED;
+		}
+		return characteristics;
+	}
+
+	// natural ordering
+	@Override
+	public Comparator<? super E> getComparator() {
+		return null;
+	}
+
+}
@@ -0,0 +1,170 @@
+package redBlackTrees;
+
+/**
+ * Weak AVL tree (Haeupler, Sen and Tarjan, "Rank-Balanced Trees"). Every node
+ * has a rank; a missing child counts as rank -1, each child's rank is 1 or 2
+ * below its parent's, and leaves have rank 0. Fix-ups promote or demote ranks
+ * up the tree and end with at most two rotations, on insert and on delete alike,
+ * so a delete-heavy load rotates far less than with red black rules. With
+ * inserts only it builds exactly the AVL tree. Rank changes are what recolors
+ * are for the red black trees and are reported to the listener as such.
+ */
+public class WavlTree<E extends Comparable<E>> extends BalancedTree<E> {
+
+	private static class RankedNode<E extends Comparable<E>> extends BSTNode<E> {
+
+		private int rank = 0;
+
+		RankedNode(E data) {
+			super(data);
+		}
+	}
+
+	public WavlTree() {
+		super();
+	}
+
+	@SafeVarargs
+	public WavlTree(E... args) {
+		for (E element : args) {
+			insert(element);
+		}
+	}
+
+	@Override
+	protected BSTNode<E> newNode(E key) {
+		return new RankedNode<>(key);
+	}
+
+	// -1 for a missing child; package-private so the tests can check every rank difference
+	static int rank(BSTNode<?> node) {
+		return node == null ? -1 : ((RankedNode<?>) node).rank;
+	}
+
+	private void promote(BSTNode<E> node) {
+		rebalanced();
+		((RankedNode<E>) node).rank++;
+	}
+
+	private void demote(BSTNode<E> node) {
+		rebalanced();
+		((RankedNode<E>) node).rank--;
+	}
+
+	// node is a new leaf (rank 0); its parent may now have a child of equal rank
+	@Override
+	protected void afterInsert(BSTNode<E> node) {
+		BSTNode<E> parent = node.parent;
+		while (parent != null && rank(parent) == rank(node)) {
+			boolean isLeft = parent.left == node;
+			BSTNode<E> sibling = isLeft ? parent.right : parent.left;
+			if (rank(parent) - rank(sibling) == 1) { // 0,1 node: promote and move up
+				promote(parent);
+				node = parent;
+				parent = node.parent;
+				continue;
+			}
+			// 0,2 node: one or two rotations finish it
+			BSTNode<E> inner = isLeft ? node.right : node.left;
+			if (rank(node) - rank(inner) == 2) {
+				rotate(parent, isLeft);
+				demote(parent);
+			}
+			else {
+				rotate(node, !isLeft);
+				rotate(parent, isLeft);
+				promote(inner);
+				demote(node);
+				demote(parent);
+			}
+			return;
+		}
+	}
+
+	/*
+	 * Unlinks node, or the predecessor whose key it takes when it has two
+	 * children, then restores the rank rule from the unlinked node's parent up.
+	 */
+	@Override
+	protected void delete(BSTNode<E> node) {
+		if (node.left != null && node.right != null) {
+			BSTNode<E> predecessor = maxNode(node.left);
+			node.setData(predecessor.getData());
+			node = predecessor;
+		}
+		BSTNode<E> child = node.left != null ? node.left : node.right;
+		BSTNode<E> parent = node.parent;
+		boolean isLeft = parent != null && parent.left == node;
+		replaceChild(node, child);
+		if (parent == null) {
+			return;
+		}
+		if (parent.left == null && parent.right == null && rank(parent) == 1) { // 2,2 leaf
+			demote(parent);
+			child = parent;
+			parent = child.parent;
+			isLeft = parent != null && parent.left == child;
+		}
+		fixDelete(child, parent, isLeft);
+	}
+
+	// child (null for an empty link, hence isLeft) may be a 3-child of parent
+	private void fixDelete(BSTNode<E> child, BSTNode<E> parent, boolean isLeft) {
+		while (parent != null && rank(parent) - rank(child) == 3) {
+			BSTNode<E> sibling = isLeft ? parent.right : parent.left;
+			if (rank(parent) - rank(sibling) == 2) { // 3,2 node: demote and move up
+				demote(parent);
+			}
+			else if (rank(sibling) - rank(sibling.left) == 2 && rank(sibling) - rank(sibling.right) == 2) {
+				demote(parent); // 3,1 node with a 2,2 sibling: demote both and move up
+				demote(sibling);
+			}
+			else { // a rotation or two at parent finishes it
+				rebalanceDelete(parent, sibling, isLeft);
+				return;
+			}
+			child = parent;
+			parent = child.parent;
+			isLeft = parent != null && parent.left == child;
+		}
+	}
+
+	// parent has a 3-child on the isLeft side and a 1-child sibling that is not 2,2
+	private void rebalanceDelete(BSTNode<E> parent, BSTNode<E> sibling, boolean isLeft) {
+		BSTNode<E> outer = isLeft ? sibling.right : sibling.left;
+		BSTNode<E> inner = isLeft ? sibling.left : sibling.right;
+		if (rank(sibling) - rank(outer) == 1) {
+			rotate(parent, !isLeft);
+			promote(sibling);
+			demote(parent);
+			if (parent.left == null && parent.right == null) {
+				demote(parent); // leaves have rank 0
+			}
+		}
+		else {
+			rotate(sibling, isLeft);
+			rotate(parent, !isLeft);
+			promote(inner);
+			promote(inner);
+			demote(sibling);
+			demote(parent);
+			demote(parent);
+		}
+	}
+
+	// right rotation lifts node's left child, left rotation its right child
+	private void rotate(BSTNode<E> node, boolean liftLeft) {
+		if (liftLeft) {
+			rotateRight(node);
+		}
+		else {
+			rotateLeft(node);
+		}
+	}
+
+	// the root's rank, 0 for a single node and -1 for an empty tree
+	public int rank() {
+		return rank(this.root);
+	}
+
+}
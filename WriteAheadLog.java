@@ -0,0 +1,295 @@
+package redBlackTrees;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of insert/delete records with group commit.
+ *
+ * append() only encodes a record into memory and hands back its sequence number.
+ * sync(sequence) returns once that record is on disk. The first thread to ask
+ * for a sync becomes the leader: it waits commitDelayNanos for others to append
+ * more records, then writes everything pending with a single force(). Threads
+ * asking while a force is running wait for it and the next one, so a single
+ * force covers all of them. A longer delay means fewer forces (throughput) at
+ * the price of a slower sync() (latency).
+ *
+ * File layout: int magic, int version, UTF codec name, then records of
+ * (byte op, varint length, encoded key, int CRC32 of op and key). Replay stops
+ * at the first torn or corrupt record and cuts the file back to it; a header torn
+ * while creating the log is written again.
+ */
+public class WriteAheadLog<E> implements Closeable {
+
+	public static final byte INSERT = 1;
+	public static final byte DELETE = 2;
+
+	private static final int MAGIC = 0x52425457; // "RBTW"
+	private static final int VERSION = 1;
+
+	private final FileChannel channel;
+	private final KeyCodec<E> codec;
+	private final long commitDelayNanos;
+	private final long headerBytes;
+
+	// guarded by this
+	private TreeSnapshot.BlockOutput pending = new TreeSnapshot.BlockOutput();
+	private TreeSnapshot.BlockOutput spare = new TreeSnapshot.BlockOutput();
+	private final TreeSnapshot.BlockOutput key = new TreeSnapshot.BlockOutput();
+	private final DataOutputStream keyData = new DataOutputStream(this.key);
+	private final CRC32 crc = new CRC32();
+	private long appended = 0;
+	private long durable = 0;
+	private boolean flushing = false;
+	private IOException failure;
+
+	/**
+	 * Opens or creates the log at file. Records already in it are handed to
+	 * replay (op, key) in order before the log accepts new ones.
+	 */
+	public WriteAheadLog(Path file, KeyCodec<E> codec, long commitDelayNanos, BiConsumer<Byte, E> replay) throws IOException {
+		this.codec = codec;
+		this.commitDelayNanos = commitDelayNanos;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			TreeSnapshot.BlockOutput header = header(codec);
+			if (this.channel.size() == 0 || tornHeader(header)) {
+				this.channel.truncate(0);
+				this.channel.position(0);
+				writeFully(header);
+				this.channel.force(true);
+			}
+			else {
+				replay(file, header.length, replay);
+			}
+			this.headerBytes = header.length;
+		}
+		catch (IOException | RuntimeException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	private static TreeSnapshot.BlockOutput header(KeyCodec<?> codec) throws IOException {
+		TreeSnapshot.BlockOutput header = new TreeSnapshot.BlockOutput();
+		DataOutputStream data = new DataOutputStream(header);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeUTF(codec.name());
+		return header;
+	}
+
+	/*
+	 * Whether the file is what a crash while creating the log leaves behind: no
+	 * more than the header's bytes, each one either written or still zero. No
+	 * record can follow a header that was not forced, so nothing is lost by
+	 * writing the header again. Anything else goes to replay(), which rejects it.
+	 */
+	private boolean tornHeader(TreeSnapshot.BlockOutput header) throws IOException {
+		long size = this.channel.size();
+		if (size > header.length) {
+			return false;
+		}
+		ByteBuffer existing = ByteBuffer.allocate((int) size);
+		while (existing.hasRemaining()) {
+			if (this.channel.read(existing, existing.position()) < 0) {
+				return false; // shrank under us, leave it to replay()
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			byte b = existing.get(i);
+			if (b != 0 && b != header.bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// leaves the channel positioned after the last good record
+	private void replay(Path file, long headerBytes, BiConsumer<Byte, E> replay) throws IOException {
+		this.channel.position(0);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel), 1 << 16));
+		if (in.readInt() != MAGIC) {
+			throw new IOException(file + " is not a write-ahead log");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported log version " + version);
+		}
+		String name = in.readUTF();
+		if (!name.equals(this.codec.name())) {
+			throw new IOException("Log was written with codec " + name + ", not " + this.codec.name());
+		}
+		long good = headerBytes;
+		TreeSnapshot.BlockInput record = new TreeSnapshot.BlockInput();
+		DataInputStream recordData = new DataInputStream(record);
+		CRC32 check = new CRC32();
+		while (true) {
+			try {
+				int op = in.read();
+				if (op == -1) {
+					break;
+				}
+				long length = KeyCodec.readVarLong(in);
+				if ((op != INSERT && op != DELETE) || length < 0 || length > this.channel.size()) {
+					break;
+				}
+				record.fill(in, (int) length);
+				int stored = in.readInt();
+				check.reset();
+				check.update(op);
+				check.update(record.bytes, 0, (int) length);
+				if ((int) check.getValue() != stored) {
+					break;
+				}
+				E key = this.codec.read(recordData, null);
+				replay.accept((byte) op, key);
+				good += 1 + varLongLength(length) + length + 4;
+			}
+			catch (EOFException e) {
+				break; // torn last record
+			}
+		}
+		this.channel.truncate(good);
+		this.channel.position(good);
+	}
+
+	private static int varLongLength(long value) {
+		int length = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	// encodes one record into the pending batch, returns its sequence number
+	public synchronized long append(byte op, E key) throws IOException {
+		if (this.failure != null) {
+			throw new IOException("Log failed earlier", this.failure);
+		}
+		this.key.length = 0;
+		this.codec.write(this.keyData, key, null);
+		this.crc.reset();
+		this.crc.update(op);
+		this.crc.update(this.key.bytes, 0, this.key.length);
+
+		DataOutputStream data = new DataOutputStream(this.pending);
+		data.writeByte(op);
+		KeyCodec.writeVarLong(data, this.key.length);
+		data.write(this.key.bytes, 0, this.key.length);
+		data.writeInt((int) this.crc.getValue());
+		return ++this.appended;
+	}
+
+	// blocks until every record up to sequence is on disk
+	public void sync(long sequence) throws IOException {
+		synchronized (this) {
+			while (this.durable < sequence) {
+				if (this.failure != null) {
+					throw new IOException("Log failed earlier", this.failure);
+				}
+				if (!this.flushing) {
+					this.flushing = true;
+					break;
+				}
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			}
+			if (this.durable >= sequence) {
+				return;
+			}
+		}
+		// leader: give other writers a moment to join this force
+		if (this.commitDelayNanos > 0) {
+			LockSupport.parkNanos(this.commitDelayNanos);
+		}
+		TreeSnapshot.BlockOutput batch;
+		long upTo;
+		synchronized (this) {
+			batch = this.pending;
+			this.pending = this.spare;
+			upTo = this.appended;
+		}
+		try {
+			writeFully(batch);
+			this.channel.force(false);
+		}
+		catch (IOException e) {
+			synchronized (this) {
+				this.failure = e;
+				this.flushing = false;
+				notifyAll();
+			}
+			throw e;
+		}
+		synchronized (this) {
+			batch.length = 0;
+			this.spare = batch;
+			this.durable = upTo;
+			this.flushing = false;
+			notifyAll();
+		}
+	}
+
+	// syncs everything appended so far
+	public void sync() throws IOException {
+		long sequence;
+		synchronized (this) {
+			sequence = this.appended;
+		}
+		sync(sequence);
+	}
+
+	// bytes on disk, header included
+	public long length() throws IOException {
+		return this.channel.size();
+	}
+
+	/*
+	 * Drops every record, after a snapshot has taken them in. Callers must make
+	 * sure nothing is appended meanwhile.
+	 */
+	public void reset() throws IOException {
+		sync();
+		this.channel.truncate(this.headerBytes);
+		this.channel.position(this.headerBytes);
+		this.channel.force(true);
+	}
+
+	private void writeFully(TreeSnapshot.BlockOutput batch) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(batch.bytes, 0, batch.length);
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+		}
+		finally {
+			this.channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package redBlackTrees;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The four list-building traversals of the engines that have them (TreeSet
+ * only iterates in order, see TreeMatrixBenchmark.iterate). Keys are inserted
+ * in shuffled order, so the shape is what a random workload produces:
+ *   java -jar target/benchmarks.jar TraversalBenchmark -rf json -rff traversal.json
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	@Param({ "RedBlackTree", "LeftLeaningRedBlackTree", "WavlTree", "BTree" })
+	public String engine;
+
+	@Param({ "preOrder", "inOrder", "postOrder", "breadthFirst" })
+	public String order;
+
+	private BinarySearchTree<Integer> tree;
+	private BTree<Integer> bTree;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		switch (this.engine) {
+			case "RedBlackTree":
+				this.tree = new RedBlackTree<>();
+				break;
+			case "LeftLeaningRedBlackTree":
+				this.tree = new LeftLeaningRedBlackTree<>();
+				break;
+			case "WavlTree":
+				this.tree = new WavlTree<>();
+				break;
+			case "BinarySearchTree":
+				this.tree = new BinarySearchTree<>();
+				break;
+			case "BTree":
+				this.bTree = new BTree<>();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown engine: " + this.engine);
+		}
+		for (int key : TreeBenchmark.randomKeys(this.size, 42)) {
+			if (this.bTree != null) {
+				this.bTree.add(key);
+			}
+			else {
+				this.tree.insert(key);
+			}
+		}
+	}
+
+	@Benchmark
+	public ArrayList<Integer> traverse() {
+		if (this.bTree != null) {
+			switch (this.order) {
+				case "preOrder":
+					return this.bTree.preOrder();
+				case "inOrder":
+					return this.bTree.inOrder();
+				case "postOrder":
+					return this.bTree.postOrder();
+				default:
+					return this.bTree.breadthFirst();
+			}
+		}
+		switch (this.order) {
+			case "preOrder":
+				return this.tree.preOrder();
+			case "inOrder":
+				return this.tree.inOrder();
+			case "postOrder":
+				return this.tree.postOrder();
+			default:
+				return this.tree.breadthFirst();
+		}
+	}
+
+}
@@ -0,0 +1,271 @@
+package redBlackTrees;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Regression matrix: every engine against java.util.TreeSet as the baseline,
+ * over tree size and key distribution:
+ *   random   keys inserted and looked up in shuffled order
+ *   sorted   the same keys in ascending order
+ *   zipfian  shuffled inserts, lookups skewed towards a few hot keys
+ *            (theta 0.99, as YCSB)
+ * Build once with "mvn -P jmh package", then for example
+ *   java -jar target/benchmarks.jar TreeMatrixBenchmark -rf json -rff matrix.json
+ *   java -jar target/benchmarks.jar TreeMatrixBenchmark -p engine=TreeSet,BTree -p size=1000000
+ * BinarySearchTree can be added with -p engine=...; it is left out of the
+ * defaults since sorted input turns it into a linked list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeMatrixBenchmark {
+
+	// lookups cycle through this many precomputed keys
+	private static final int QUERIES = 1 << 16;
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int size;
+
+	@Param({ "random", "sorted", "zipfian" })
+	public String distribution;
+
+	@Param({ "TreeSet", "RedBlackTree", "LeftLeaningRedBlackTree", "WavlTree", "BTree" })
+	public String engine;
+
+	private int[] order;
+	private Integer[] hits;
+	private Integer[] misses;
+	private Engine tree;
+	private int next;
+
+	/** One tree implementation under test, Integer keys. */
+	interface Engine {
+		void insert(Integer key);
+
+		boolean find(Integer key);
+
+		void delete(Integer key);
+
+		// visits every key in order, returns how many
+		int iterate();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int[] keys = TreeBenchmark.randomKeys(this.size, 42);
+		int[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		this.order = this.distribution.equals("sorted") ? sorted : keys;
+
+		int[] queries;
+		if (this.distribution.equals("zipfian")) {
+			queries = zipfian(keys, QUERIES, 7);
+		}
+		else {
+			queries = new int[QUERIES];
+			for (int i = 0; i < QUERIES; i++) {
+				queries[i] = this.order[i % this.order.length];
+			}
+		}
+		this.hits = boxed(queries);
+		this.misses = boxed(TreeBenchmark.missKeys(queries));
+
+		this.tree = newEngine(this.engine);
+		for (int key : this.order) {
+			this.tree.insert(key);
+		}
+	}
+
+	// insert of every key into an empty tree, per tree rather than per key
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Engine build() {
+		Engine fresh = newEngine(this.engine);
+		for (int key : this.order) {
+			fresh.insert(key);
+		}
+		return fresh;
+	}
+
+	@Benchmark
+	public boolean findHit() {
+		return this.tree.find(this.hits[this.next++ & (QUERIES - 1)]);
+	}
+
+	@Benchmark
+	public boolean findMiss() {
+		return this.tree.find(this.misses[this.next++ & (QUERIES - 1)]);
+	}
+
+	// insert of a missing key and its delete, so the tree keeps its size
+	@Benchmark
+	public void insertDelete(Blackhole blackhole) {
+		Integer key = this.misses[this.next++ & (QUERIES - 1)];
+		this.tree.insert(key);
+		this.tree.delete(key);
+		blackhole.consume(key);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int iterate() {
+		return this.tree.iterate();
+	}
+
+	static Engine newEngine(String name) {
+		switch (name) {
+			case "TreeSet":
+				return treeSet();
+			case "RedBlackTree":
+				return binarySearchTree(new RedBlackTree<>());
+			case "LeftLeaningRedBlackTree":
+				return binarySearchTree(new LeftLeaningRedBlackTree<>());
+			case "WavlTree":
+				return binarySearchTree(new WavlTree<>());
+			case "BinarySearchTree":
+				return binarySearchTree(new BinarySearchTree<>());
+			case "BTree":
+				return bTree();
+			default:
+				throw new IllegalArgumentException("Unknown engine: " + name);
+		}
+	}
+
+	private static Engine treeSet() {
+		TreeSet<Integer> set = new TreeSet<>();
+		return new Engine() {
+			public void insert(Integer key) {
+				set.add(key);
+			}
+
+			public boolean find(Integer key) {
+				return set.contains(key);
+			}
+
+			public void delete(Integer key) {
+				set.remove(key);
+			}
+
+			public int iterate() {
+				int count = 0;
+				for (Integer key : set) {
+					count += key != null ? 1 : 0;
+				}
+				return count;
+			}
+		};
+	}
+
+	private static Engine binarySearchTree(BinarySearchTree<Integer> tree) {
+		return new Engine() {
+			public void insert(Integer key) {
+				tree.insert(key);
+			}
+
+			public boolean find(Integer key) {
+				return tree.find(key);
+			}
+
+			public void delete(Integer key) {
+				tree.delete(key);
+			}
+
+			public int iterate() {
+				int count = 0;
+				for (Integer key : tree) {
+					count += key != null ? 1 : 0;
+				}
+				return count;
+			}
+		};
+	}
+
+	private static Engine bTree() {
+		BTree<Integer> tree = new BTree<>();
+		return new Engine() {
+			public void insert(Integer key) {
+				tree.add(key);
+			}
+
+			public boolean find(Integer key) {
+				return tree.contains(key);
+			}
+
+			public void delete(Integer key) {
+				tree.remove(key);
+			}
+
+			public int iterate() {
+				int count = 0;
+				for (Integer key : tree) {
+					count += key != null ? 1 : 0;
+				}
+				return count;
+			}
+		};
+	}
+
+	private static Integer[] boxed(int[] keys) {
+		Integer[] boxed = new Integer[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			boxed[i] = keys[i];
+		}
+		return boxed;
+	}
+
+	/*
+	 * count lookups drawn from keys with a Zipfian distribution over their
+	 * position in keys (Gray et al., "Quickly Generating Billion-Record Synthetic
+	 * Databases"). keys is shuffled, so the hot keys are spread over the range.
+	 */
+	static int[] zipfian(int[] keys, int count, long seed) {
+		double theta = 0.99;
+		int n = keys.length;
+		double zetaN = 0;
+		for (int i = 1; i <= n; i++) {
+			zetaN += 1 / Math.pow(i, theta);
+		}
+		double zeta2 = 1 + Math.pow(0.5, theta);
+		double alpha = 1 / (1 - theta);
+		double eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+		Random random = new Random(seed);
+		int[] queries = new int[count];
+		for (int i = 0; i < count; i++) {
+			double u = random.nextDouble();
+			double uz = u * zetaN;
+			int rank;
+			if (uz < 1) {
+				rank = 0;
+			}
+			else if (uz < zeta2) {
+				rank = 1;
+			}
+			else {
+				rank = Math.min(n - 1, (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+			}
+			queries[i] = keys[rank];
+		}
+		return queries;
+	}
+
+}
@@ -0,0 +1,158 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * BTree against TreeSet over several fanouts, including the smallest one,
+ * where nearly every change splits, borrows or merges.
+ */
+class BTreeTest {
+
+	@Test
+	void matchesTreeSet() {
+		for (int fanout : new int[] { 4, 5, 6, 8, 16, 64 }) {
+			Random random = new Random(fanout);
+			BTree<Integer> tree = new BTree<>(fanout);
+			TreeSet<Integer> expected = new TreeSet<>();
+			for (int i = 0; i < 50_000; i++) {
+				int key = random.nextInt(3000);
+				int operation = random.nextInt(10);
+				if (operation < 4) {
+					assertEquals(expected.add(key), tree.add(key), "add " + key);
+				}
+				else if (operation < 7) {
+					assertEquals(expected.remove(key), tree.remove(key), "remove " + key);
+				}
+				else if (operation == 7) {
+					assertEquals(expected.contains(key), tree.contains(key));
+					assertEquals(expected.floor(key), tree.floor(key));
+					assertEquals(expected.ceiling(key), tree.ceiling(key));
+					assertEquals(expected.lower(key), tree.lower(key));
+					assertEquals(expected.higher(key), tree.higher(key));
+				}
+				else if (operation == 8 && random.nextInt(50) == 0) {
+					assertEquals(expected.pollFirst(), tree.pollFirst());
+					assertEquals(expected.pollLast(), tree.pollLast());
+				}
+				else if (operation == 9 && random.nextInt(100) == 0) {
+					checkContents(tree, expected, fanout);
+					Iterator<Integer> iterator = tree.iterator();
+					Iterator<Integer> expectedIterator = expected.iterator();
+					while (expectedIterator.hasNext()) {
+						assertEquals(expectedIterator.next(), iterator.next());
+						if (random.nextInt(6) == 0) {
+							iterator.remove();
+							expectedIterator.remove();
+						}
+					}
+					assertFalse(iterator.hasNext());
+					checkContents(tree, expected, fanout);
+				}
+			}
+			checkContents(tree, expected, fanout);
+		}
+	}
+
+	// every traversal holds the same keys, and the height stays within the B-tree bound
+	private static void checkContents(BTree<Integer> tree, TreeSet<Integer> expected, int fanout) {
+		List<Integer> keys = new ArrayList<>(expected);
+		assertEquals(keys, tree.inOrder());
+		assertEquals(expected.size(), tree.size());
+		for (List<Integer> traversal : List.of(tree.preOrder(), tree.postOrder(), tree.breadthFirst())) {
+			List<Integer> sorted = new ArrayList<>(traversal);
+			Collections.sort(sorted);
+			assertEquals(keys, sorted);
+		}
+		int minDegree = fanout / 2;
+		double bound = expected.isEmpty() ? 0 : 1 + Math.log((expected.size() + 1) / 2.0) / Math.log(minDegree);
+		assertTrue(tree.height() <= bound, () -> "height " + tree.height() + " for " + expected.size() + " keys");
+		assertEquals(expected, tree);
+		assertEquals(expected.hashCode(), tree.hashCode());
+	}
+
+	@Test
+	void sequentialInsertAndDelete() {
+		BTree<Integer> tree = new BTree<>();
+		for (int i = 0; i < 200_000; i++) {
+			tree.insert(i);
+		}
+		for (int i = 0; i < 200_000; i += 2) {
+			tree.delete(i);
+		}
+		assertEquals(100_000, tree.size());
+		assertEquals(1, tree.first());
+		assertEquals(199_999, tree.last());
+	}
+
+	@Test
+	void duplicateAddThatSplitsInvalidatesIterators() {
+		BTree<Integer> tree = new BTree<>(4, 1, 2, 3); // root full
+		Iterator<Integer> iterator = tree.iterator();
+		assertEquals(1, iterator.next());
+		assertFalse(tree.add(2)); // splits the root on the way down
+		assertThrows(ConcurrentModificationException.class, iterator::next);
+	}
+
+	@Test
+	void noOpChangesNeverBreakIterators() {
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			BTree<Integer> tree = new BTree<>(4);
+			List<Integer> keys = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				int key = random.nextInt(1000);
+				keys.add(key);
+				tree.add(key);
+			}
+			List<Integer> expected = tree.inOrder();
+			Iterator<Integer> iterator = tree.iterator();
+			for (int i = 0; i < 50; i++) {
+				iterator.next();
+			}
+			// nothing is added or removed, but nodes are split, refilled and merged
+			for (int key : keys) {
+				assertFalse(tree.add(key));
+			}
+			for (int i = 0; i < 200; i++) {
+				assertFalse(tree.remove(1000 + random.nextInt(1000)));
+			}
+			assertEquals(expected, tree.inOrder());
+			// either the iterator notices the restructuring or it carries on correctly
+			List<Integer> rest = new ArrayList<>();
+			try {
+				iterator.forEachRemaining(rest::add);
+				assertEquals(expected.subList(50, expected.size()), rest);
+			}
+			catch (ConcurrentModificationException e) {
+				// expected once a node moved
+			}
+		}
+	}
+
+	@Test
+	void emptyTreeAndBadFanout() {
+		BTree<Integer> tree = new BTree<>();
+		assertFalse(tree.find(1));
+		assertThrows(NoSuchElementException.class, tree::first);
+		assertNull(tree.pollFirst());
+		assertEquals(0, tree.height());
+		assertThrows(IllegalArgumentException.class, () -> new BTree<Integer>(3));
+		assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9), new BTree<>(4, 5, 3, 8, 1, 4, 7, 9, 2, 6).inOrder());
+	}
+
+}
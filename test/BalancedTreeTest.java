@@ -0,0 +1,139 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * LeftLeaningRedBlackTree and WavlTree against TreeSet, each with its own
+ * shape rules checked as it changes:
+ *   LLRB  black root, red links lean left, no red-red, equal black height
+ *   WAVL  every rank difference 1 or 2, leaves have rank 0
+ * Both trees use null children and a null root parent.
+ */
+class BalancedTreeTest {
+
+	@Test
+	void leftLeaningMatchesTreeSet() {
+		differential(LeftLeaningRedBlackTree::new, BalancedTreeTest::checkLeftLeaning);
+	}
+
+	@Test
+	void wavlMatchesTreeSet() {
+		differential(WavlTree::new, BalancedTreeTest::checkWavl);
+	}
+
+	private static void differential(Supplier<BalancedTree<Integer>> factory, ShapeCheck check) {
+		for (int range : new int[] { 10, 100, 5000 }) {
+			Random random = new Random(range);
+			BalancedTree<Integer> tree = factory.get();
+			TreeSet<Integer> expected = new TreeSet<>();
+			for (int i = 0; i < 30_000; i++) {
+				int key = random.nextInt(range);
+				int operation = random.nextInt(10);
+				if (operation < 5) {
+					assertEquals(expected.add(key), tree.add(key), "add " + key);
+				}
+				else if (operation < 9) {
+					assertEquals(expected.remove(key), tree.remove(key), "remove " + key);
+				}
+				else {
+					assertEquals(expected.contains(key), tree.contains(key));
+				}
+				if (range == 10 || i % 97 == 0) {
+					check(tree, expected, check);
+				}
+			}
+			check(tree, expected, check);
+			while (!expected.isEmpty()) {
+				Integer key = random.nextBoolean() ? expected.pollFirst() : expected.pollLast();
+				assertTrue(tree.remove(key));
+				if (expected.size() % 31 == 0) {
+					check(tree, expected, check);
+				}
+			}
+			assertNull(tree.root);
+		}
+	}
+
+	private interface ShapeCheck {
+		// returns the number of nodes under node
+		int check(BSTNode<Integer> node, BSTNode<Integer> parent);
+	}
+
+	private static void check(BalancedTree<Integer> tree, TreeSet<Integer> expected, ShapeCheck check) {
+		assertEquals(new ArrayList<>(expected), tree.inOrder());
+		assertEquals(expected.size(), tree.size());
+		if (tree.root != null) {
+			assertNull(tree.root.parent, "root parent");
+			assertEquals(expected.size(), check.check(tree.root, null), "node count");
+		}
+	}
+
+	private static int checkLeftLeaning(BSTNode<Integer> root, BSTNode<Integer> parent) {
+		assertEquals('B', root.getColor(), "root color");
+		int[] count = new int[1];
+		blackHeight(root, parent, count);
+		return count[0];
+	}
+
+	private static int blackHeight(BSTNode<Integer> node, BSTNode<Integer> parent, int[] count) {
+		if (node == null) {
+			return 0;
+		}
+		assertSame(parent, node.parent, () -> "parent link at " + node);
+		assertTrue(node.right == null || node.right.getColor() == 'B', () -> "red right link at " + node);
+		assertTrue(node.getColor() == 'B' || node.left == null || node.left.getColor() == 'B', () -> "red red at " + node);
+		count[0]++;
+		int left = blackHeight(node.left, node, count);
+		int right = blackHeight(node.right, node, count);
+		assertEquals(left, right, () -> "black height at " + node);
+		return left + (node.getColor() == 'B' ? 1 : 0);
+	}
+
+	private static int checkWavl(BSTNode<Integer> node, BSTNode<Integer> parent) {
+		if (node == null) {
+			return 0;
+		}
+		assertSame(parent, node.parent, () -> "parent link at " + node);
+		int rank = WavlTree.rank(node);
+		int left = rank - WavlTree.rank(node.left);
+		int right = rank - WavlTree.rank(node.right);
+		assertTrue(left >= 1 && left <= 2 && right >= 1 && right <= 2, () -> "rank differences " + left + "," + right + " at " + node);
+		if (node.left == null && node.right == null) {
+			assertEquals(0, rank, () -> "leaf rank at " + node);
+		}
+		return 1 + checkWavl(node.left, node) + checkWavl(node.right, node);
+	}
+
+	@Test
+	void wavlWithoutDeletesIsAvlShaped() {
+		WavlTree<Integer> tree = new WavlTree<>();
+		int n = 1 << 16;
+		for (int i = 0; i < n; i++) {
+			tree.insert(i);
+		}
+		// an AVL tree of n keys is at most 1.44 log2(n + 2) high
+		assertTrue(tree.height() <= 1.44 * Math.log(n + 2) / Math.log(2), "height " + tree.height());
+		assertEquals(n, checkWavl(tree.root, null));
+	}
+
+	@Test
+	void quietInsertAndDelete() {
+		LeftLeaningRedBlackTree<Integer> tree = new LeftLeaningRedBlackTree<>(5, 3, 8, 1);
+		tree.delete(99);
+		tree.insert(3);
+		assertEquals(List.of(1, 3, 5, 8), tree.inOrder());
+		assertEquals(4, checkLeftLeaning(tree.root, null));
+	}
+
+}
@@ -0,0 +1,155 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ConcurrentRedBlackTree answers as the RedBlackTree it wraps, and optimistic
+ * reads racing a writer never return a wrong answer.
+ */
+class ConcurrentRedBlackTreeTest {
+
+	@Test
+	void findOnEmptyTreeIsFalse() {
+		ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+		assertFalse(tree.find(1));
+		assertFalse(new RedBlackTree<Integer>().find(1));
+		tree.insert(1);
+		tree.delete(1);
+		assertFalse(tree.find(1));
+		assertThrows(NullPointerException.class, () -> tree.find(null));
+		assertTrue(new ConcurrentRedBlackTree<>(1, 2).find(2));
+	}
+
+	@Test
+	void matchesTreeSet() {
+		Random random = new Random(1);
+		ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 20_000; i++) {
+			int key = random.nextInt(2000);
+			if (random.nextInt(3) > 0) {
+				tree.insert(key);
+				expected.add(key);
+			}
+			else {
+				tree.delete(key);
+				expected.remove(key);
+			}
+			int probe = random.nextInt(2100) - 50;
+			assertEquals(expected.contains(probe), tree.find(probe));
+			assertEquals(expected.floor(probe), tree.floor(probe));
+			assertEquals(expected.ceiling(probe), tree.ceiling(probe));
+			assertEquals(expected.lower(probe), tree.lower(probe));
+			assertEquals(expected.higher(probe), tree.higher(probe));
+			assertEquals(expected.size(), tree.size());
+		}
+		assertEquals(new ArrayList<>(expected), tree.inOrder());
+		while (!expected.isEmpty()) {
+			assertEquals(expected.pollFirst(), tree.pollFirst());
+			assertEquals(expected.pollLast(), tree.pollLast());
+		}
+		assertNull(tree.pollFirst());
+		assertTrue(tree.isEmpty());
+	}
+
+	/*
+	 * The writer only touches odd keys, but its rotations and recolors move the
+	 * nodes holding the even ones. Readers racing it must still find every even
+	 * key and never a key outside the range, whether the optimistic walk
+	 * succeeds, runs too long, throws, or fails validation and retries locked.
+	 */
+	@Test
+	void readersRacingAWriterNeverSeeAWrongAnswer() throws InterruptedException {
+		int range = 4096;
+		ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+		for (int i = 0; i < range; i += 2) {
+			tree.insert(i);
+		}
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int r = 0; r < 3; r++) {
+			Random random = new Random(r);
+			threads.add(new Thread(() -> {
+				while (!done.get() && failure.get() == null) {
+					int even = random.nextInt(range / 2) * 2;
+					if (!tree.find(even)) {
+						failure.compareAndSet(null, "lost " + even);
+					}
+					int absent = random.nextBoolean() ? -1 - random.nextInt(range) : range + random.nextInt(range);
+					if (tree.find(absent)) {
+						failure.compareAndSet(null, "found " + absent);
+					}
+				}
+			}));
+		}
+		threads.add(new Thread(() -> {
+			Random random = new Random(-1);
+			for (int i = 0; i < 300_000 && failure.get() == null; i++) {
+				int odd = random.nextInt(range / 2) * 2 + 1;
+				if (random.nextBoolean()) {
+					tree.insert(odd);
+				}
+				else {
+					tree.delete(odd);
+				}
+			}
+			done.set(true);
+		}));
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		List<Integer> keys = tree.inOrder();
+		for (int i = 1; i < keys.size(); i++) {
+			assertTrue(keys.get(i - 1) < keys.get(i));
+		}
+		assertEquals(keys.size(), tree.size());
+	}
+
+	@Test
+	void concurrentWritersLoseNothing() throws InterruptedException {
+		ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+		Thread[] writers = new Thread[4];
+		for (int w = 0; w < writers.length; w++) {
+			int offset = w;
+			writers[w] = new Thread(() -> {
+				for (int i = 0; i < 20_000; i++) {
+					tree.insert(i * writers.length + offset);
+					if (i % 3 == 0) {
+						tree.delete(i * writers.length + offset);
+					}
+				}
+			});
+			writers[w].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		List<Integer> expected = new ArrayList<>();
+		for (int key = 0; key < 20_000 * writers.length; key++) {
+			if ((key / writers.length) % 3 != 0) {
+				expected.add(key);
+			}
+		}
+		assertEquals(expected, tree.inOrder());
+		assertEquals(expected.size(), tree.size());
+	}
+
+}
@@ -0,0 +1,205 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * DurableRedBlackTree and its WriteAheadLog across reopens. An unclean close is
+ * a tree that is never closed: every change it acknowledged was synced, so the
+ * next open() of the directory must replay all of them. Torn writes are made by
+ * cutting the log file short.
+ */
+class DurableRedBlackTreeTest {
+
+	@TempDir
+	Path directory;
+
+	private static void change(DurableRedBlackTree<Integer> tree, TreeSet<Integer> expected, Random random, int operations) throws IOException {
+		for (int i = 0; i < operations; i++) {
+			int key = random.nextInt(5000);
+			if (random.nextBoolean()) {
+				assertEquals(expected.add(key), tree.insert(key), "insert " + key);
+			}
+			else {
+				assertEquals(expected.remove(key), tree.delete(key), "delete " + key);
+			}
+		}
+	}
+
+	@Test
+	void replayAfterCloseAndAfterCrash() throws IOException {
+		Random random = new Random(1);
+		TreeSet<Integer> expected = new TreeSet<>();
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers(), false, 1_000_000)) {
+			change(tree, expected, random, 20_000);
+		}
+		DurableRedBlackTree<Integer> crashed = DurableRedBlackTree.open(this.directory, KeyCodec.integers());
+		assertEquals(new ArrayList<>(expected), crashed.inOrder());
+		change(crashed, expected, random, 2000);
+		// never closed
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+		}
+		crashed.close();
+	}
+
+	@Test
+	void concurrentWritersAreAllReplayed() throws Exception {
+		TreeSet<Integer> expected = new TreeSet<>();
+		DurableRedBlackTree<Integer> crashed = DurableRedBlackTree.open(this.directory, KeyCodec.integers());
+		Thread[] writers = new Thread[8];
+		for (int i = 0; i < writers.length; i++) {
+			int base = i * 10_000;
+			writers[i] = new Thread(() -> {
+				try {
+					for (int j = 0; j < 300; j++) {
+						crashed.insert(base + j);
+					}
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			writers[i].start();
+			for (int j = 0; j < 300; j++) {
+				expected.add(base + j);
+			}
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+		}
+		crashed.close();
+	}
+
+	// every cut inside the last record drops just that record, and the log is cut back to the one before
+	@Test
+	void truncatedLastRecordIsDropped() throws IOException {
+		Path log = this.directory.resolve("tree.wal");
+		try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(this.directory, KeyCodec.longs())) {
+			tree.insert(1L);
+			tree.insert(2L);
+		}
+		long oneRecord = Files.size(log);
+		try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(this.directory, KeyCodec.longs())) {
+			tree.insert(3L);
+		}
+		byte[] full = Files.readAllBytes(log);
+		for (int cut = (int) oneRecord; cut < full.length; cut++) {
+			Files.write(log, Arrays.copyOf(full, cut));
+			try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(this.directory, KeyCodec.longs())) {
+				assertEquals(List.of(1L, 2L), tree.inOrder(), "cut at " + cut);
+				assertEquals(oneRecord, tree.logLength());
+				tree.insert(4L);
+			}
+			try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(this.directory, KeyCodec.longs())) {
+				assertEquals(List.of(1L, 2L, 4L), tree.inOrder(), "appended after cut at " + cut);
+			}
+		}
+		// a flipped byte fails the checksum the same way
+		full[full.length - 6] ^= 1;
+		Files.write(log, full);
+		try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(this.directory, KeyCodec.longs())) {
+			assertEquals(List.of(1L, 2L), tree.inOrder());
+		}
+	}
+
+	// a crash while the log is created can leave any prefix of its header
+	@Test
+	void tornHeaderIsWrittenAgain() throws IOException {
+		Path first = this.directory.resolve("first");
+		try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(first, KeyCodec.longs())) {
+			assertTrue(tree.isEmpty());
+		}
+		byte[] header = Files.readAllBytes(first.resolve("tree.wal"));
+		for (int cut = 0; cut <= header.length; cut++) {
+			Path directory = this.directory.resolve("cut" + cut);
+			Files.createDirectories(directory);
+			byte[] torn = Arrays.copyOf(header, header.length);
+			Arrays.fill(torn, cut, torn.length, (byte) 0);
+			Files.write(directory.resolve("tree.wal"), Arrays.copyOf(torn, cut % 2 == 0 ? cut : header.length));
+			try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(directory, KeyCodec.longs())) {
+				assertTrue(tree.isEmpty(), "cut at " + cut);
+				tree.insert(7L);
+			}
+			try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(directory, KeyCodec.longs())) {
+				assertEquals(List.of(7L), tree.inOrder(), "cut at " + cut);
+			}
+		}
+	}
+
+	@Test
+	void otherFilesAreRejected() throws IOException {
+		Files.write(this.directory.resolve("tree.wal"), "abc".getBytes());
+		assertThrows(IOException.class, () -> DurableRedBlackTree.open(this.directory, KeyCodec.longs()));
+
+		Path other = this.directory.resolve("other");
+		try (DurableRedBlackTree<Long> tree = DurableRedBlackTree.open(other, KeyCodec.longs())) {
+			tree.insert(1L);
+		}
+		assertThrows(IOException.class, () -> DurableRedBlackTree.open(other, KeyCodec.longDeltas()));
+	}
+
+	@Test
+	void compactThenReopen() throws IOException {
+		Random random = new Random(2);
+		TreeSet<Integer> expected = new TreeSet<>();
+		long emptyLog;
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			emptyLog = tree.logLength();
+			change(tree, expected, random, 5000);
+			tree.compact();
+			assertEquals(emptyLog, tree.logLength());
+			assertTrue(Files.exists(this.directory.resolve("tree.snapshot")));
+		}
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+			change(tree, expected, random, 1000);
+		}
+		// snapshot plus the log written since
+		DurableRedBlackTree<Integer> crashed = DurableRedBlackTree.open(this.directory, KeyCodec.integers());
+		assertEquals(new ArrayList<>(expected), crashed.inOrder());
+		crashed.compact();
+		change(crashed, expected, random, 1000);
+		// never closed
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+		}
+		crashed.close();
+	}
+
+	// compact() crashing after the rename but before the log reset replays records the snapshot has
+	@Test
+	void replayOverANewerSnapshotIsHarmless() throws IOException {
+		TreeSet<Integer> expected = new TreeSet<>();
+		Random random = new Random(3);
+		byte[] log;
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			change(tree, expected, random, 3000);
+			tree.sync();
+			log = Files.readAllBytes(this.directory.resolve("tree.wal"));
+			tree.compact();
+		}
+		Files.write(this.directory.resolve("tree.wal"), log);
+		try (DurableRedBlackTree<Integer> tree = DurableRedBlackTree.open(this.directory, KeyCodec.integers())) {
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * IntervalTree queries against a brute-force scan of every interval, while the
+ * tree changes through each path that moves nodes (add, addHinted, remove,
+ * deleteAll, view clear, iterator remove). Every node's maxEnd is checked
+ * against its subtree, along with the red black invariants.
+ */
+class IntervalTreeTest {
+
+	@Test
+	void queriesMatchBruteForce() {
+		for (int range : new int[] { 5, 50, 1000, 100_000 }) {
+			Random random = new Random(range);
+			IntervalTree<Integer> tree = new IntervalTree<>();
+			TreeSet<Interval<Integer>> expected = new TreeSet<>();
+			for (int i = 0; i < 30_000; i++) {
+				int start = random.nextInt(range);
+				// mostly short intervals, one in ten up to the whole range
+				int length = random.nextInt(10) == 0 ? random.nextInt(range) : random.nextInt(Math.max(1, range / 50));
+				Interval<Integer> interval = new Interval<>(start, start + length);
+				int operation = random.nextInt(10);
+				if (operation < 3) {
+					assertEquals(expected.add(interval), tree.add(interval));
+				}
+				else if (operation < 5) {
+					assertEquals(expected.remove(interval), tree.remove(interval));
+				}
+				else if (operation == 5) {
+					assertEquals(expected.add(interval), tree.addHinted(interval));
+				}
+				else if (operation == 6 && random.nextInt(50) == 0) {
+					List<Interval<Integer>> batch = new ArrayList<>(expected.headSet(interval));
+					Collections.shuffle(batch, random);
+					batch = new ArrayList<>(batch.subList(0, batch.size() / 2));
+					Collections.sort(batch);
+					tree.deleteAll(batch);
+					expected.removeAll(batch);
+				}
+				else if (operation == 7 && random.nextInt(50) == 0) {
+					Interval<Integer> to = new Interval<>(start + length + 1, start + length + 1);
+					tree.subSet(interval, to).clear();
+					expected.subSet(interval, to).clear();
+				}
+				else if (operation == 8 && random.nextInt(100) == 0) {
+					Iterator<Interval<Integer>> iterator = tree.iterator();
+					while (iterator.hasNext()) {
+						Interval<Integer> next = iterator.next();
+						if (random.nextInt(4) == 0) {
+							iterator.remove();
+							expected.remove(next);
+						}
+					}
+				}
+				else {
+					int low = random.nextInt(range + range / 10) - range / 20;
+					int high = random.nextBoolean() ? low : low + random.nextInt(Math.max(1, range / 20));
+					List<Interval<Integer>> want = expected.stream().filter(x -> x.overlaps(low, high)).collect(Collectors.toList());
+					List<Interval<Integer>> got = (low == high ? tree.stab(low) : tree.overlapping(low, high)).collect(Collectors.toList());
+					assertEquals(want, got, "[" + low + ", " + high + "]");
+				}
+				if (i % 1000 == 0) {
+					checkMaxEnd(tree);
+				}
+			}
+			checkMaxEnd(tree);
+			RedBlackTreeInvariants.check(tree);
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+		}
+	}
+
+	private static void checkMaxEnd(IntervalTree<Integer> tree) {
+		if (!tree.isNil(tree.root)) {
+			maxEnd(tree, tree.root);
+		}
+	}
+
+	private static int maxEnd(IntervalTree<Integer> tree, BSTNode<Interval<Integer>> node) {
+		if (tree.isNil(node)) {
+			return Integer.MIN_VALUE;
+		}
+		int max = Math.max(node.getData().getEnd(), Math.max(maxEnd(tree, node.left), maxEnd(tree, node.right)));
+		assertEquals(max, tree.maxEnd(node), () -> "maxEnd at " + node);
+		return max;
+	}
+
+	@Test
+	void changesInvalidateOpenQueries() {
+		IntervalTree<Integer> tree = new IntervalTree<>();
+		for (int i = 0; i < 10; i++) {
+			tree.add(i, i + 2);
+		}
+		Iterator<Interval<Integer>> iterator = tree.overlapping(0, 100).iterator();
+		iterator.next();
+		tree.add(50, 60);
+		assertThrows(ConcurrentModificationException.class, iterator::next);
+	}
+
+	@Test
+	void emptyAndBackwardsIntervals() {
+		assertEquals(0, new IntervalTree<Integer>().stab(1).count());
+		assertThrows(IllegalArgumentException.class, () -> new Interval<>(3, 2));
+		assertThrows(IllegalArgumentException.class, () -> new IntervalTree<Integer>().overlapping(3, 2));
+	}
+
+}
@@ -0,0 +1,138 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RedBlackTree with a LookupCache attached against TreeSet: whichever API
+ * changes the tree, a cached answer must never be stale.
+ */
+class LookupCacheTest {
+
+	// a key is admitted on its second miss, so it takes three lookups to hit
+	private static void warm(RedBlackTree<Integer> tree, int key) {
+		tree.contains(key);
+		tree.contains(key);
+	}
+
+	@Test
+	void removeAndInsertUpdateCachedAnswers() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>(1, 2, 3);
+		LookupCache<Integer> cache = new LookupCache<>(16);
+		tree.setLookupCache(cache);
+		warm(tree, 2);
+		warm(tree, 9);
+		assertEquals(2, cache.size());
+		long hits = cache.getHits();
+		assertTrue(tree.contains(2));
+		assertFalse(tree.contains(9));
+		assertEquals(hits + 2, cache.getHits());
+
+		assertTrue(tree.remove(2));
+		assertTrue(tree.add(9));
+		assertFalse(tree.contains(2));
+		assertTrue(tree.find(9));
+		assertEquals(hits + 4, cache.getHits(), "the entries were updated in place");
+
+		tree.delete(9);
+		assertFalse(tree.contains(9));
+		tree.insert(2);
+		assertTrue(tree.contains(2));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	void neverStaleWhateverChangesTheTree() {
+		for (int capacity : new int[] { 1, 2, 7, 64, 1000 }) {
+			Random random = new Random(capacity);
+			RedBlackTree<Integer> tree = capacity == 7 ? new OrderStatisticTree<>() : new RedBlackTree<>();
+			LookupCache<Integer> cache = new LookupCache<>(capacity);
+			tree.setLookupCache(cache);
+			TreeSet<Integer> expected = new TreeSet<>();
+			for (int i = 0; i < 100_000; i++) {
+				// mostly a few hot keys
+				int key = random.nextInt(10) < 8 ? random.nextInt(20) : random.nextInt(3000);
+				int operation = random.nextInt(20);
+				if (operation < 3) {
+					assertEquals(expected.add(key), tree.add(key), "add " + key);
+				}
+				else if (operation < 5) {
+					assertEquals(expected.remove(key), tree.remove(key), "remove " + key);
+				}
+				else if (operation == 5) {
+					assertEquals(expected.add(key), tree.addHinted(key), "addHinted " + key);
+				}
+				else if (operation == 6 && random.nextInt(100) == 0) {
+					Iterator<Integer> iterator = tree.iterator();
+					Iterator<Integer> expectedIterator = expected.iterator();
+					while (iterator.hasNext()) {
+						iterator.next();
+						expectedIterator.next();
+						if (random.nextInt(3) == 0) {
+							iterator.remove();
+							expectedIterator.remove();
+						}
+					}
+				}
+				else if (operation == 7 && random.nextInt(500) == 0) {
+					tree.clear();
+					expected.clear();
+				}
+				else if (operation == 8 && random.nextInt(200) == 0 && capacity != 7) {
+					tree.deleteAll(new ArrayList<>(expected.headSet(key)));
+					expected.headSet(key).clear();
+				}
+				else if (operation == 9 && random.nextInt(100) == 0) {
+					tree.subSet(key, key + 50).clear();
+					expected.subSet(key, key + 50).clear();
+				}
+				else {
+					assertEquals(expected.contains(key), tree.contains(key), () -> "contains " + key + " with capacity " + capacity);
+				}
+				assertTrue(cache.size() <= capacity);
+			}
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+			assertTrue(cache.getHits() > 0);
+			if (capacity < 20) {
+				assertTrue(cache.getEvictions() > 0);
+			}
+		}
+	}
+
+	@Test
+	void splitAndDetachEmptyTheCache() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		LookupCache<Integer> cache = new LookupCache<>(16);
+		tree.setLookupCache(cache);
+		for (int i = 0; i < 100; i++) {
+			tree.add(i);
+		}
+		for (int i = 0; i < 10; i++) {
+			warm(tree, i);
+		}
+		assertEquals(10, cache.size());
+		tree.split(50);
+		assertEquals(0, cache.size());
+		assertFalse(tree.contains(10));
+		assertFalse(tree.contains(10));
+		assertFalse(tree.contains(10));
+
+		assertSame(cache, tree.getLookupCache());
+		tree.setLookupCache(null);
+		assertFalse(tree.contains(3));
+		cache.resetCounters();
+		assertEquals(0, cache.getHitRate());
+		assertThrows(IllegalArgumentException.class, () -> new LookupCache<Integer>(0));
+	}
+
+}
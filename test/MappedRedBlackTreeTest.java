@@ -0,0 +1,188 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MappedRedBlackTree across reopens. An unclean close is a tree that is simply
+ * never closed or forced: the next open() of the same file sees whatever the
+ * mapping wrote, as it would after the process died.
+ */
+class MappedRedBlackTreeTest {
+
+	@TempDir
+	Path directory;
+
+	private static long[] keys(TreeSet<Long> expected) {
+		return expected.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private static void change(MappedRedBlackTree tree, TreeSet<Long> expected, Random random, int operations, int range) {
+		for (int i = 0; i < operations; i++) {
+			long key = random.nextInt(range) - range / 2;
+			if (random.nextInt(3) > 0) {
+				assertEquals(expected.add(key), tree.insert(key), "insert " + key);
+			}
+			else {
+				assertEquals(expected.remove(key), tree.delete(key), "delete " + key);
+			}
+		}
+	}
+
+	@Test
+	void reopenAfterClose() throws IOException {
+		Path file = this.directory.resolve("tree");
+		Random random = new Random(1);
+		TreeSet<Long> expected = new TreeSet<>();
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertTrue(tree.isEmpty());
+			change(tree, expected, random, 100_000, 150_000);
+		}
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertFalse(tree.recovered());
+			assertArrayEquals(keys(expected), tree.inOrder());
+			assertEquals(tree.blackHeight(), tree.storedBlackHeight());
+			RedBlackTreeInvariants.check(tree);
+			change(tree, expected, random, 20_000, 150_000);
+		}
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertArrayEquals(keys(expected), tree.inOrder());
+		}
+	}
+
+	@Test
+	void uncleanCloseIsRecovered() throws IOException {
+		Path file = this.directory.resolve("tree");
+		Random random = new Random(2);
+		TreeSet<Long> expected = new TreeSet<>();
+		MappedRedBlackTree crashed = MappedRedBlackTree.open(file);
+		change(crashed, expected, random, 50_000, 80_000);
+		crashed.force();
+		change(crashed, expected, random, 10_000, 80_000);
+		// never closed
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertTrue(tree.recovered());
+			assertArrayEquals(keys(expected), tree.inOrder());
+			RedBlackTreeInvariants.check(tree);
+			change(tree, expected, random, 10_000, 80_000);
+		}
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertFalse(tree.recovered());
+			assertArrayEquals(keys(expected), tree.inOrder());
+		}
+	}
+
+	@Test
+	void noOpChangesLeaveTheFileClean() throws IOException {
+		Path file = this.directory.resolve("tree");
+		MappedRedBlackTree crashed = MappedRedBlackTree.open(file);
+		for (int i = 0; i < 1000; i++) {
+			crashed.insert(i * 2);
+		}
+		crashed.force();
+		assertFalse(crashed.insert(10));
+		assertFalse(crashed.delete(7));
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertFalse(tree.recovered());
+			assertEquals(1000, tree.size());
+		}
+	}
+
+	// a crash can leave any mix of old and new links; only the in-use records count
+	@Test
+	void recoveryIgnoresBrokenLinks() throws IOException {
+		Random random = new Random(3);
+		for (int round = 0; round < 10; round++) {
+			Path file = this.directory.resolve("tree" + round);
+			TreeSet<Long> expected = new TreeSet<>();
+			MappedRedBlackTree crashed = MappedRedBlackTree.open(file);
+			int range = round < 5 ? 300 : 100_000;
+			change(crashed, expected, random, range, range);
+			for (int i = 0; i < 50; i++) {
+				int slot = 1 + random.nextInt(crashed.nextSlot - 1);
+				crashed.setLeft(slot, random.nextInt(crashed.nextSlot));
+				crashed.setParent(slot, random.nextInt(crashed.nextSlot));
+				if (random.nextBoolean()) {
+					crashed.setRed(slot);
+				}
+			}
+			try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+				assertTrue(tree.recovered());
+				assertArrayEquals(keys(expected), tree.inOrder());
+				RedBlackTreeInvariants.check(tree);
+			}
+		}
+	}
+
+	@Test
+	void deletedSlotsAreReusedAcrossReopens() throws IOException {
+		Path file = this.directory.resolve("tree");
+		int slots;
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			for (int i = 0; i < 2000; i++) {
+				tree.insert(i);
+			}
+			for (int i = 0; i < 2000; i += 2) {
+				tree.delete(i);
+			}
+			slots = tree.nextSlot;
+		}
+		long length = Files.size(file);
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			for (int i = 0; i < 2000; i += 2) {
+				assertTrue(tree.insert(-i - 1));
+			}
+			assertEquals(slots, tree.nextSlot, "the free list did not survive the reopen");
+			assertEquals(2000, tree.size());
+			RedBlackTreeInvariants.check(tree);
+		}
+		// the same goes for a recovered tree, which rebuilds the free list
+		MappedRedBlackTree crashed = MappedRedBlackTree.open(file);
+		for (int i = 0; i < 2000; i += 4) {
+			crashed.delete(-i - 1);
+		}
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			assertTrue(tree.recovered());
+			for (int i = 0; i < 2000; i += 4) {
+				assertTrue(tree.insert(i));
+			}
+			assertTrue(tree.nextSlot <= slots, () -> tree.nextSlot + " slots, " + slots + " before");
+			assertEquals(2000, tree.size());
+		}
+		assertEquals(length, Files.size(file));
+	}
+
+	@Test
+	void otherFilesAreRejected() throws IOException {
+		Path garbage = this.directory.resolve("garbage");
+		Files.write(garbage, new byte[5000]);
+		assertThrows(IOException.class, () -> MappedRedBlackTree.open(garbage));
+
+		Path file = this.directory.resolve("tree");
+		try (MappedRedBlackTree tree = MappedRedBlackTree.open(file)) {
+			tree.insert(1);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 2);
+			channel.write(version, 4);
+		}
+		assertThrows(IOException.class, () -> MappedRedBlackTree.open(file));
+	}
+
+}
@@ -0,0 +1,65 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every version of a PersistentRedBlackTree is a valid red black tree, and
+ * keeps its keys however many later versions are derived from it.
+ */
+class PersistentRedBlackTreeTest {
+
+	@Test
+	void everyVersionKeepsItsKeys() {
+		for (int seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+			TreeSet<Integer> expected = new TreeSet<>();
+			List<PersistentRedBlackTree<Integer>> versions = new ArrayList<>();
+			List<List<Integer>> contents = new ArrayList<>();
+			int range = seed < 5 ? 200 : 2000;
+			for (int i = 0; i < 3000; i++) {
+				int key = random.nextInt(range);
+				if (random.nextInt(3) > 0) {
+					tree = tree.insert(key);
+					expected.add(key);
+				}
+				else {
+					tree = tree.delete(key);
+					expected.remove(key);
+				}
+				assertEquals(expected.size(), tree.size());
+				if (i % 37 == 0) {
+					assertTrue(tree.checkedBlackHeight() >= 0, "invalid after " + (i + 1) + " changes");
+					versions.add(tree);
+					contents.add(new ArrayList<>(expected));
+				}
+			}
+			for (int i = 0; i < versions.size(); i++) {
+				assertEquals(contents.get(i), versions.get(i).inOrder(), "version " + i);
+			}
+			while (!expected.isEmpty()) {
+				tree = tree.delete(expected.pollLast());
+				assertTrue(tree.checkedBlackHeight() >= 0);
+			}
+			assertTrue(tree.isEmpty());
+		}
+	}
+
+	@Test
+	void noOpChangesReturnTheSameVersion() {
+		PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<Integer>().insert(10).insert(12).insert(15);
+		assertSame(tree, tree.insert(12));
+		assertSame(tree, tree.delete(11));
+		assertEquals(List.of(10, 12, 15), tree.inOrder());
+	}
+
+}
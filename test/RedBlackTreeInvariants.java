@@ -0,0 +1,116 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Structural checks for RedBlackTree: black root, no red node with a red
+ * child, the same number of black nodes on every root to leaf path, parent
+ * links that match the child links, keys in strictly ascending order, size()
+ * equal to the node count, and the shared NIL sentinel still black with no
+ * key and no links (every tree points at it, so one stray write corrupts all
+ * of them). The same checks, apart from key order, run on SlotRedBlackTree
+ * engines through their slot accessors; their callers compare the in-order
+ * keys with a TreeSet instead.
+ */
+final class RedBlackTreeInvariants {
+
+	private RedBlackTreeInvariants() {
+	}
+
+	static <E extends Comparable<E>> void check(RedBlackTree<E> tree) {
+		checkSentinel();
+		BSTNode<E> nil = RedBlackTree.nil();
+		if (tree.isNil(tree.root)) {
+			assertEquals(0, tree.size(), "size of an empty tree");
+			return;
+		}
+		assertEquals('B', tree.root.getColor(), "root color");
+		assertSame(nil, tree.root.parent, "root parent");
+		int[] count = new int[1];
+		blackHeight(tree, tree.root, null, null, count);
+		assertEquals(count[0], tree.size(), "size");
+	}
+
+	static void checkSentinel() {
+		BSTNode<Integer> nil = RedBlackTree.nil();
+		assertEquals('B', nil.getColor(), "NIL color");
+		assertNull(nil.getData(), "NIL key");
+		assertNull(nil.parent, "NIL parent");
+		assertNull(nil.left, "NIL left");
+		assertNull(nil.right, "NIL right");
+	}
+
+	static void check(SlotRedBlackTree tree) {
+		int nil = SlotRedBlackTree.NIL;
+		if (tree.root == nil) { // storage, NIL included, may not even exist yet
+			assertEquals(0, tree.size(), "size of an empty tree");
+			return;
+		}
+		// NIL's parent is scratch space for the delete fix-up, its children are never written
+		assertFalse(tree.isRed(nil), "NIL color");
+		assertEquals(nil, tree.left(nil), "NIL left");
+		assertEquals(nil, tree.right(nil), "NIL right");
+		assertFalse(tree.isRed(tree.root), "root color");
+		assertEquals(nil, tree.parent(tree.root), "root parent");
+		int[] count = new int[1];
+		int height = blackHeight(tree, tree.root, count);
+		assertEquals(count[0], tree.size(), "size");
+		assertEquals(height - 1, tree.blackHeight(), "blackHeight()");
+	}
+
+	private static int blackHeight(SlotRedBlackTree tree, int node, int[] count) {
+		if (node == SlotRedBlackTree.NIL) {
+			return 1;
+		}
+		int left = tree.left(node);
+		int right = tree.right(node);
+		if (tree.isRed(node)) {
+			assertFalse(tree.isRed(left) || tree.isRed(right), () -> "red red at slot " + node);
+		}
+		if (left != SlotRedBlackTree.NIL) {
+			assertEquals(node, tree.parent(left), () -> "parent of left child of slot " + node);
+		}
+		if (right != SlotRedBlackTree.NIL) {
+			assertEquals(node, tree.parent(right), () -> "parent of right child of slot " + node);
+		}
+		count[0]++;
+		int leftHeight = blackHeight(tree, left, count);
+		int rightHeight = blackHeight(tree, right, count);
+		assertEquals(leftHeight, rightHeight, () -> "black height at slot " + node);
+		return leftHeight + (tree.isRed(node) ? 0 : 1);
+	}
+
+	// black height of node's subtree, NIL counted as one; low and high bound the keys (null = open)
+	private static <E extends Comparable<E>> int blackHeight(RedBlackTree<E> tree, BSTNode<E> node, E low, E high, int[] count) {
+		if (tree.isNil(node)) {
+			return 1;
+		}
+		if (node.getColor() != 'R' && node.getColor() != 'B') {
+			fail("color '" + node.getColor() + "' at " + node);
+		}
+		E key = node.getData();
+		assertTrue(low == null || key.compareTo(low) > 0, () -> "order: " + key + " after " + low);
+		assertTrue(high == null || key.compareTo(high) < 0, () -> "order: " + key + " before " + high);
+		if (node.getColor() == 'R') {
+			assertEquals('B', node.left.getColor(), () -> "red red at " + key);
+			assertEquals('B', node.right.getColor(), () -> "red red at " + key);
+		}
+		if (!tree.isNil(node.left)) {
+			assertSame(node, node.left.parent, () -> "parent of left child of " + key);
+		}
+		if (!tree.isNil(node.right)) {
+			assertSame(node, node.right.parent, () -> "parent of right child of " + key);
+		}
+		count[0]++;
+		int left = blackHeight(tree, node.left, low, key, count);
+		int right = blackHeight(tree, node.right, key, high, count);
+		assertEquals(left, right, () -> "black height at " + key);
+		return left + (node.getColor() == 'B' ? 1 : 0);
+	}
+
+}
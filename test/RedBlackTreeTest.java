@@ -0,0 +1,390 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RedBlackTree (and OrderStatisticTree, which rebalances through the same
+ * code) against java.util.TreeSet, with the invariants checked after every
+ * batch of changes.
+ */
+class RedBlackTreeTest {
+
+	private static RedBlackTree<Integer> newTree(int seed) {
+		return seed % 2 == 0 ? new RedBlackTree<>() : new OrderStatisticTree<>();
+	}
+
+	@Test
+	void addAndRemoveMatchTreeSet() {
+		for (int seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			RedBlackTree<Integer> tree = newTree(seed);
+			TreeSet<Integer> expected = new TreeSet<>();
+			int range = seed < 5 ? 300 : 3000;
+			for (int i = 0; i < 6000; i++) {
+				int key = random.nextInt(range);
+				if (random.nextInt(3) > 0) {
+					assertEquals(expected.add(key), tree.add(key), "add " + key);
+				}
+				else {
+					assertEquals(expected.remove(key), tree.remove(key), "remove " + key);
+				}
+				assertEquals(expected.contains(key), tree.contains(key));
+				if (i % 97 == 0) {
+					RedBlackTreeInvariants.check(tree);
+				}
+			}
+			RedBlackTreeInvariants.check(tree);
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+			while (!expected.isEmpty()) {
+				tree.delete(expected.pollFirst());
+				if (expected.size() % 50 == 0) {
+					RedBlackTreeInvariants.check(tree);
+				}
+			}
+			assertTrue(tree.isEmpty());
+		}
+	}
+
+	@Test
+	void insertAndDeleteDoNotPrint() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>(5, 3, 8);
+		tree.insert(3);
+		tree.delete(4);
+		assertEquals(List.of(3, 5, 8), tree.inOrder());
+		RedBlackTreeInvariants.check(tree);
+	}
+
+	@Test
+	void fromSortedBuildsValidTree() {
+		Random random = new Random(5);
+		for (int n = 0; n < 300; n++) {
+			List<Integer> keys = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				keys.add(random.nextInt(200));
+			}
+			TreeSet<Integer> expected = new TreeSet<>(keys);
+			Collections.sort(keys);
+			RedBlackTree<Integer> tree = RedBlackTree.fromSorted(keys);
+			RedBlackTreeInvariants.check(tree);
+			assertEquals(new ArrayList<>(expected), new ArrayList<>(tree));
+
+			RedBlackTree<Integer> fromIterator = RedBlackTree.fromSorted(new ArrayList<>(expected).iterator());
+			RedBlackTreeInvariants.check(fromIterator);
+			for (int i = 0; i < 20; i++) {
+				fromIterator.add(1000 + random.nextInt(400));
+			}
+			RedBlackTreeInvariants.check(fromIterator);
+		}
+	}
+
+	@Test
+	void batchesReportEveryKey() {
+		Random random = new Random(4);
+		for (int seed = 0; seed < 2; seed++) {
+			RedBlackTree<Integer> tree = newTree(seed);
+			TreeSet<Integer> expected = new TreeSet<>();
+			for (int round = 0; round < 300; round++) {
+				List<Integer> batch = new ArrayList<>();
+				int n = random.nextInt(200);
+				for (int i = 0; i < n; i++) {
+					batch.add(random.nextInt(5000));
+				}
+				if (random.nextInt(5) > 0) {
+					Collections.sort(batch);
+				}
+				if (random.nextBoolean()) {
+					BatchResult[] results = tree.insertAll(batch);
+					for (int i = 0; i < n; i++) {
+						assertEquals(expected.add(batch.get(i)) ? BatchResult.INSERTED : BatchResult.DUPLICATE, results[i]);
+					}
+				}
+				else {
+					BatchResult[] results = tree.deleteAll(batch);
+					for (int i = 0; i < n; i++) {
+						assertEquals(expected.remove(batch.get(i)) ? BatchResult.DELETED : BatchResult.MISSING, results[i]);
+					}
+				}
+				RedBlackTreeInvariants.check(tree);
+				assertEquals(new ArrayList<>(expected), tree.inOrder());
+			}
+		}
+	}
+
+	@Test
+	void hintedAddMatchesTreeSet() {
+		int n = 20_000;
+		for (int mode = 0; mode < 4; mode++) {
+			Random random = new Random(mode);
+			RedBlackTree<Integer> tree = newTree(mode);
+			TreeSet<Integer> expected = new TreeSet<>();
+			for (int i = 0; i < n; i++) {
+				int key;
+				switch (mode) {
+					case 0: // append
+						key = i;
+						break;
+					case 1: // append with late arrivals
+						key = random.nextInt(100) < 2 ? i - random.nextInt(50) : i;
+						break;
+					case 2: // random, many duplicates
+						key = random.nextInt(5000);
+						break;
+					default: // descending
+						key = n - i;
+				}
+				if (random.nextInt(10) == 0) {
+					assertEquals(expected.remove(key), tree.remove(key));
+				}
+				else if (random.nextInt(50) == 0) {
+					assertEquals(expected.add(key + 1), tree.add(key + 1));
+				}
+				else {
+					assertEquals(expected.add(key), tree.addHinted(key), "addHinted " + key);
+				}
+				if (i % 2000 == 0) {
+					RedBlackTreeInvariants.check(tree);
+				}
+			}
+			RedBlackTreeInvariants.check(tree);
+			assertEquals(new ArrayList<>(expected), tree.inOrder());
+		}
+	}
+
+	@Test
+	void navigationAndViewsMatchTreeSet() {
+		Random random = new Random(5);
+		for (int round = 0; round < 30; round++) {
+			RedBlackTree<Integer> tree = newTree(round);
+			TreeSet<Integer> expected = new TreeSet<>();
+			for (int i = 0; i < 100; i++) {
+				int key = random.nextInt(200);
+				assertEquals(expected.add(key), tree.add(key));
+			}
+			mutate(tree, expected, random, "tree");
+			RedBlackTreeInvariants.check(tree);
+			same(tree, expected, random, "tree", 2);
+
+			// changes made through views land in the tree
+			int low = random.nextInt(200);
+			int high = low + random.nextInt(200 - low);
+			mutate(tree.subSet(low, true, high, false), expected.subSet(low, true, high, false), random, "subSet");
+			mutate(tree.descendingSet().headSet(high, true), expected.descendingSet().headSet(high, true), random, "descending headSet");
+			mutate(tree.tailSet(low, false).descendingSet(), expected.tailSet(low, false).descendingSet(), random, "descending tailSet");
+			RedBlackTreeInvariants.check(tree);
+			same(tree, expected, random, "after views", 2);
+
+			List<Integer> keep = Arrays.asList(1, 2, 3, 50, 60, 70);
+			assertEquals(expected.retainAll(keep), tree.retainAll(keep));
+			tree.subSet(0, 60).clear();
+			expected.subSet(0, 60).clear();
+			same(tree, expected, random, "cleared subSet", 1);
+			RedBlackTreeInvariants.check(tree);
+		}
+	}
+
+	private static void same(NavigableSet<Integer> actual, NavigableSet<Integer> expected, Random random, String what, int depth) {
+		assertEquals(new ArrayList<>(expected), new ArrayList<>(actual), what);
+		assertEquals(expected.size(), actual.size(), what + " size");
+		List<Integer> descending = new ArrayList<>();
+		actual.descendingIterator().forEachRemaining(descending::add);
+		List<Integer> expectedDescending = new ArrayList<>();
+		expected.descendingIterator().forEachRemaining(expectedDescending::add);
+		assertEquals(expectedDescending, descending, what + " descendingIterator");
+		for (int i = 0; i < 20; i++) {
+			Integer key = random.nextInt(200);
+			assertEquals(expected.contains(key), actual.contains(key), what + " contains " + key);
+			assertEquals(expected.ceiling(key), actual.ceiling(key), what + " ceiling " + key);
+			assertEquals(expected.floor(key), actual.floor(key), what + " floor " + key);
+			assertEquals(expected.higher(key), actual.higher(key), what + " higher " + key);
+			assertEquals(expected.lower(key), actual.lower(key), what + " lower " + key);
+		}
+		if (expected.isEmpty()) {
+			assertThrows(NoSuchElementException.class, actual::first);
+		}
+		else {
+			assertEquals(expected.first(), actual.first(), what + " first");
+			assertEquals(expected.last(), actual.last(), what + " last");
+		}
+		assertEquals(expected, actual);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		if (depth > 0) {
+			same(actual.descendingSet(), expected.descendingSet(), random, what + ".descendingSet()", depth - 1);
+			Integer low = random.nextInt(200);
+			Integer high = random.nextInt(200);
+			if (actual.comparator() == null ? low > high : low < high) {
+				Integer swap = low;
+				low = high;
+				high = swap;
+			}
+			boolean lowInclusive = random.nextBoolean();
+			boolean highInclusive = random.nextBoolean();
+			Integer from = low;
+			Integer to = high;
+			view(() -> actual.subSet(from, lowInclusive, to, highInclusive), () -> expected.subSet(from, lowInclusive, to, highInclusive),
+					random, what + ".subSet(" + from + ", " + to + ")", depth);
+			view(() -> actual.headSet(to, highInclusive), () -> expected.headSet(to, highInclusive), random, what + ".headSet(" + to + ")",
+					depth);
+			view(() -> actual.tailSet(from, lowInclusive), () -> expected.tailSet(from, lowInclusive), random,
+					what + ".tailSet(" + from + ")", depth);
+		}
+	}
+
+	// a view out of the parent view's range must be refused by both
+	private static void view(Supplier<NavigableSet<Integer>> actual, Supplier<NavigableSet<Integer>> expected, Random random, String what,
+			int depth) {
+		NavigableSet<Integer> expectedView;
+		try {
+			expectedView = expected.get();
+		}
+		catch (IllegalArgumentException e) {
+			assertThrows(IllegalArgumentException.class, actual::get, what);
+			return;
+		}
+		same(actual.get(), expectedView, random, what, depth - 1);
+	}
+
+	private static void mutate(NavigableSet<Integer> actual, NavigableSet<Integer> expected, Random random, String what) {
+		for (int i = 0; i < 300; i++) {
+			Integer key = random.nextInt(200);
+			int operation = random.nextInt(8);
+			switch (operation) {
+				case 0:
+				case 1:
+					try {
+						boolean added = expected.add(key);
+						assertEquals(added, actual.add(key), what + " add " + key);
+					}
+					catch (IllegalArgumentException e) { // out of the view's range
+						assertThrows(IllegalArgumentException.class, () -> actual.add(key), what + " add " + key);
+					}
+					break;
+				case 2:
+					assertEquals(expected.remove(key), actual.remove(key), what + " remove " + key);
+					break;
+				case 3:
+					assertEquals(expected.pollFirst(), actual.pollFirst(), what + " pollFirst");
+					break;
+				case 4:
+					assertEquals(expected.pollLast(), actual.pollLast(), what + " pollLast");
+					break;
+				case 5: {
+					Iterator<Integer> actualIterator = actual.iterator();
+					Iterator<Integer> expectedIterator = expected.iterator();
+					while (expectedIterator.hasNext()) {
+						Integer next = expectedIterator.next();
+						assertEquals(next, actualIterator.next(), what + " iterator");
+						if (next % 3 == 0 && random.nextInt(4) == 0) {
+							expectedIterator.remove();
+							actualIterator.remove();
+						}
+					}
+					assertFalse(actualIterator.hasNext(), what + " iterator end");
+					break;
+				}
+				case 6: {
+					Iterator<Integer> actualIterator = actual.descendingIterator();
+					Iterator<Integer> expectedIterator = expected.descendingIterator();
+					while (expectedIterator.hasNext()) {
+						Integer next = expectedIterator.next();
+						assertEquals(next, actualIterator.next(), what + " descendingIterator");
+						if (next % 5 == 0) {
+							expectedIterator.remove();
+							actualIterator.remove();
+						}
+					}
+					assertFalse(actualIterator.hasNext(), what + " descendingIterator end");
+					break;
+				}
+				default: {
+					List<Integer> keys = new ArrayList<>();
+					for (int j = 0; j < 5; j++) {
+						keys.add(random.nextInt(200));
+					}
+					assertEquals(expected.removeAll(keys), actual.removeAll(keys), what + " removeAll " + keys);
+				}
+			}
+			assertEquals(new ArrayList<>(expected), new ArrayList<>(actual), what + " after operation " + operation + " on " + key);
+		}
+	}
+
+	@Test
+	void cursorWalksBothWaysAndRemoves() {
+		Random random = new Random(7);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 2000; i++) {
+			int key = random.nextInt(5000);
+			tree.add(key);
+			expected.add(key);
+		}
+		List<Integer> keys = new ArrayList<>(expected);
+		for (int round = 0; round < 200; round++) {
+			int seek = random.nextInt(5200) - 100;
+			TreeCursor<Integer> cursor = tree.cursor().seek(seek);
+			int index = Collections.binarySearch(keys, seek);
+			index = index < 0 ? -index - 1 : index; // next() returns keys.get(index)
+			for (int step = 0; step < 30; step++) {
+				if (random.nextBoolean()) {
+					assertEquals(index < keys.size(), cursor.hasNext());
+					if (index == keys.size()) {
+						assertThrows(NoSuchElementException.class, cursor::next);
+						continue;
+					}
+					assertEquals(keys.get(index++), cursor.next());
+					if (random.nextInt(10) == 0) {
+						cursor.remove();
+						keys.remove(--index);
+					}
+				}
+				else {
+					assertEquals(index > 0, cursor.hasPrevious());
+					if (index == 0) {
+						assertThrows(NoSuchElementException.class, cursor::previous);
+						continue;
+					}
+					assertEquals(keys.get(--index), cursor.previous());
+				}
+			}
+		}
+		assertEquals(keys, tree.inOrder());
+		RedBlackTreeInvariants.check(tree);
+
+		TreeCursor<Integer> cursor = tree.cursor().last();
+		assertThrows(IllegalStateException.class, cursor::remove);
+		assertEquals(keys.get(keys.size() - 1), cursor.previous());
+		tree.add(-1);
+		assertThrows(ConcurrentModificationException.class, cursor::previous);
+	}
+
+	@Test
+	void nullKeysAreRejected() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>(3, 1, 2);
+		assertThrows(NullPointerException.class, () -> tree.add(null));
+		assertThrows(NullPointerException.class, () -> tree.contains(null));
+		assertThrows(NullPointerException.class, () -> tree.remove(null));
+		assertThrows(IllegalArgumentException.class, () -> tree.subSet(1, true, 2, true).add(5));
+		assertEquals("[1, 2, 3]", Arrays.toString(tree.toArray()));
+		assertNull(new RedBlackTree<Integer>().pollFirst());
+		assertFalse(new RedBlackTree<Integer>().find(1));
+		RedBlackTreeInvariants.check(tree);
+	}
+
+}
@@ -0,0 +1,267 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The engines built on SlotRedBlackTree (IntRedBlackTree, LongRedBlackTree,
+ * PooledRedBlackTree, OffHeapRedBlackTree) against TreeSet, each checked with
+ * RedBlackTreeInvariants through its slot accessors as it changes.
+ */
+class SlotRedBlackTreeTest {
+
+	// one engine under test, keys as longs
+	private interface Engine {
+		SlotRedBlackTree tree();
+
+		boolean insert(long key);
+
+		boolean delete(long key);
+
+		boolean find(long key);
+
+		// in-order, then pre-order, post-order and breadth-first
+		List<long[]> traversals();
+	}
+
+	private static Engine ints() {
+		IntRedBlackTree tree = new IntRedBlackTree();
+		return new Engine() {
+			public SlotRedBlackTree tree() {
+				return tree;
+			}
+
+			public boolean insert(long key) {
+				return tree.insert((int) key);
+			}
+
+			public boolean delete(long key) {
+				return tree.delete((int) key);
+			}
+
+			public boolean find(long key) {
+				return tree.find((int) key);
+			}
+
+			public List<long[]> traversals() {
+				return List.of(widen(tree.inOrder()), widen(tree.preOrder()), widen(tree.postOrder()), widen(tree.breadthFirst()));
+			}
+		};
+	}
+
+	private static Engine longs() {
+		LongRedBlackTree tree = new LongRedBlackTree();
+		return new Engine() {
+			public SlotRedBlackTree tree() {
+				return tree;
+			}
+
+			public boolean insert(long key) {
+				return tree.insert(key);
+			}
+
+			public boolean delete(long key) {
+				return tree.delete(key);
+			}
+
+			public boolean find(long key) {
+				return tree.find(key);
+			}
+
+			public List<long[]> traversals() {
+				return List.of(tree.inOrder(), tree.preOrder(), tree.postOrder(), tree.breadthFirst());
+			}
+		};
+	}
+
+	// insert and delete return nothing, so the answer is read from find() first
+	private static Engine pooled() {
+		PooledRedBlackTree<Long> tree = new PooledRedBlackTree<>();
+		return new Engine() {
+			public SlotRedBlackTree tree() {
+				return tree;
+			}
+
+			public boolean insert(long key) {
+				boolean present = tree.find(key);
+				tree.insert(key);
+				return !present;
+			}
+
+			public boolean delete(long key) {
+				boolean present = tree.find(key);
+				tree.delete(key);
+				return present;
+			}
+
+			public boolean find(long key) {
+				return tree.find(key);
+			}
+
+			public List<long[]> traversals() {
+				return List.of(unbox(tree.inOrder()), unbox(tree.preOrder()), unbox(tree.postOrder()), unbox(tree.breadthFirst()));
+			}
+		};
+	}
+
+	private static Engine offHeap() {
+		OffHeapRedBlackTree tree = new OffHeapRedBlackTree();
+		return new Engine() {
+			public SlotRedBlackTree tree() {
+				return tree;
+			}
+
+			public boolean insert(long key) {
+				return tree.insert(key);
+			}
+
+			public boolean delete(long key) {
+				return tree.delete(key);
+			}
+
+			public boolean find(long key) {
+				return tree.find(key);
+			}
+
+			public List<long[]> traversals() {
+				return List.of(tree.inOrder(), tree.preOrder(), tree.postOrder(), tree.breadthFirst());
+			}
+		};
+	}
+
+	private static long[] widen(int[] keys) {
+		return Arrays.stream(keys).asLongStream().toArray();
+	}
+
+	private static long[] unbox(List<Long> keys) {
+		return keys.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	@Test
+	void intRedBlackTreeMatchesTreeSet() {
+		differential(SlotRedBlackTreeTest::ints);
+	}
+
+	@Test
+	void longRedBlackTreeMatchesTreeSet() {
+		differential(SlotRedBlackTreeTest::longs);
+	}
+
+	@Test
+	void pooledRedBlackTreeMatchesTreeSet() {
+		differential(SlotRedBlackTreeTest::pooled);
+	}
+
+	@Test
+	void offHeapRedBlackTreeMatchesTreeSet() {
+		differential(SlotRedBlackTreeTest::offHeap);
+	}
+
+	private static void differential(Supplier<Engine> factory) {
+		for (int range : new int[] { 10, 300, 5000 }) {
+			Random random = new Random(range);
+			Engine engine = factory.get();
+			TreeSet<Long> expected = new TreeSet<>();
+			for (int i = 0; i < 20_000; i++) {
+				long key = random.nextInt(range) - range / 2; // negative keys too
+				if (random.nextInt(3) > 0) {
+					assertEquals(expected.add(key), engine.insert(key), "insert " + key);
+				}
+				else {
+					assertEquals(expected.remove(key), engine.delete(key), "delete " + key);
+				}
+				assertEquals(expected.contains(key), engine.find(key));
+				if (range == 10 || i % 97 == 0) {
+					RedBlackTreeInvariants.check(engine.tree());
+				}
+			}
+			check(engine, expected);
+			while (!expected.isEmpty()) {
+				Long key = random.nextBoolean() ? expected.pollFirst() : expected.pollLast();
+				assertTrue(engine.delete(key));
+				if (expected.size() % 50 == 0) {
+					check(engine, expected);
+				}
+			}
+			assertTrue(engine.tree().isEmpty());
+			assertFalse(engine.find(0));
+		}
+	}
+
+	// in-order equals the TreeSet; the other traversals hold the same keys
+	private static void check(Engine engine, TreeSet<Long> expected) {
+		RedBlackTreeInvariants.check(engine.tree());
+		long[] keys = expected.stream().mapToLong(Long::longValue).toArray();
+		List<long[]> traversals = engine.traversals();
+		assertEquals(Arrays.toString(keys), Arrays.toString(traversals.get(0)));
+		for (long[] traversal : traversals.subList(1, traversals.size())) {
+			long[] sorted = traversal.clone();
+			Arrays.sort(sorted);
+			assertEquals(Arrays.toString(keys), Arrays.toString(sorted));
+		}
+		assertEquals(expected.size(), engine.tree().size());
+	}
+
+	@Test
+	void deletedSlotsAreReused() {
+		for (Supplier<Engine> factory : List.<Supplier<Engine>>of(SlotRedBlackTreeTest::ints, SlotRedBlackTreeTest::longs,
+				SlotRedBlackTreeTest::pooled, SlotRedBlackTreeTest::offHeap)) {
+			Engine engine = factory.get();
+			for (int i = 0; i < 1000; i += 2) {
+				engine.insert(i);
+			}
+			int slots = engine.tree().nextSlot;
+			for (int round = 0; round < 5; round++) {
+				for (int i = 0; i < 1000; i += 2) {
+					assertTrue(engine.delete(i + 1000 * round));
+				}
+				for (int i = 0; i < 1000; i += 2) {
+					engine.insert(i + 1000 * (round + 1));
+				}
+			}
+			assertEquals(slots, engine.tree().nextSlot, "slots grew instead of being reused");
+			RedBlackTreeInvariants.check(engine.tree());
+		}
+	}
+
+	@Test
+	void offHeapTreeSpansChunks() {
+		OffHeapRedBlackTree tree = new OffHeapRedBlackTree();
+		int count = OffHeapRedBlackTree.CHUNK_NODES * 2 + 100;
+		for (int i = 0; i < count; i++) {
+			tree.insert(i);
+		}
+		for (int i = 0; i < count; i += 3) {
+			tree.delete(i);
+		}
+		RedBlackTreeInvariants.check(tree);
+		long[] keys = tree.inOrder();
+		List<Long> expected = new ArrayList<>();
+		for (long i = 0; i < count; i++) {
+			if (i % 3 != 0) {
+				expected.add(i);
+			}
+		}
+		assertEquals(expected.size(), keys.length);
+		assertEquals(expected, unboxedList(keys));
+	}
+
+	private static List<Long> unboxedList(long[] keys) {
+		List<Long> list = new ArrayList<>(keys.length);
+		for (long key : keys) {
+			list.add(key);
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,189 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Traces recorded by TraceRecorder and run again by TraceReplayer: replaying
+ * must end with the recorded tree's keys and give TreeSet's answers, on every
+ * target.
+ */
+class TraceReplayerTest {
+
+	// changes tree through every API that can, with finds in between
+	private static void exercise(RedBlackTree<Integer> tree, Random random, int operations) {
+		for (int i = 0; i < operations; i++) {
+			int key = random.nextInt(500);
+			switch (random.nextInt(14)) {
+				case 0:
+				case 1:
+					tree.add(key);
+					break;
+				case 2:
+					tree.remove(key);
+					break;
+				case 3:
+					tree.addHinted(key);
+					break;
+				case 4:
+					tree.pollFirst();
+					break;
+				case 5:
+					tree.pollLast();
+					break;
+				case 6:
+					List<Integer> batch = new ArrayList<>();
+					for (int j = 0; j < 5; j++) {
+						batch.add(random.nextInt(500));
+					}
+					Collections.sort(batch);
+					if (random.nextBoolean()) {
+						tree.insertAll(batch);
+					}
+					else {
+						tree.deleteAll(batch);
+					}
+					break;
+				case 7:
+					tree.subSet(key, key + 10).clear();
+					break;
+				case 8:
+					Iterator<Integer> iterator = tree.iterator();
+					while (iterator.hasNext()) {
+						if (iterator.next() % 13 == 0) {
+							iterator.remove();
+						}
+					}
+					break;
+				case 9:
+					tree.tailSet(key).pollFirst();
+					break;
+				case 10:
+					if (random.nextInt(50) == 0) {
+						tree.clear();
+					}
+					break;
+				case 11:
+					// rejected arguments are not recorded
+					assertThrows(NullPointerException.class, () -> tree.remove(null));
+					assertThrows(NullPointerException.class, () -> tree.contains(null));
+					break;
+				case 12:
+					if (random.nextInt(50) == 0) {
+						tree.split(key);
+					}
+					break;
+				default:
+					tree.contains(key);
+			}
+		}
+	}
+
+	private static byte[] record(RedBlackTree<Integer> tree, KeyCodec<Integer> codec, int operations) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (TraceRecorder<Integer> recorder = new TraceRecorder<>(out, codec)) {
+			tree.setListener(recorder);
+			exercise(tree, new Random(5), operations);
+			tree.setListener(null);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	void replayEndsWithTheRecordedKeys() throws IOException {
+		for (KeyCodec<Integer> codec : List.of(KeyCodec.integers(), KeyCodec.integerDeltas())) {
+			RedBlackTree<Integer> recorded = new RedBlackTree<>();
+			byte[] bytes = record(recorded, codec, 20_000);
+			TraceReplayer.Trace<Integer> trace = TraceReplayer.read(new ByteArrayInputStream(bytes), codec);
+			assertEquals(codec.name(), trace.getCodec());
+			assertTrue(trace.length() > 10_000);
+			assertTrue(trace.durationNanos() >= 0);
+
+			RedBlackTree<Integer> replayed = new RedBlackTree<>();
+			TraceReplayer.Result result = TraceReplayer.replay(trace, TraceReplayer.of(replayed), false);
+			assertTrue(result.matches(), result::toString);
+			assertEquals(recorded.inOrder(), replayed.inOrder());
+			assertEquals(trace.length(), result.getOperations());
+		}
+	}
+
+	@Test
+	void everyTargetMatchesTreeSet() throws IOException {
+		byte[] bytes = record(new RedBlackTree<>(), KeyCodec.integers(), 5000);
+		TraceReplayer.Trace<Integer> trace = TraceReplayer.read(new ByteArrayInputStream(bytes), KeyCodec.integers());
+		List<TraceReplayer.Target<Integer>> targets = TraceReplayer.targets();
+		targets.add(TraceReplayer.of(new IntRedBlackTree()));
+		for (TraceReplayer.Target<Integer> target : targets) {
+			TraceReplayer.Result result = TraceReplayer.replay(trace, target, false);
+			assertTrue(result.matches(), result::toString);
+			TreeMetrics.Latency finds = result.getLatency(TreeListener.Operation.FIND);
+			assertTrue(finds.getCount() > 0 && finds.getP50() <= finds.getP99() && finds.getP99() <= finds.getMax());
+		}
+	}
+
+	// a target that gets finds wrong is reported, not silently accepted
+	@Test
+	void mismatchesAreReported() throws IOException {
+		byte[] bytes = record(new RedBlackTree<>(), KeyCodec.integers(), 2000);
+		TraceReplayer.Trace<Integer> trace = TraceReplayer.read(new ByteArrayInputStream(bytes), KeyCodec.integers());
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		TraceReplayer.Target<Integer> forgetful = new TraceReplayer.Target<Integer>() {
+			public String name() {
+				return "forgetful";
+			}
+
+			public void insert(Integer key) {
+				if (key % 2 == 0) {
+					tree.add(key);
+				}
+			}
+
+			public void delete(Integer key) {
+				tree.remove(key);
+			}
+
+			public boolean find(Integer key) {
+				return tree.contains(key);
+			}
+
+			public List<Integer> inOrder() {
+				return tree.inOrder();
+			}
+		};
+		TraceReplayer.Result result = TraceReplayer.replay(trace, forgetful, false);
+		assertTrue(!result.matches() && result.getFindMismatches() > 0 && !result.contentsMatch());
+	}
+
+	@Test
+	void tornAndForeignTraces() throws IOException {
+		byte[] bytes = record(new RedBlackTree<>(), KeyCodec.integers(), 1000);
+		int length = TraceReplayer.read(new ByteArrayInputStream(bytes), KeyCodec.integers()).length();
+		// a recorder that was not closed can leave its last record torn
+		byte[] torn = Arrays.copyOf(bytes, bytes.length - 1);
+		assertEquals(length - 1, TraceReplayer.read(new ByteArrayInputStream(torn), KeyCodec.integers()).length());
+
+		assertThrows(IOException.class, () -> TraceReplayer.read(new ByteArrayInputStream(bytes), KeyCodec.longs()));
+		byte[] magic = bytes.clone();
+		magic[0] ^= 1;
+		assertThrows(IOException.class, () -> TraceReplayer.read(new ByteArrayInputStream(magic), KeyCodec.integers()));
+		byte[] header = Arrays.copyOf(bytes, 4 + 4 + 2 + 3);
+		assertEquals(0, TraceReplayer.read(new ByteArrayInputStream(header), KeyCodec.integers()).length());
+		byte[] badOp = Arrays.copyOf(bytes, header.length + 1);
+		badOp[header.length] = 9;
+		assertThrows(IOException.class, () -> TraceReplayer.read(new ByteArrayInputStream(badOp), KeyCodec.integers()));
+	}
+
+}
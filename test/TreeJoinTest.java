@@ -0,0 +1,138 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * split, join and the set operations built on them, against TreeSet. Inputs
+ * are built both by fromSorted (perfectly balanced) and by shuffled inserts,
+ * so the trees joined have different shapes and black heights.
+ */
+class TreeJoinTest {
+
+	private static TreeSet<Integer> randomSet(Random random, int count, int range) {
+		TreeSet<Integer> keys = new TreeSet<>();
+		for (int i = 0; i < count; i++) {
+			keys.add(random.nextInt(range));
+		}
+		return keys;
+	}
+
+	private static RedBlackTree<Integer> build(Random random, Set<Integer> keys) {
+		if (random.nextBoolean()) {
+			return RedBlackTree.fromSorted(new ArrayList<>(keys));
+		}
+		List<Integer> shuffled = new ArrayList<>(keys);
+		Collections.shuffle(shuffled, random);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int key : shuffled) {
+			tree.add(key);
+		}
+		return tree;
+	}
+
+	// result is a valid tree with exactly the expected keys, and still usable
+	private static void same(Set<Integer> expected, RedBlackTree<Integer> actual) {
+		RedBlackTreeInvariants.check(actual);
+		assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+		actual.add(-5);
+		actual.remove(-5);
+		RedBlackTreeInvariants.check(actual);
+	}
+
+	@Test
+	void splitMatchesHeadAndTailSets() {
+		Random random = new Random(11);
+		for (int i = 0; i < 400; i++) {
+			int range = 1 + random.nextInt(i < 300 ? 200 : 20_000);
+			TreeSet<Integer> keys = randomSet(random, random.nextInt(i < 300 ? 100 : 5000), range);
+			int key = random.nextInt(range);
+			RedBlackTree.Split<Integer> split = build(random, keys).split(key);
+			assertEquals(keys.contains(key), split.isFound());
+			same(keys.headSet(key, false), split.getLeft());
+			same(keys.tailSet(key, false), split.getRight());
+		}
+	}
+
+	@Test
+	void joinOfUnevenTrees() {
+		Random random = new Random(12);
+		for (int i = 0; i < 400; i++) {
+			int range = 1 + random.nextInt(i < 300 ? 200 : 20_000);
+			TreeSet<Integer> keys = randomSet(random, random.nextInt(i < 300 ? 100 : 5000), range);
+			int key = random.nextInt(range);
+			RedBlackTree.Split<Integer> split = build(random, keys).split(key);
+			RedBlackTree<Integer> left = split.getLeft();
+			if (random.nextBoolean()) { // shrink one side so the black heights differ
+				left = left.split(random.nextInt(range)).getLeft();
+			}
+			TreeSet<Integer> expected = new TreeSet<>();
+			left.forEach(expected::add);
+			split.getRight().forEach(expected::add);
+			expected.add(key);
+			same(expected, RedBlackTree.join(left, key, split.getRight()));
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> RedBlackTree.join(RedBlackTree.fromSorted(1, 5), 3, RedBlackTree.fromSorted(7)));
+	}
+
+	@Test
+	void setOperationsMatchTreeSet() {
+		Random random = new Random(13);
+		for (int i = 0; i < 600; i++) {
+			int range = 1 + random.nextInt(i < 450 ? 200 : 20_000);
+			int count = i < 450 ? 100 : 5000;
+			TreeSet<Integer> a = randomSet(random, random.nextInt(count), range);
+			TreeSet<Integer> b = randomSet(random, random.nextInt(count), range);
+			RedBlackTree<Integer> first = build(random, a);
+			RedBlackTree<Integer> second = build(random, b);
+			TreeSet<Integer> expected = new TreeSet<>(a);
+			switch (i % 3) {
+				case 0:
+					expected.addAll(b);
+					same(expected, RedBlackTree.union(first, second));
+					assertTrue(first.isEmpty() && second.isEmpty(), "union consumes its inputs");
+					break;
+				case 1:
+					expected.retainAll(b);
+					same(expected, RedBlackTree.intersection(first, second));
+					break;
+				default:
+					expected.removeAll(b);
+					same(expected, RedBlackTree.difference(first, second));
+			}
+		}
+	}
+
+	@Test
+	void largeInputsRunInParallel() {
+		Random random = new Random(14);
+		TreeSet<Integer> a = randomSet(random, 200_000, 1_000_000);
+		TreeSet<Integer> b = randomSet(random, 100_000, 1_000_000);
+		TreeSet<Integer> union = new TreeSet<>(a);
+		union.addAll(b);
+		same(union, RedBlackTree.union(RedBlackTree.fromSorted(new ArrayList<>(a)), RedBlackTree.fromSorted(new ArrayList<>(b))));
+		TreeSet<Integer> intersection = new TreeSet<>(a);
+		intersection.retainAll(b);
+		same(intersection, RedBlackTree.intersection(RedBlackTree.fromSorted(new ArrayList<>(a)), RedBlackTree.fromSorted(new ArrayList<>(b))));
+		TreeSet<Integer> difference = new TreeSet<>(a);
+		difference.removeAll(b);
+		same(difference, RedBlackTree.difference(RedBlackTree.fromSorted(new ArrayList<>(a)), RedBlackTree.fromSorted(new ArrayList<>(b))));
+	}
+
+	@Test
+	void augmentedTreesCannotSplit() {
+		assertThrows(UnsupportedOperationException.class, () -> new OrderStatisticTree<>(1, 2).split(1));
+	}
+
+}
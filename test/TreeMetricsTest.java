@@ -0,0 +1,193 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import redBlackTrees.TreeListener.Operation;
+
+/**
+ * TreeMetrics counts and latencies, and the TreeListener promise behind them:
+ * every change to the keys arrives as INSERTs and DELETEs, whichever method
+ * made it.
+ */
+class TreeMetricsTest {
+
+	@Test
+	void countsWhatTheTreeDoes() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		TreeMetrics metrics = new TreeMetrics();
+		tree.setListener(metrics);
+		assertSame(metrics, tree.getListener());
+		List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			keys.add(i);
+		}
+		Collections.shuffle(keys, new Random(1));
+		for (int key : keys) {
+			tree.insert(key);
+		}
+		TreeMetrics.Snapshot snapshot = metrics.snapshot(tree);
+		assertEquals(20_000, snapshot.getSize());
+		assertEquals(tree.height(), snapshot.getHeight());
+		assertEquals(tree.blackHeight(), snapshot.getBlackHeight());
+		assertTrue(snapshot.getRotations() > 0 && snapshot.getRecolors() > 0);
+		// every insert descends at most height levels
+		assertTrue(snapshot.getComparisons() <= 20_000L * snapshot.getHeight());
+		assertEquals(0, snapshot.getDoubleBlackFixups());
+		assertEquals(20_000, snapshot.getLatency(Operation.INSERT).getCount());
+
+		for (int key : keys) {
+			assertTrue(tree.find(key));
+		}
+		for (int i = 0; i < 10_000; i++) {
+			tree.delete(keys.get(i));
+		}
+		snapshot = metrics.snapshot(tree);
+		assertTrue(snapshot.getDoubleBlackFixups() > 0);
+		assertEquals(10_000, snapshot.getLatency(Operation.DELETE).getCount());
+		for (Operation operation : Operation.values()) {
+			TreeMetrics.Latency latency = snapshot.getLatency(operation);
+			assertTrue(latency.getP50() <= latency.getP90() && latency.getP90() <= latency.getP99()
+					&& latency.getP99() <= latency.getMax(), latency::toString);
+			assertTrue(latency.getMean() <= latency.getMax());
+		}
+		assertTrue(snapshot.toString().contains("black height"));
+
+		// a snapshot does not change afterwards, and the listener can be switched off
+		long comparisons = snapshot.getComparisons();
+		tree.setListener(null);
+		tree.find(5);
+		tree.insert(-1);
+		assertEquals(comparisons, snapshot.getComparisons());
+		assertEquals(comparisons, metrics.snapshot(tree).getComparisons());
+		assertSame(TreeListener.NONE, tree.getListener());
+
+		metrics.reset();
+		snapshot = metrics.snapshot(tree);
+		assertEquals(0, snapshot.getComparisons());
+		assertEquals(0, snapshot.getLatency(Operation.FIND).getCount());
+		assertEquals(0, snapshot.getLatency(Operation.FIND).getMax());
+	}
+
+	@Test
+	void ascendingInsertsRotateOnce() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		TreeMetrics metrics = new TreeMetrics();
+		tree.setListener(metrics);
+		tree.insert(1);
+		tree.insert(2);
+		assertEquals(1, metrics.snapshot(tree).getComparisons());
+		assertEquals(0, metrics.snapshot(tree).getRotations());
+		tree.insert(3);
+		assertEquals(3, metrics.snapshot(tree).getComparisons());
+		assertEquals(1, metrics.snapshot(tree).getRotations());
+	}
+
+	@Test
+	void balancedTreesReportToo() {
+		for (BalancedTree<Integer> tree : List.<BalancedTree<Integer>>of(new LeftLeaningRedBlackTree<>(), new WavlTree<>())) {
+			TreeMetrics metrics = new TreeMetrics();
+			tree.setListener(metrics);
+			for (int i = 0; i < 1000; i++) {
+				tree.add(i);
+			}
+			for (int i = 0; i < 1000; i += 2) {
+				tree.remove(i);
+			}
+			TreeMetrics.Snapshot snapshot = metrics.snapshot(tree);
+			assertEquals(500, snapshot.getSize());
+			assertEquals(-1, snapshot.getBlackHeight());
+			assertTrue(snapshot.getRotations() > 0 && snapshot.getComparisons() > 0);
+			assertEquals(1000, snapshot.getLatency(Operation.INSERT).getCount());
+			assertEquals(500, snapshot.getLatency(Operation.DELETE).getCount());
+		}
+	}
+
+	// keeps the keys the reported INSERTs and DELETEs add up to
+	private static final class Mirror implements TreeListener {
+
+		final TreeSet<Integer> keys = new TreeSet<>();
+
+		@Override
+		public long onStart(Operation operation, Object key) {
+			if (operation == Operation.INSERT) {
+				this.keys.add((Integer) key);
+			}
+			else if (operation == Operation.DELETE) {
+				this.keys.remove(key);
+			}
+			return 0;
+		}
+	}
+
+	@Test
+	void everyChangeIsReported() {
+		Random random = new Random(2);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		Mirror mirror = new Mirror();
+		tree.setListener(mirror);
+		for (int i = 0; i < 20_000; i++) {
+			int key = random.nextInt(1000);
+			switch (random.nextInt(12)) {
+				case 0:
+					tree.add(key);
+					break;
+				case 1:
+					tree.remove(key);
+					break;
+				case 2:
+					tree.addHinted(key);
+					break;
+				case 3:
+					tree.pollFirst();
+					break;
+				case 4:
+					tree.pollLast();
+					break;
+				case 5:
+					tree.insertAll(List.of(key, key + 1, key + 2));
+					break;
+				case 6:
+					tree.deleteAll(List.of(key, key + 1));
+					break;
+				case 7:
+					tree.subSet(key, key + 20).clear();
+					break;
+				case 8:
+					Iterator<Integer> iterator = tree.iterator();
+					for (int j = 0; j < 5 && iterator.hasNext(); j++) {
+						iterator.next();
+						iterator.remove();
+					}
+					break;
+				case 9:
+					if (random.nextInt(50) == 0) {
+						tree.split(key);
+					}
+					break;
+				case 10:
+					if (random.nextInt(100) == 0) {
+						tree.clear();
+					}
+					break;
+				default:
+					tree.insert(key);
+			}
+			if (i % 100 == 0) {
+				assertEquals(new ArrayList<>(mirror.keys), tree.inOrder());
+			}
+		}
+		assertEquals(new ArrayList<>(mirror.keys), tree.inOrder());
+	}
+
+}
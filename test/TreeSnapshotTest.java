@@ -0,0 +1,176 @@
+package redBlackTrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Snapshots written by RedBlackTree and read back with each KeyCodec, and
+ * reads of cut short or corrupt streams, which must fail with IOException
+ * rather than return a partial tree or allocate what the stream claims.
+ */
+class TreeSnapshotTest {
+
+	private static <E extends Comparable<E>> byte[] write(RedBlackTree<E> tree, KeyCodec<E> codec) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		tree.writeSnapshot(out, codec);
+		return out.toByteArray();
+	}
+
+	private static <E extends Comparable<E>> void roundTrip(TreeSet<E> keys, KeyCodec<E> codec) throws IOException {
+		byte[] bytes = write(RedBlackTree.fromSorted(new ArrayList<>(keys)), codec);
+		RedBlackTree<E> read = RedBlackTree.readSnapshot(new ByteArrayInputStream(bytes), codec);
+		assertEquals(new ArrayList<>(keys), read.inOrder(), codec.name());
+		assertEquals(keys.size(), read.size());
+		RedBlackTreeInvariants.check(read);
+	}
+
+	@Test
+	void everyCodecRoundTrips() throws IOException {
+		Random random = new Random(1);
+		// more than one block, so delta codecs restart at block boundaries
+		for (int size : new int[] { 0, 1, 4095, 4096, 4097, 20_000 }) {
+			TreeSet<Integer> ints = new TreeSet<>();
+			TreeSet<Long> longs = new TreeSet<>();
+			TreeSet<String> strings = new TreeSet<>();
+			while (ints.size() < size) {
+				ints.add(random.nextInt());
+				longs.add(random.nextLong());
+				strings.add(Long.toString(random.nextLong(), 36));
+			}
+			if (size > 0) {
+				ints.addAll(List.of(Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1));
+				longs.addAll(List.of(Long.MIN_VALUE, Long.MAX_VALUE, 0L, -1L));
+				strings.addAll(List.of("", "é中🌳"));
+			}
+			roundTrip(ints, KeyCodec.integers());
+			roundTrip(ints, KeyCodec.integerDeltas());
+			roundTrip(longs, KeyCodec.longs());
+			roundTrip(longs, KeyCodec.longDeltas());
+			roundTrip(strings, KeyCodec.strings());
+		}
+	}
+
+	@Test
+	void deltasKeepDenseKeysSmall() throws IOException {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int i = 0; i < 100_000; i++) {
+			tree.insert(i);
+		}
+		assertTrue(write(tree, KeyCodec.integerDeltas()).length < 2 * 100_000);
+		assertTrue(write(tree, KeyCodec.integers()).length >= 4 * 100_000);
+	}
+
+	@Test
+	void readStopsAtTheEndMarker() throws IOException {
+		RedBlackTree<Long> tree = RedBlackTree.fromSorted(List.of(1L, 2L, 3L));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		tree.writeSnapshot(Channels.newChannel(out), KeyCodec.longDeltas());
+		tree.writeSnapshot(out, KeyCodec.longDeltas());
+		out.write(42);
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		assertEquals(List.of(1L, 2L, 3L), RedBlackTree.readSnapshot(Channels.newChannel(in), KeyCodec.longDeltas()).inOrder());
+		assertEquals(List.of(1L, 2L, 3L), RedBlackTree.readSnapshot(in, KeyCodec.longDeltas()).inOrder());
+		assertEquals(42, in.read());
+	}
+
+	@Test
+	void truncatedSnapshotsAreRejected() throws IOException {
+		TreeSet<Integer> keys = new TreeSet<>();
+		Random random = new Random(2);
+		while (keys.size() < 200) {
+			keys.add(random.nextInt(100_000) - 50_000);
+		}
+		for (KeyCodec<Integer> codec : List.of(KeyCodec.integers(), KeyCodec.integerDeltas())) {
+			byte[] bytes = write(RedBlackTree.fromSorted(new ArrayList<>(keys)), codec);
+			for (int cut = 0; cut < bytes.length; cut++) {
+				ByteArrayInputStream in = new ByteArrayInputStream(Arrays.copyOf(bytes, cut));
+				assertThrows(IOException.class, () -> RedBlackTree.readSnapshot(in, codec), codec.name() + " cut at " + cut);
+			}
+		}
+		// cuts inside later blocks
+		RedBlackTree<Long> big = new RedBlackTree<>();
+		for (long i = 0; i < 10_000; i++) {
+			big.insert(i * 3);
+		}
+		byte[] bytes = write(big, KeyCodec.longs());
+		for (int cut : new int[] { bytes.length - 1, bytes.length - 2, bytes.length / 2, bytes.length - 8 * 4096 }) {
+			ByteArrayInputStream in = new ByteArrayInputStream(Arrays.copyOf(bytes, cut));
+			assertThrows(IOException.class, () -> RedBlackTree.readSnapshot(in, KeyCodec.longs()), "cut at " + cut);
+		}
+	}
+
+	@Test
+	void corruptSnapshotsAreRejected() throws IOException {
+		byte[] bytes = write(RedBlackTree.fromSorted(List.of(1, 2, 3)), KeyCodec.integers());
+		// header: magic, version, codec name "int" (2 + 3 bytes), then the key count
+		int count = 4 + 4 + 2 + 3;
+		assertEquals(3, bytes[count]);
+
+		byte[] magic = bytes.clone();
+		magic[0] ^= 1;
+		byte[] version = bytes.clone();
+		version[7] = 9;
+		byte[] tooFew = bytes.clone();
+		tooFew[count] = 4; // blocks end after 3 of 4 keys
+		byte[] tooMany = bytes.clone();
+		tooMany[count] = 2; // the block holds more keys than announced
+		byte[] longBlock = bytes.clone();
+		longBlock[count + 2]++; // the block's byte length disagrees with its keys
+		for (byte[] corrupt : List.of(magic, version, tooFew, tooMany, longBlock)) {
+			assertThrows(IOException.class, () -> RedBlackTree.readSnapshot(new ByteArrayInputStream(corrupt), KeyCodec.integers()));
+		}
+		assertThrows(IOException.class, () -> RedBlackTree.readSnapshot(new ByteArrayInputStream(bytes), KeyCodec.integerDeltas()));
+
+		// a huge count and block length are not trusted ahead of the data
+		byte[] claim = Arrays.copyOf(bytes, count + 10);
+		byte[] varints = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, // 2^31 - 1 keys
+				1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F }; // a block of one key in 256 MB
+		System.arraycopy(varints, 0, claim, count, varints.length);
+		assertThrows(IOException.class, () -> RedBlackTree.readSnapshot(new ByteArrayInputStream(claim), KeyCodec.integers()));
+	}
+
+	@Test
+	void codecsAreFoundByName() throws IOException {
+		for (KeyCodec<?> codec : List.of(KeyCodec.integers(), KeyCodec.longs(), KeyCodec.integerDeltas(), KeyCodec.longDeltas(), KeyCodec.strings())) {
+			assertEquals(codec.name(), KeyCodec.forName(codec.name()).name());
+		}
+		assertThrows(IllegalArgumentException.class, () -> KeyCodec.forName("float"));
+	}
+
+	@Test
+	void varLongsRoundTrip() throws IOException {
+		long[] values = { 0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, -1, Long.MIN_VALUE, Long.MAX_VALUE };
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (long value : values) {
+			KeyCodec.writeVarLong(out, value);
+			KeyCodec.writeVarLong(out, KeyCodec.zigZag(value));
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (long value : values) {
+			assertEquals(value, KeyCodec.readVarLong(in));
+			assertEquals(value, KeyCodec.unZigZag(KeyCodec.readVarLong(in)));
+		}
+		assertEquals(-1, in.read());
+		// eleven continuation bytes are never a varint
+		byte[] endless = new byte[11];
+		Arrays.fill(endless, (byte) 0x80);
+		assertThrows(IOException.class, () -> KeyCodec.readVarLong(new DataInputStream(new ByteArrayInputStream(endless))));
+	}
+
+}